@@ -4,24 +4,27 @@ import burp.api.montoya.proxy.ProxyHttpRequestResponse;
 import com.urlhunter.database.DatabaseManager;
 import com.urlhunter.ui.MainPanel;
 import com.urlhunter.model.URLEntry;
+import com.urlhunter.utils.CapturePolicy;
+import com.urlhunter.utils.DnsResolver;
+import com.urlhunter.utils.DomainIndex;
 import com.urlhunter.utils.URLAnalyzer;
 
 import javax.swing.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Extension implements BurpExtension {
     private MainPanel mainPanel;
     private DatabaseManager dbManager;
     private URLAnalyzer urlAnalyzer;
     private MontoyaApi api;
-    private Set<String> targetDomains;
+    private volatile DomainIndex targetDomainIndex = DomainIndex.EMPTY;
     
     @Override
     public void initialize(MontoyaApi api) {
         this.api = api;
         this.urlAnalyzer = new URLAnalyzer();
-        this.targetDomains = new HashSet<>();
         
         api.extension().setName("URL Hunter - URL安全检测库");
         api.logging().logToOutput("URL Hunter extension loading...");
@@ -93,18 +96,8 @@ public class Extension implements BurpExtension {
     }
     
     private boolean isTargetDomain(String host) {
-        synchronized (targetDomains) {
-            if (targetDomains.isEmpty()) {
-                return false; // 没有目标域名时不处理
-            }
-            
-            for (String rootDomain : targetDomains) {
-                if (host.equals(rootDomain) || host.endsWith("." + rootDomain)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        // 没有目标域名时索引为空，不处理
+        return targetDomainIndex.matches(host);
     }
     
     private void processExistingProxyHistory() {
@@ -125,7 +118,10 @@ public class Extension implements BurpExtension {
                             URLEntry entry = createURLEntryFromProxyItem(item);
                             if (entry != null) {
                                 entry.setNotes("历史记录导入");
-                                dbManager.insertURL(entry);
+                                CompletableFuture<Void> saved = dbManager.queueInsert(entry);
+                                if (entry.getIp() == null) {
+                                    scheduleIPFill(entry, saved);
+                                }
                                 
                                 // 更新UI
                                 SwingUtilities.invokeLater(() -> {
@@ -141,6 +137,7 @@ public class Extension implements BurpExtension {
                     }
                 }
                 
+                dbManager.flushInserts(60, TimeUnit.SECONDS);
                 api.logging().logToOutput("历史记录处理完成，共处理 " + processed + " 条记录");
             } catch (Exception e) {
                 if (api != null) {
@@ -163,16 +160,16 @@ public class Extension implements BurpExtension {
             
             if (item.response() != null) {
                 entry.setStatusCode(item.response().statusCode());
-                entry.setLength(item.response().body().length());
-                entry.setTitle(urlAnalyzer.extractTitle(item.response().bodyToString()));
+                entry.setLength(CapturePolicy.bodyLength(item.response()));
+                entry.setTitle(urlAnalyzer.extractTitle(item.response()));
             } else {
                 entry.setStatusCode(0);
                 entry.setLength(0);
                 entry.setTitle("");
             }
             
-            // 解析IP地址
-            String ip = urlAnalyzer.resolveIP(entry.getHost());
+            // 解析IP地址：只取缓存结果，未命中的在入库后异步回填
+            String ip = DnsResolver.getInstance().resolveAsync(entry.getHost()).getNow(null);
             entry.setIp(ip);
             entry.setIsInternal(urlAnalyzer.isInternalIP(ip));
             
@@ -191,12 +188,21 @@ public class Extension implements BurpExtension {
         }
     }
     
+    private void scheduleIPFill(URLEntry entry, CompletableFuture<Void> saved) {
+        // 等条目所在批次提交后再回填，否则UPDATE可能先于INSERT执行
+        DnsResolver.getInstance().resolveAsync(entry.getHost()).thenAcceptBoth(saved, (ip, ignored) -> {
+            if (ip != null) {
+                boolean internal = urlAnalyzer.isInternalIP(ip);
+                entry.setIp(ip);
+                entry.setIsInternal(internal);
+                dbManager.updateURLIP(entry.getUrl(), ip, internal);
+            }
+        });
+    }
+    
     // 公共方法，供MainPanel调用
     public void updateTargetDomains(Set<String> domains) {
-        synchronized (targetDomains) {
-            targetDomains.clear();
-            targetDomains.addAll(domains);
-        }
+        targetDomainIndex = DomainIndex.build(domains);
         
         if (api != null) {
             api.logging().logToOutput("目标域名已更新，共 " + domains.size() + " 个域名");
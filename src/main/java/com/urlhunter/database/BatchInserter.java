@@ -0,0 +1,261 @@
+package com.urlhunter.database;
+
+import com.urlhunter.model.URLEntry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 单线程批量写入器，也是所属写连接唯一的使用者；写连接在写入线程退出后才由DatabaseManager关闭
+ * 调用方只把条目放入有界队列，写入线程攒满maxBatchRows行或等待maxDelayMillis后，
+ * 用一个事务和同一个PreparedStatement整批写入，避免每条URL一次提交。
+ * 更新、删除等其他写操作通过execute作为任务排入同一队列，按提交顺序在插入之间执行。
+ * 队列满时submit会阻塞调用方，作为导入等批量写入的背压。
+ */
+class BatchInserter {
+    private static final Logger logger = Logger.getLogger(BatchInserter.class.getName());
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    // 队列元素：待插入的条目、写任务，或两者都为null的flush标记；标记和任务只在之前的条目提交后执行
+    // result为写任务的结果，写入线程异常时与done一起以异常完成，等待方不会一直阻塞
+    private static final class Pending {
+        private final URLEntry entry;
+        private final Runnable task;
+        private final CompletableFuture<?> result;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(URLEntry entry, Runnable task, CompletableFuture<?> result) {
+            this.entry = entry;
+            this.task = task;
+            this.result = result;
+        }
+
+        void fail(Throwable error) {
+            done.completeExceptionally(error);
+            if (result != null) {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final Connection connection;
+    private final int maxBatchRows;
+    private final long maxDelayMillis;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    BatchInserter(DatabaseManager dbManager, Connection connection, int maxBatchRows, long maxDelayMillis, int queueCapacity) {
+        this.dbManager = dbManager;
+        this.connection = connection;
+        this.maxBatchRows = Math.max(1, maxBatchRows);
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writer = new Thread(this::writerLoop, "URLHunter-DBWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 提交一条插入，返回的Future在所在批次提交后完成，写入失败时异常完成
+     */
+    CompletableFuture<Void> submit(URLEntry entry) {
+        Pending pending = new Pending(entry, null, null);
+        if (!enqueue(pending)) {
+            // 写入器已关闭或调用线程被中断，不在调用线程上写入
+            pending.done.completeExceptionally(new SQLException("写入线程不可用，URL未写入: " + entry.getUrl()));
+        }
+        return pending.done;
+    }
+
+    /**
+     * 请求立即写入已排队的条目，返回的Future在此前的条目全部提交后完成
+     */
+    CompletableFuture<Void> flush() {
+        Pending marker = new Pending(null, null, null);
+        if (!enqueue(marker)) {
+            marker.done.complete(null);
+        }
+        return marker.done;
+    }
+
+    /**
+     * 在写入线程上执行一个写任务，返回的Future携带任务结果或异常
+     * 写入器已关闭时Future以SQLException失败
+     */
+    <T> CompletableFuture<T> execute(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Pending pending = new Pending(null, () -> {
+            try {
+                result.complete(work.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, result);
+        if (!enqueue(pending)) {
+            result.completeExceptionally(new SQLException("写入线程不可用"));
+        }
+        return result;
+    }
+
+    boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    private boolean enqueue(Pending pending) {
+        if (!running) {
+            return false;
+        }
+        try {
+            queue.put(pending);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void writerLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchRows);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+            } catch (InterruptedException e) {
+                // 关闭时被中断，继续把队列写完
+            }
+            writeOrFail(batch);
+            batch.clear();
+        }
+
+        // 关闭过程中刚好入队的条目
+        queue.drainTo(batch);
+        writeOrFail(batch);
+    }
+
+    /**
+     * 写入一批，出现意外的运行时异常时把本批尚未完成的Future全部以异常完成，再继续处理后面的队列
+     */
+    private void writeOrFail(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            logger.severe("批量写入线程异常: " + e.getMessage());
+            for (Pending pending : batch) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 在等待时间内继续收集条目，遇到flush标记、写任务或攒满一批时立即返回
+     */
+    private void collect(List<Pending> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        int rows = 0;
+        int scanned = 0;
+        while (true) {
+            for (; scanned < batch.size(); scanned++) {
+                if (batch.get(scanned).entry == null) {
+                    return;
+                }
+                rows++;
+            }
+            if (rows >= maxBatchRows) {
+                return;
+            }
+            if (queue.drainTo(batch, maxBatchRows - rows) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 按入队顺序写入：写任务之前的条目先作为一个事务提交，再执行任务
+     */
+    private void write(List<Pending> batch) {
+        int start = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (pending.task != null) {
+                writeEntries(batch.subList(start, i));
+                pending.task.run();
+                pending.done.complete(null);
+                start = i + 1;
+            }
+        }
+        writeEntries(batch.subList(start, batch.size()));
+    }
+
+    private void writeEntries(List<Pending> pendings) {
+        List<URLEntry> entries = new ArrayList<>(pendings.size());
+        for (Pending pending : pendings) {
+            if (pending.entry != null) {
+                entries.add(pending.entry);
+            }
+        }
+
+        // 整批失败时writeURLs逐条重试，只有出错的条目失败
+        Set<URLEntry> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!entries.isEmpty()) {
+            failed.addAll(dbManager.writeURLs(connection, entries));
+        }
+        for (Pending pending : pendings) {
+            if (pending.entry != null && failed.contains(pending.entry)) {
+                pending.done.completeExceptionally(new SQLException("URL写入失败: " + pending.entry.getUrl()));
+            } else {
+                pending.done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 停止接收新条目，等待写入线程把队列写完并退出；不设超时，返回后写连接不再被使用，可以关闭
+     */
+    void shutdown() {
+        running = false;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+                if (writer.isAlive()) {
+                    logger.warning("等待批量写入线程写完，剩余 " + queue.size() + " 条");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
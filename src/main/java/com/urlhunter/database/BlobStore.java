@@ -0,0 +1,227 @@
+package com.urlhunter.database;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 按内容寻址的报文存储
+ * 报文按SHA-256哈希存入blobs表，相同内容（SPA首页、错误页、302跳转页等）只保存一份，bodies表每行只保存哈希引用。
+ * 达到大小阈值的文本报文用Deflate压缩；带Content-Encoding或二进制类型的报文本身已压缩，原样保存。
+ */
+final class BlobStore {
+    static final int CODEC_RAW = 0;
+    static final int CODEC_DEFLATE = 1;
+
+    // 压缩后至少节省10%才保存压缩结果
+    private static final double MAX_COMPRESSED_RATIO = 0.9;
+    private static final int HEADER_SCAN_LIMIT = 8192;
+    private static final String[] INCOMPRESSIBLE_TYPE_PREFIXES = {
+        "image/", "video/", "audio/", "font/",
+        "application/octet-stream", "application/zip", "application/gzip", "application/x-gzip",
+        "application/x-7z-compressed", "application/x-rar", "application/x-bzip2", "application/pdf",
+        "application/wasm", "application/x-font", "application/vnd.ms-fontobject"
+    };
+
+    private final boolean compressionEnabled;
+    private final int compressionMinBytes;
+
+    BlobStore(boolean compressionEnabled, int compressionMinBytes) {
+        this.compressionEnabled = compressionEnabled;
+        this.compressionMinBytes = Math.max(0, compressionMinBytes);
+    }
+
+    /**
+     * 写入事务内使用的报文写入器，复用语句并记住本事务已写入的哈希；只能在单个线程中使用
+     */
+    final class Writer implements AutoCloseable {
+        private final PreparedStatement exists;
+        private final PreparedStatement insert;
+        private final Set<ByteBuffer> written = new HashSet<>();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+        private Writer(Connection connection) throws SQLException {
+            this.exists = connection.prepareStatement("SELECT 1 FROM blobs WHERE hash = ?");
+            this.insert = connection.prepareStatement(
+                "INSERT OR IGNORE INTO blobs (hash, codec, raw_length, data) VALUES (?, ?, ?, ?)");
+        }
+
+        /**
+         * 保存报文并返回其哈希，内容已存在时只计算哈希不再写入；data为null时返回null
+         */
+        byte[] put(byte[] data) throws SQLException {
+            if (data == null) {
+                return null;
+            }
+            byte[] hash = hash(data);
+            if (!written.add(ByteBuffer.wrap(hash)) || contains(hash)) {
+                return hash;
+            }
+
+            int codec = CODEC_RAW;
+            byte[] stored = data;
+            if (shouldCompress(data)) {
+                byte[] compressed = deflate(data);
+                if (compressed.length <= data.length * MAX_COMPRESSED_RATIO) {
+                    codec = CODEC_DEFLATE;
+                    stored = compressed;
+                }
+            }
+
+            insert.setBytes(1, hash);
+            insert.setInt(2, codec);
+            insert.setInt(3, data.length);
+            insert.setBytes(4, stored);
+            insert.executeUpdate();
+            return hash;
+        }
+
+        private boolean contains(byte[] hash) throws SQLException {
+            exists.setBytes(1, hash);
+            try (ResultSet rs = exists.executeQuery()) {
+                return rs.next();
+            }
+        }
+
+        private byte[] deflate(byte[] data) {
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            deflater.end();
+            try {
+                exists.close();
+            } finally {
+                insert.close();
+            }
+        }
+    }
+
+    Writer openWriter(Connection connection) throws SQLException {
+        return new Writer(connection);
+    }
+
+    /**
+     * 按大小阈值和报文头中的Content-Type/Content-Encoding判断是否值得压缩
+     */
+    private boolean shouldCompress(byte[] data) {
+        if (!compressionEnabled || data.length < compressionMinBytes) {
+            return false;
+        }
+        return !isBinaryOrEncoded(headerBlock(data, headerEnd(data)));
+    }
+
+    /**
+     * 报文体是否为二进制或经过Content-Encoding编码（这类报文体既不值得压缩，也不能作为文本索引）
+     */
+    static boolean isBinaryOrEncoded(String headers) {
+        String encoding = headerValue(headers, "content-encoding");
+        if (encoding != null && !encoding.isEmpty() && !encoding.equals("identity")) {
+            return true;
+        }
+        String type = headerValue(headers, "content-type");
+        if (type != null) {
+            for (String prefix : INCOMPRESSIBLE_TYPE_PREFIXES) {
+                if (type.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 报文头结束位置（空行之前），在前HEADER_SCAN_LIMIT字节内找不到空行时返回-1
+     */
+    static int headerEnd(byte[] data) {
+        int limit = Math.min(data.length, HEADER_SCAN_LIMIT);
+        for (int i = 0; i + 3 < limit; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n' && data[i + 2] == '\r' && data[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 报文头部分（小写），headerEnd为-1时取前HEADER_SCAN_LIMIT字节
+     */
+    static String headerBlock(byte[] data, int headerEnd) {
+        int end = headerEnd >= 0 ? headerEnd : Math.min(data.length, HEADER_SCAN_LIMIT);
+        return new String(data, 0, end, StandardCharsets.ISO_8859_1).toLowerCase();
+    }
+
+    static String headerValue(String headers, String name) {
+        int index = headers.indexOf("\n" + name + ":");
+        if (index == -1) {
+            return null;
+        }
+        int start = index + name.length() + 2;
+        int end = headers.indexOf('\n', start);
+        return headers.substring(start, end == -1 ? headers.length() : end).trim();
+    }
+
+    static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // 所有JRE都必须提供SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按编码还原报文
+     */
+    static byte[] decode(int codec, byte[] stored, int rawLength) throws SQLException {
+        if (stored == null || codec == CODEC_RAW) {
+            return stored;
+        }
+        if (codec != CODEC_DEFLATE) {
+            throw new SQLException("未知的报文编码: " + codec);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] data = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(data, offset, rawLength - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new SQLException("报文解压后长度不符: " + offset + "/" + rawLength);
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new SQLException("报文解压失败: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
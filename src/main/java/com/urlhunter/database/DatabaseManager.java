@@ -1,21 +1,131 @@
 package com.urlhunter.database;
 
 import com.urlhunter.model.URLEntry;
+import com.urlhunter.model.URLEntry.CheckStatus;
 import com.urlhunter.model.DomainConfig;
+import com.urlhunter.model.BodyStoreStats;
+import com.urlhunter.model.MessageBodies;
+import com.urlhunter.model.URLChangeSet;
+import com.urlhunter.model.URLTemplate;
+import com.urlhunter.utils.HyperLogLog;
+import com.urlhunter.utils.PathCanonicalizer;
+import com.urlhunter.utils.URLAnalyzer;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * URL数据库访问
+ * 线程安全：所有公开方法都可以在任意线程（EDT、捕获工作线程、扫描线程等）并发调用。
+ * 写操作（插入、更新、删除、清空、配置保存、索引维护）全部在唯一的写入线程上通过写连接执行，
+ * 调用方阻塞到写入提交后返回；queueInsert只入队不等待。
+ * 读操作从只读连接池借用连接，WAL模式下读写互不阻塞，读到的是调用时已提交的数据（排队中的插入不可见）。
+ * switchDatabase/close期间其他线程的写操作等待切换完成后写入新数据库，数据库已关闭时写入失败并记录日志，
+ * 任何时候都不会在调用线程上直接使用写连接；读操作在切换期间可能失败。
+ */
 public class DatabaseManager {
     private static final Logger logger = Logger.getLogger(DatabaseManager.class.getName());
     private static final String DEFAULT_DB_NAME = "urlhunter.db";
-    private String currentDbPath;
+    // 数据库结构版本，保存在PRAGMA user_version中；结构变更时加一并在migrateSchema中增加对应步骤
+    private static final int SCHEMA_VERSION = 4;
+    // 只读连接数，以及所有连接遇到锁时的等待时间
+    private static final int READ_POOL_SIZE = 4;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+    private static final long READ_BORROW_TIMEOUT_MILLIS = 30000;
+    // 后台批量写入：攒满行数或等待时间到达后提交一个事务
+    private static final int INSERT_BATCH_MAX_ROWS = 500;
+    private static final long INSERT_BATCH_MAX_DELAY_MILLIS = 200;
+    private static final int INSERT_QUEUE_CAPACITY = 10000;
+    // 流式读取时每次从SQLite取回的行数
+    private static final int STREAM_FETCH_SIZE = 500;
+    // 批量查询URL是否存在时每条语句的URL数，以及负缓存的容量上限
+    private static final int EXISTS_BATCH_SIZE = 1000;
+    private static final int ABSENT_URL_CACHE_MAX = 100000;
+    // 按搜索词筛选时每页取回的命中数
+    private static final int SEARCH_PAGE_SIZE = 5000;
+    private static final String INSERT_URL_SQL = """
+            INSERT OR REPLACE INTO urls 
+            (url, method, host, path, query, status_code, length, title, ip, is_internal, subdomain, is_checked, check_status, notes, timestamp,
+             original_request_length, original_response_length, request_truncated, response_truncated, canonical_key, reversed_host)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+    // 报文文本写入全文索引，按url找到刚插入行的id
+    private static final String INDEX_BODIES_BY_URL_SQL =
+        "INSERT OR REPLACE INTO body_fts (rowid, request_text, response_text) SELECT id, ?, ? FROM urls WHERE url = ?";
+    // 报文哈希写入bodies表，按url找到刚插入行的id
+    private static final String UPSERT_BODIES_BY_URL_SQL =
+        "INSERT OR REPLACE INTO bodies (url_id, request_hash, response_hash) SELECT id, ?, ? FROM urls WHERE url = ?";
+    // 原始报文单独存放，打开项目时只加载urls表的元数据；报文内容按哈希存放在blobs表
+    private static final String CREATE_BODIES_SQL = """
+            CREATE TABLE IF NOT EXISTS bodies (
+                url_id INTEGER PRIMARY KEY REFERENCES urls(id) ON DELETE CASCADE,
+                request_hash BLOB,
+                response_hash BLOB
+            )
+        """;
+    // 列表和树只需要元数据，不读取报文
+    private static final String URL_METADATA_COLUMNS =
+        "id, url, method, host, path, query, status_code, length, title, ip, is_internal, subdomain, is_checked, check_status, " +
+        "notes, timestamp, original_request_length, original_response_length, request_truncated, response_truncated, canonical_key";
+    // host等于域名本身或是其子域名：倒序后为等值或前缀范围查询，走reversed_host索引
+    private static final String HOST_IN_DOMAIN = "(reversed_host = ? OR (reversed_host > ? AND reversed_host < ?))";
+    // 合并项目时由合并策略决定取舍的列，其余元数据随较新的一边
+    private static final Set<String> MERGE_TRIAGE_COLUMNS = Set.of("is_checked", "check_status", "notes");
+    // 报文文本写入全文索引
+    private static final String INDEX_BODY_TEXT_SQL =
+        "INSERT OR REPLACE INTO body_fts (rowid, request_text, response_text) VALUES (?, ?, ?)";
+    // 报文及其存储编码，写入全文索引前解码
+    private static final String BODY_BLOBS_SQL =
+        "SELECT b.url_id, rq.codec, rq.raw_length, rq.data, rs.codec, rs.raw_length, rs.data FROM bodies b " +
+        "LEFT JOIN blobs rq ON rq.hash = b.request_hash LEFT JOIN blobs rs ON rs.hash = b.response_hash";
+    private volatile String currentDbPath;
+    // 写连接，初始化完成后只在写入线程上使用
     private Connection connection;
+    private volatile ReadConnectionPool readPool;
     private Gson gson;
+    // 计算canonical_key使用的规则，由ProxyListener在配置变更时更新
+    private volatile PathCanonicalizer pathCanonicalizer = PathCanonicalizer.DEFAULT;
+    // 单一写入线程，随连接创建和关闭，所有写操作都在此线程上执行
+    private volatile BatchInserter batchInserter;
+    // 打开、切换和关闭数据库时持有写锁；其他线程向写入线程提交写操作时持有读锁，写入线程自身不取锁
+    private final ReentrantReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+    // 报文压缩策略，由ProxyListener在配置变更时更新
+    private volatile BlobStore blobStore = new BlobStore(true, 512);
+    // 已确认不在库中的URL（负缓存），插入提交后移除，超过上限时整体清空
+    private final Set<String> absentUrls = ConcurrentHashMap.newKeySet();
+    // 每次可能新增URL的提交后递增，查询期间有提交时不缓存查询结果
+    private final AtomicLong urlGeneration = new AtomicLong();
+    // 所选性能档位，批量导入进行中时临时使用BULK_IMPORT
+    private volatile PragmaProfile performanceProfile = PragmaProfile.BALANCED;
+    private final AtomicInteger bulkImportDepth = new AtomicInteger();
 
     public DatabaseManager() {
         this.gson = new Gson();
@@ -30,6 +140,7 @@ public class DatabaseManager {
     }
 
     private void initializeDatabase() {
+        lifecycleLock.writeLock().lock();
         try {
             // 确保加载SQLite驱动
             Class.forName("org.sqlite.JDBC");
@@ -51,9 +162,20 @@ public class DatabaseManager {
             try (Statement stmt = connection.createStatement()) {
                 stmt.execute("PRAGMA foreign_keys = ON");
                 stmt.execute("PRAGMA journal_mode = WAL");
+                // INSERT OR REPLACE删除旧行时也触发删除触发器，保持全文索引同步
+                stmt.execute("PRAGMA recursive_triggers = ON");
+                // 其他进程或检查点持有锁时等待而不是立即返回SQLITE_BUSY
+                stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
             }
             
-            createTables();
+            // 建表和迁移在写入线程启动前完成；当前线程持有lifecycleLock写锁，其他线程的写操作在锁上等待，只有当前线程访问写连接
+            readPool = new ReadConnectionPool(url, READ_POOL_SIZE, BUSY_TIMEOUT_MILLIS, READ_BORROW_TIMEOUT_MILLIS);
+            applyPerformanceProfile();
+            migrateSchema();
+            applyStorageConfig(loadConfig());
+            purgeUnreferencedBlobs();
+            pruneChangeTombstones();
+            batchInserter = new BatchInserter(this, connection, INSERT_BATCH_MAX_ROWS, INSERT_BATCH_MAX_DELAY_MILLIS, INSERT_QUEUE_CAPACITY);
             logger.info("数据库初始化成功: " + dbPath);
             
         } catch (ClassNotFoundException e) {
@@ -62,6 +184,8 @@ public class DatabaseManager {
         } catch (SQLException e) {
             logger.severe("数据库初始化失败: " + e.getMessage());
             throw new RuntimeException("数据库初始化失败", e);
+        } finally {
+            lifecycleLock.writeLock().unlock();
         }
     }
 
@@ -88,8 +212,32 @@ public class DatabaseManager {
                 check_status TEXT DEFAULT 'UNCHECKED',
                 notes TEXT,
                 timestamp INTEGER,
-                request_data BLOB,
-                response_data BLOB
+                original_request_length INTEGER DEFAULT 0,
+                original_response_length INTEGER DEFAULT 0,
+                request_truncated BOOLEAN DEFAULT 0,
+                response_truncated BOOLEAN DEFAULT 0,
+                canonical_key TEXT
+            )
+        """;
+
+        String createTemplatesTable = """
+            CREATE TABLE IF NOT EXISTS url_templates (
+                canonical_key TEXT PRIMARY KEY,
+                host TEXT,
+                variant_count INTEGER DEFAULT 0,
+                sample_urls TEXT,
+                first_seen INTEGER,
+                last_seen INTEGER
+            )
+        """;
+
+        // 去重后的报文内容，hash为原始内容的SHA-256，codec为存储编码
+        String createBlobsTable = """
+            CREATE TABLE IF NOT EXISTS blobs (
+                hash BLOB PRIMARY KEY,
+                codec INTEGER NOT NULL DEFAULT 0,
+                raw_length INTEGER NOT NULL,
+                data BLOB NOT NULL
             )
         """;
 
@@ -106,38 +254,149 @@ public class DatabaseManager {
             CREATE INDEX IF NOT EXISTS idx_status_code ON urls(status_code);
             CREATE INDEX IF NOT EXISTS idx_is_checked ON urls(is_checked);
             CREATE INDEX IF NOT EXISTS idx_check_status ON urls(check_status);
+            CREATE INDEX IF NOT EXISTS idx_timestamp_id ON urls(timestamp, id);
+            CREATE INDEX IF NOT EXISTS idx_templates_host ON url_templates(host);
         """;
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(createURLsTable);
             stmt.execute(createConfigTable);
-            stmt.execute(createIndexes);
+            stmt.execute(createTemplatesTable);
+            stmt.execute(createBlobsTable);
+            stmt.execute(CREATE_BODIES_SQL);
+            // 驱动只执行字符串中的第一条语句，索引需逐条创建
+            for (String ddl : createIndexes.split(";")) {
+                if (!ddl.isBlank()) {
+                    stmt.execute(ddl);
+                }
+            }
+            
+            boolean searchIndexExists = tableExists("url_fts");
+            stmt.execute(SearchIndex.CREATE_URL_FTS);
+            stmt.execute(SearchIndex.CREATE_BODY_FTS);
+            boolean summaryExists = tableExists("url_summary");
+            stmt.execute(URLSummary.CREATE_TABLE);
             
             // 检查现有表是否需要添加新字段
             addMissingColumns();
+            
+            // 触发器在报文表迁移之后创建，迁移时重命名的旧表会带走其上的触发器
+            for (String trigger : SearchIndex.TRIGGERS) {
+                stmt.execute(trigger);
+            }
+            for (String trigger : URLSummary.TRIGGERS) {
+                stmt.execute(trigger);
+            }
+            if (!searchIndexExists) {
+                rebuildSearchIndex();
+            }
+            if (!summaryExists) {
+                rebuildURLSummary();
+            }
         }
     }
 
     /**
-     * 添加缺失的列到现有表中
+     * 按PRAGMA user_version把数据库结构升级到SCHEMA_VERSION，已是最新版本时不做任何检查
      */
-    private void addMissingColumns() throws SQLException {
-        // 检查 request_data 字段是否存在
-        if (!columnExists("urls", "request_data")) {
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("ALTER TABLE urls ADD COLUMN request_data BLOB");
-                logger.info("添加 request_data 字段到 urls 表");
-            }
+    private void migrateSchema() throws SQLException {
+        int version = userVersion();
+        if (version > SCHEMA_VERSION) {
+            logger.warning("数据库结构版本 " + version + " 高于当前支持的版本 " + SCHEMA_VERSION + "，不做迁移");
+            return;
+        }
+        if (version == SCHEMA_VERSION) {
+            return;
         }
         
-        // 检查 response_data 字段是否存在
-        if (!columnExists("urls", "response_data")) {
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("ALTER TABLE urls ADD COLUMN response_data BLOB");
-                logger.info("添加 response_data 字段到 urls 表");
+        // 版本1：建表，并把没有版本号的旧数据库补齐到当前结构；各步骤可重复执行，中途失败后下次启动重做
+        if (version < 1) {
+            createTables();
+            setUserVersion(1);
+        }
+        // 版本2：urls表的变更序列
+        if (version < 2) {
+            migrate(2, () -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(URLChangeFeed.CREATE_TABLE);
+                    for (String trigger : URLChangeFeed.TRIGGERS) {
+                        stmt.execute(trigger);
+                    }
+                }
+                return null;
+            });
+        }
+        // 版本3：倒序存放的host，按域名查找其子域名时走索引
+        if (version < 3) {
+            migrate(3, () -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("ALTER TABLE urls ADD COLUMN reversed_host TEXT");
+                    stmt.execute("ALTER TABLE url_templates ADD COLUMN reversed_host TEXT");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_reversed_host ON urls(reversed_host)");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_templates_reversed_host ON url_templates(reversed_host)");
+                }
+                fillReversedHosts("urls");
+                fillReversedHosts("url_templates");
+                return null;
+            });
+        }
+        // 版本4：路径模板的变体草图，变体数改为草图的去重估计，不再跨会话累加
+        if (version < 4) {
+            migrate(4, () -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("ALTER TABLE url_templates ADD COLUMN variant_sketch BLOB");
+                }
+                seedTemplateSketches();
+                return null;
+            });
+        }
+        logger.info("数据库结构已从版本 " + version + " 升级到 " + SCHEMA_VERSION);
+    }
+
+    /**
+     * 执行一个迁移步骤，与版本号更新在同一事务中提交；版本1之后的结构变更都通过此方法添加
+     */
+    private void migrate(int targetVersion, SqlWork<Void> step) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            step.run();
+            setUserVersion(targetVersion);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private int userVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void setUserVersion(int version) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + version);
+        }
+    }
+
+    private boolean tableExists(String tableName) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE name = ?")) {
+            pstmt.setString(1, tableName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
             }
         }
-        
+    }
+
+    /**
+     * 添加缺失的列到现有表中
+     */
+    private void addMissingColumns() throws SQLException {
         // 检查 check_status 字段是否存在（兼容v7.0）
         if (!columnExists("urls", "check_status")) {
             try (Statement stmt = connection.createStatement()) {
@@ -156,331 +415,1819 @@ public class DatabaseManager {
                 logger.info("完成 check_status 字段数据迁移");
             }
         }
-    }
-
-    /**
-     * 检查表中是否存在指定列
-     */
-    private boolean columnExists(String tableName, String columnName) throws SQLException {
-        String sql = "PRAGMA table_info(" + tableName + ")";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            while (rs.next()) {
-                String name = rs.getString("name");
-                if (columnName.equals(name)) {
-                    return true;
+        
+        // 存储策略的截断信息字段
+        String[][] truncationColumns = {
+            {"original_request_length", "INTEGER DEFAULT 0"},
+            {"original_response_length", "INTEGER DEFAULT 0"},
+            {"request_truncated", "BOOLEAN DEFAULT 0"},
+            {"response_truncated", "BOOLEAN DEFAULT 0"}
+        };
+        for (String[] column : truncationColumns) {
+            if (!columnExists("urls", column[0])) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("ALTER TABLE urls ADD COLUMN " + column[0] + " " + column[1]);
+                    logger.info("添加 " + column[0] + " 字段到 urls 表");
                 }
             }
         }
-        return false;
+        
+        // 路径模板去重键，旧数据由refreshCanonicalKeys在后台回填
+        if (!columnExists("urls", "canonical_key")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE urls ADD COLUMN canonical_key TEXT");
+                logger.info("添加 canonical_key 字段到 urls 表");
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_canonical_key ON urls(canonical_key)");
+        }
+        
+        migrateBodiesTable();
+        migrateLegacyBodiesTable();
+        try (Statement stmt = connection.createStatement()) {
+            // 清理未引用报文时按哈希反查引用
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bodies_request_hash ON bodies(request_hash)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bodies_response_hash ON bodies(response_hash)");
+        }
     }
-
-    public void insertURL(URLEntry entry) {
-        if (connection == null) {
-            logger.severe("数据库连接为null，无法插入URL");
+    
+    /**
+     * 旧版本把报文存在urls表的request_data/response_data列中，迁移到报文存储后删除这两列
+     */
+    private void migrateBodiesTable() throws SQLException {
+        boolean hasRequestColumn = columnExists("urls", "request_data");
+        boolean hasResponseColumn = columnExists("urls", "response_data");
+        if (!hasRequestColumn && !hasResponseColumn) {
             return;
         }
         
-        String sql = """
-            INSERT OR REPLACE INTO urls 
-            (url, method, host, path, query, status_code, length, title, ip, is_internal, subdomain, is_checked, check_status, notes, timestamp, request_data, response_data)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-        """;
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, entry.getUrl());
-            pstmt.setString(2, entry.getMethod());
-            pstmt.setString(3, entry.getHost());
-            pstmt.setString(4, entry.getPath());
-            pstmt.setString(5, entry.getQuery());
-            pstmt.setInt(6, entry.getStatusCode());
-            pstmt.setInt(7, entry.getLength());
-            pstmt.setString(8, entry.getTitle());
-            pstmt.setString(9, entry.getIp());
-            pstmt.setBoolean(10, entry.isInternal());
-            pstmt.setString(11, entry.getSubdomain());
-            pstmt.setBoolean(12, entry.isChecked());
-            pstmt.setString(13, entry.getCheckStatus() != null ? entry.getCheckStatus().name() : "UNCHECKED");
-            pstmt.setString(14, entry.getNotes());
-            pstmt.setLong(15, entry.getTimestamp());
-            
-            // 存储原始 request 数据
-            if (entry.getRequestData() != null) {
-                pstmt.setBytes(16, entry.getRequestData());
-            } else {
-                pstmt.setNull(16, java.sql.Types.BLOB);
+        String requestColumn = hasRequestColumn ? "request_data" : "NULL";
+        String responseColumn = hasResponseColumn ? "response_data" : "NULL";
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            int moved = copyLegacyBodies("SELECT id, " + requestColumn + ", " + responseColumn + " FROM urls WHERE " +
+                (hasRequestColumn ? "request_data IS NOT NULL" : "0") + " OR " + (hasResponseColumn ? "response_data IS NOT NULL" : "0"), null);
+            if (hasRequestColumn) {
+                stmt.execute("ALTER TABLE urls DROP COLUMN request_data");
             }
-            
-            // 存储原始 response 数据
-            if (entry.getResponseData() != null) {
-                pstmt.setBytes(17, entry.getResponseData());
-            } else {
-                pstmt.setNull(17, java.sql.Types.BLOB);
+            if (hasResponseColumn) {
+                stmt.execute("ALTER TABLE urls DROP COLUMN response_data");
             }
-            
-            pstmt.executeUpdate();
+            connection.commit();
+            logger.info("已将 " + moved + " 条报文迁移到 bodies 表");
         } catch (SQLException e) {
-            logger.severe("插入URL失败: " + e.getMessage());
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
     }
-
-    public List<URLEntry> getAllURLs() {
-        List<URLEntry> urls = new ArrayList<>();
-        if (connection == null) {
-            logger.severe("数据库连接为null，无法获取URL列表");
-            return urls;
+    
+    /**
+     * 上一版本的bodies表直接保存报文内容，改为哈希引用后把内容迁移到blobs表
+     */
+    private void migrateLegacyBodiesTable() throws SQLException {
+        if (!columnExists("bodies", "request_data")) {
+            return;
         }
         
-        String sql = "SELECT * FROM urls ORDER BY timestamp DESC";
-
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                URLEntry entry = new URLEntry();
-                entry.setId(rs.getLong("id"));
-                entry.setUrl(rs.getString("url"));
-                entry.setMethod(rs.getString("method"));
-                entry.setHost(rs.getString("host"));
-                entry.setPath(rs.getString("path"));
-                entry.setQuery(rs.getString("query"));
-                entry.setStatusCode(rs.getInt("status_code"));
-                entry.setLength(rs.getInt("length"));
-                entry.setTitle(rs.getString("title"));
-                entry.setIp(rs.getString("ip"));
-                entry.setInternal(rs.getBoolean("is_internal"));
-                entry.setSubdomain(rs.getString("subdomain"));
-                entry.setChecked(rs.getBoolean("is_checked"));
-                
-                // 处理 check_status 字段
-                String checkStatusStr = rs.getString("check_status");
-                if (checkStatusStr != null && !checkStatusStr.isEmpty()) {
-                    try {
-                        entry.setCheckStatus(URLEntry.CheckStatus.valueOf(checkStatusStr));
-                    } catch (IllegalArgumentException e) {
-                        // 如果状态值无效，设为默认值
-                        entry.setCheckStatus(URLEntry.CheckStatus.UNCHECKED);
-                    }
-                } else {
-                    // 从旧的 is_checked 字段迁移
-                    entry.setCheckStatus(entry.isChecked() ? URLEntry.CheckStatus.DONE : URLEntry.CheckStatus.UNCHECKED);
-                }
-                
-                entry.setNotes(rs.getString("notes"));
-                entry.setTimestamp(rs.getLong("timestamp"));
-                
-                // 读取原始 request/response 数据
-                byte[] requestData = rs.getBytes("request_data");
-                if (requestData != null) {
-                    entry.setRequestData(requestData);
-                }
-                
-                byte[] responseData = rs.getBytes("response_data");
-                if (responseData != null) {
-                    entry.setResponseData(responseData);
-                }
-                
-                urls.add(entry);
-            }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE bodies RENAME TO bodies_legacy");
+            stmt.execute(CREATE_BODIES_SQL);
+            int moved = copyLegacyBodies("SELECT url_id, request_data, response_data FROM bodies_legacy", null);
+            stmt.execute("DROP TABLE bodies_legacy");
+            connection.commit();
+            logger.info("已将 " + moved + " 条报文迁移到去重存储");
         } catch (SQLException e) {
-            logger.severe("获取URL列表失败: " + e.getMessage());
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
-
-        return urls;
     }
-
-    public List<URLEntry> getURLsByHost(String host) {
-        List<URLEntry> urls = new ArrayList<>();
-        String sql = "SELECT * FROM urls WHERE host = ? ORDER BY timestamp DESC";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, host);
-            ResultSet rs = pstmt.executeQuery();
-
+    
+    /**
+     * 逐行把(id, 请求, 响应)形式的旧报文写入报文存储，在调用方的事务中执行；copiedIds不为null时记录写入的id
+     */
+    private int copyLegacyBodies(String selectSql, List<Long> copiedIds) throws SQLException {
+        int moved = 0;
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery(selectSql);
+             BlobStore.Writer writer = blobStore.openWriter(connection);
+             PreparedStatement insert = connection.prepareStatement(
+                 "INSERT OR REPLACE INTO bodies (url_id, request_hash, response_hash) VALUES (?, ?, ?)")) {
             while (rs.next()) {
-                URLEntry entry = new URLEntry();
-                entry.setId(rs.getLong("id"));
-                entry.setUrl(rs.getString("url"));
-                entry.setMethod(rs.getString("method"));
-                entry.setHost(rs.getString("host"));
-                entry.setPath(rs.getString("path"));
-                entry.setQuery(rs.getString("query"));
-                entry.setStatusCode(rs.getInt("status_code"));
-                entry.setLength(rs.getInt("length"));
-                entry.setTitle(rs.getString("title"));
-                entry.setIp(rs.getString("ip"));
-                entry.setInternal(rs.getBoolean("is_internal"));
-                entry.setSubdomain(rs.getString("subdomain"));
-                entry.setChecked(rs.getBoolean("is_checked"));
-                
-                // 处理 check_status 字段
-                String checkStatusStr = rs.getString("check_status");
-                if (checkStatusStr != null && !checkStatusStr.isEmpty()) {
-                    try {
-                        entry.setCheckStatus(URLEntry.CheckStatus.valueOf(checkStatusStr));
-                    } catch (IllegalArgumentException e) {
-                        // 如果状态值无效，设为默认值
-                        entry.setCheckStatus(URLEntry.CheckStatus.UNCHECKED);
-                    }
-                } else {
-                    // 从旧的 is_checked 字段迁移
-                    entry.setCheckStatus(entry.isChecked() ? URLEntry.CheckStatus.DONE : URLEntry.CheckStatus.UNCHECKED);
-                }
-                
-                entry.setNotes(rs.getString("notes"));
-                entry.setTimestamp(rs.getLong("timestamp"));
-                
-                // 读取原始 request/response 数据
-                byte[] requestData = rs.getBytes("request_data");
-                if (requestData != null) {
-                    entry.setRequestData(requestData);
-                }
-                
-                byte[] responseData = rs.getBytes("response_data");
-                if (responseData != null) {
-                    entry.setResponseData(responseData);
+                insert.setLong(1, rs.getLong(1));
+                insert.setBytes(2, writer.put(rs.getBytes(2)));
+                insert.setBytes(3, writer.put(rs.getBytes(3)));
+                insert.executeUpdate();
+                if (copiedIds != null) {
+                    copiedIds.add(rs.getLong(1));
                 }
-                
-                urls.add(entry);
+                moved++;
             }
-        } catch (SQLException e) {
-            logger.severe("按主机获取URL失败: " + e.getMessage());
         }
-
-        return urls;
+        return moved;
     }
-
-    public void updateURL(URLEntry entry) {
-        String sql = """
-            UPDATE urls SET 
-            method=?, host=?, path=?, query=?, status_code=?, length=?, title=?, ip=?, 
-            is_internal=?, subdomain=?, is_checked=?, check_status=?, notes=?, request_data=?, response_data=?
-            WHERE id=?
-        """;
-
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, entry.getMethod());
-            pstmt.setString(2, entry.getHost());
-            pstmt.setString(3, entry.getPath());
-            pstmt.setString(4, entry.getQuery());
-            pstmt.setInt(5, entry.getStatusCode());
-            pstmt.setInt(6, entry.getLength());
-            pstmt.setString(7, entry.getTitle());
-            pstmt.setString(8, entry.getIp());
-            pstmt.setBoolean(9, entry.isInternal());
-            pstmt.setString(10, entry.getSubdomain());
-            pstmt.setBoolean(11, entry.isChecked());
-            pstmt.setString(12, entry.getCheckStatus() != null ? entry.getCheckStatus().name() : "UNCHECKED");
-            pstmt.setString(13, entry.getNotes());
-            
-            // 更新原始 request 数据
-            if (entry.getRequestData() != null) {
-                pstmt.setBytes(14, entry.getRequestData());
-            } else {
-                pstmt.setNull(14, java.sql.Types.BLOB);
-            }
-            
-            // 更新原始 response 数据
-            if (entry.getResponseData() != null) {
-                pstmt.setBytes(15, entry.getResponseData());
-            } else {
-                pstmt.setNull(15, java.sql.Types.BLOB);
-            }
-            
-            pstmt.setLong(16, entry.getId());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.severe("更新URL失败: " + e.getMessage());
+    
+    /**
+     * 设置数据库性能档位，写连接的参数在写入线程上设置，只读连接在下次借出时设置
+     * 批量导入进行中时只记录档位，导入结束后生效。线程安全
+     */
+    public void setPerformanceProfile(DomainConfig.DatabaseProfile profile) {
+        PragmaProfile next = PragmaProfile.of(profile);
+        if (next == performanceProfile) {
+            return;
         }
-    }
-
-    public void deleteURL(long id) {
-        String sql = "DELETE FROM urls WHERE id = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            pstmt.executeUpdate();
+        performanceProfile = next;
+        try {
+            applyPerformanceProfile();
         } catch (SQLException e) {
-            logger.severe("删除URL失败: " + e.getMessage());
+            logger.severe("设置数据库性能参数失败: " + e.getMessage());
         }
     }
 
-    public void saveConfig(DomainConfig config) {
-        String sql = "INSERT OR REPLACE INTO config (id, config_data) VALUES (1, ?)";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            String configJson = gson.toJson(config);
-            pstmt.setString(1, configJson);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.severe("保存配置失败: " + e.getMessage());
+    /**
+     * 开始批量导入，临时切换到批量导入参数；必须与endBulkImport成对调用，可嵌套
+     */
+    public void beginBulkImport() {
+        if (bulkImportDepth.getAndIncrement() == 0) {
+            try {
+                applyPerformanceProfile();
+            } catch (SQLException e) {
+                logger.severe("切换批量导入参数失败: " + e.getMessage());
+            }
         }
     }
 
-    public DomainConfig loadConfig() {
-        String sql = "SELECT config_data FROM config WHERE id = 1";
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (rs.next()) {
-                String configJson = rs.getString("config_data");
-                return gson.fromJson(configJson, DomainConfig.class);
-            }
+    /**
+     * 结束批量导入，恢复所选档位并做一次检查点，把导入期间积累的WAL写回数据库文件
+     * 恢复参数的任务排在此前提交的插入之后，导入的数据仍按批量导入参数写入
+     */
+    public void endBulkImport() {
+        if (bulkImportDepth.decrementAndGet() != 0) {
+            return;
+        }
+        try {
+            applyPerformanceProfile();
+            write(() -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                }
+                return null;
+            });
         } catch (SQLException e) {
-            logger.severe("加载配置失败: " + e.getMessage());
+            logger.severe("恢复数据库性能参数失败: " + e.getMessage());
         }
-        
-        return new DomainConfig(); // 返回默认配置
     }
 
-    public List<String> getDistinctHosts() {
-        List<String> hosts = new ArrayList<>();
-        String sql = "SELECT DISTINCT host FROM urls ORDER BY host";
-
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                hosts.add(rs.getString("host"));
+    private void applyPerformanceProfile() throws SQLException {
+        PragmaProfile profile = bulkImportDepth.get() > 0 ? PragmaProfile.BULK_IMPORT : performanceProfile;
+        write(() -> {
+            try (Statement stmt = connection.createStatement()) {
+                for (String pragma : profile.writerPragmas()) {
+                    stmt.execute(pragma);
+                }
             }
-        } catch (SQLException e) {
-            logger.severe("获取主机列表失败: " + e.getMessage());
+            return null;
+        });
+        ReadConnectionPool pool = readPool;
+        if (pool != null) {
+            pool.setSessionPragmas(profile.connectionPragmas());
         }
-
-        return hosts;
+        logger.info("数据库性能参数: " + profile);
     }
 
-    public void clearDatabase() {
-        String sql = "DELETE FROM urls";
-        
-        try (Statement stmt = connection.createStatement()) {
-            stmt.executeUpdate(sql);
-            logger.info("数据库清空成功");
-        } catch (SQLException e) {
-            logger.severe("清空数据库失败: " + e.getMessage());
-        }
+    /**
+     * 按项目配置设置报文压缩和性能档位，打开数据库和保存配置时调用
+     */
+    private void applyStorageConfig(DomainConfig config) {
+        DomainConfig storage = config != null ? config : new DomainConfig();
+        setBodyCompression(storage.isBodyCompressionEnabled(), storage.getBodyCompressionMinBytes());
+        setPerformanceProfile(storage.getDatabaseProfile());
     }
 
-    public void clearAllData() {
-        clearDatabase();
+    /**
+     * 设置报文压缩策略，只影响之后新写入的报文
+     */
+    public void setBodyCompression(boolean enabled, int minBytes) {
+        this.blobStore = new BlobStore(enabled, minBytes);
     }
     
     /**
-     * 切换到新的数据库文件
+     * 设置计算canonical_key使用的规范化规则
      */
-    public void switchDatabase(String dbPath) throws SQLException {
-        // 关闭当前连接
-        close();
-        
-        // 切换到新路径
-        this.currentDbPath = dbPath;
-        
-        // 重新初始化数据库
-        initializeDatabase();
-        
-        logger.info("已切换到数据库: " + dbPath);
+    public void setPathCanonicalizer(PathCanonicalizer pathCanonicalizer) {
+        this.pathCanonicalizer = pathCanonicalizer != null ? pathCanonicalizer : PathCanonicalizer.DEFAULT;
+    }
+    
+    public PathCanonicalizer getPathCanonicalizer() {
+        return pathCanonicalizer;
+    }
+
+    /**
+     * 检查表中是否存在指定列
+     */
+    private boolean columnExists(String tableName, String columnName) throws SQLException {
+        String sql = "PRAGMA table_info(" + tableName + ")";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (columnName.equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写操作，在写入线程上执行并只使用写连接
+     */
+    private interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * 在写入线程上执行写操作并等待完成；已在写入线程上，或正在打开数据库、写入线程尚未启动时直接执行
+     */
+    private <T> T write(SqlWork<T> work) throws SQLException {
+        CompletableFuture<T> result = submitToWriter(inserter -> inserter.execute(work::run));
+        if (result == null) {
+            if (isWriterThread() || lifecycleLock.isWriteLockedByCurrentThread()) {
+                return work.run();
+            }
+            throw new SQLException("数据库未打开");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待写入时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("写入失败: " + cause, cause);
+        }
+    }
+
+    /**
+     * 把工作提交给当前的写入线程，切换数据库期间等待切换完成；只有入队在读锁内，等待结果不占用锁
+     * 当前线程就是写入线程或没有写入线程时返回null，由调用方决定直接执行还是失败
+     */
+    private <T> T submitToWriter(java.util.function.Function<BatchInserter, T> submit) {
+        // 写入线程不取锁：关闭时持有写锁的线程在等待它写完队列
+        if (isWriterThread()) {
+            return null;
+        }
+        lifecycleLock.readLock().lock();
+        try {
+            BatchInserter inserter = batchInserter;
+            return inserter != null ? submit.apply(inserter) : null;
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    private boolean isWriterThread() {
+        BatchInserter inserter = batchInserter;
+        return inserter != null && inserter.isWriterThread();
+    }
+
+    /**
+     * 从只读连接池借用连接，须在try-with-resources中使用
+     */
+    private ReadConnectionPool.Lease read() throws SQLException {
+        ReadConnectionPool pool = readPool;
+        if (pool == null) {
+            throw new SQLException("数据库未打开");
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * 同步插入一条URL，元数据和报文在同一事务中写入；线程安全，阻塞到提交
+     */
+    public void insertURL(URLEntry entry) {
+        insertURLs(Collections.singletonList(entry));
+    }
+
+    /**
+     * 在一个事务中批量插入，复用同一个PreparedStatement；整批失败时逐条重试，有条目写入失败时返回false
+     * 线程安全，在写入线程上执行并阻塞到提交
+     */
+    public boolean insertURLs(List<URLEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return true;
+        }
+        try {
+            return write(() -> writeURLs(connection, entries).isEmpty());
+        } catch (SQLException e) {
+            logger.severe("批量插入URL失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 批量插入的实现，只在写入线程上用该线程所属的写连接调用，返回写入失败的条目
+     * 整批事务失败（如某一行违反约束）时回滚，再逐条各用一个事务重试，只有出错的条目失败
+     */
+    List<URLEntry> writeURLs(Connection connection, List<URLEntry> entries) {
+        if (connection == null) {
+            logger.severe("数据库连接为null，无法插入URL");
+            return entries;
+        }
+        
+        try {
+            writeURLBatch(connection, entries);
+            return Collections.emptyList();
+        } catch (SQLException | RuntimeException e) {
+            if (entries.size() == 1) {
+                logger.severe("插入URL失败: " + entries.get(0).getUrl() + " - " + e.getMessage());
+                return entries;
+            }
+            logger.warning("批量插入URL失败，逐条重试: " + e.getMessage());
+        }
+        
+        List<URLEntry> failed = new ArrayList<>();
+        for (URLEntry entry : entries) {
+            try {
+                writeURLBatch(connection, Collections.singletonList(entry));
+            } catch (SQLException | RuntimeException e) {
+                logger.severe("插入URL失败: " + entry.getUrl() + " - " + e.getMessage());
+                failed.add(entry);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 在一个事务中写入一批URL及其报文，任何一行出错时整批回滚并抛出
+     */
+    private void writeURLBatch(Connection connection, List<URLEntry> entries) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_URL_SQL);
+             PreparedStatement bodies = connection.prepareStatement(UPSERT_BODIES_BY_URL_SQL);
+             PreparedStatement bodyIndex = connection.prepareStatement(INDEX_BODIES_BY_URL_SQL);
+             BlobStore.Writer blobs = blobStore.openWriter(connection)) {
+            boolean hasBodies = false;
+            for (URLEntry entry : entries) {
+                bindInsert(pstmt, entry);
+                pstmt.addBatch();
+                if (bindBodies(bodies, bodyIndex, blobs, entry)) {
+                    bodies.addBatch();
+                    bodyIndex.addBatch();
+                    hasBodies = true;
+                }
+            }
+            pstmt.executeBatch();
+            if (hasBodies) {
+                bodies.executeBatch();
+                bodyIndex.executeBatch();
+            }
+            connection.commit();
+            invalidateAbsentUrls(entries);
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 把插入交给后台写入线程，按批合并为事务；返回的Future在所在批次提交后完成
+     * 线程安全，不等待写入；切换数据库期间等待切换完成后入队，数据库已关闭时返回失败的Future
+     */
+    public CompletableFuture<Void> queueInsert(URLEntry entry) {
+        CompletableFuture<Void> saved = submitToWriter(inserter -> inserter.submit(entry));
+        if (saved != null) {
+            return saved;
+        }
+        // 写入线程自身同步写入
+        return insertURLs(Collections.singletonList(entry)) ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.failedFuture(new SQLException("写入URL失败: " + entry.getUrl()));
+    }
+
+    /**
+     * 等待此前排队的插入全部提交，超时返回false；导入等需要确认落盘的调用方在结束时调用
+     * 线程安全；在写入线程上调用时立即返回
+     */
+    public boolean flushInserts(long timeout, TimeUnit unit) {
+        CompletableFuture<Void> flushed = submitToWriter(BatchInserter::flush);
+        if (flushed == null) {
+            return true;
+        }
+        try {
+            flushed.get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void bindInsert(PreparedStatement pstmt, URLEntry entry) throws SQLException {
+        // 未经Proxy采集的条目（扫描、导入）在这里补上去重键
+        if (entry.getCanonicalKey() == null) {
+            entry.setCanonicalKey(pathCanonicalizer.canonicalKey(entry.getUrl()));
+        }
+
+        pstmt.setString(1, entry.getUrl());
+        pstmt.setString(2, entry.getMethod());
+        pstmt.setString(3, entry.getHost());
+        pstmt.setString(4, entry.getPath());
+        pstmt.setString(5, entry.getQuery());
+        pstmt.setInt(6, entry.getStatusCode());
+        pstmt.setInt(7, entry.getLength());
+        pstmt.setString(8, entry.getTitle());
+        pstmt.setString(9, entry.getIp());
+        pstmt.setBoolean(10, entry.isInternal());
+        pstmt.setString(11, entry.getSubdomain());
+        pstmt.setBoolean(12, entry.isChecked());
+        pstmt.setString(13, entry.getCheckStatus() != null ? entry.getCheckStatus().name() : "UNCHECKED");
+        pstmt.setString(14, entry.getNotes());
+        pstmt.setLong(15, entry.getTimestamp());
+        pstmt.setInt(16, entry.getOriginalRequestLength());
+        pstmt.setInt(17, entry.getOriginalResponseLength());
+        pstmt.setBoolean(18, entry.isRequestTruncated());
+        pstmt.setBoolean(19, entry.isResponseTruncated());
+        pstmt.setString(20, entry.getCanonicalKey());
+        pstmt.setString(21, reverseHost(entry.getHost()));
+    }
+
+    /**
+     * 保存报文并绑定哈希参数和索引文本（url_id由url定位），条目两侧都没有报文时返回false，不写bodies表
+     */
+    private boolean bindBodies(PreparedStatement pstmt, PreparedStatement index, BlobStore.Writer blobs,
+                               URLEntry entry) throws SQLException {
+        if (!entry.hasRequestData() && !entry.hasResponseData()) {
+            return false;
+        }
+        
+        // 条目持有ByteArray时在这里唯一一次转换为byte[]
+        byte[] requestData = entry.getRequestData();
+        byte[] responseData = entry.getResponseData();
+        pstmt.setBytes(1, blobs.put(requestData));
+        pstmt.setBytes(2, blobs.put(responseData));
+        pstmt.setString(3, entry.getUrl());
+        
+        index.setString(1, SearchIndex.indexableText(requestData));
+        index.setString(2, SearchIndex.indexableText(responseData));
+        index.setString(3, entry.getUrl());
+        return true;
+    }
+
+    /**
+     * 获取全部URL的元数据，不读取报文；报文通过getBodies按需加载。线程安全，使用只读连接
+     */
+    public List<URLEntry> getAllURLs() {
+        List<URLEntry> urls = new ArrayList<>();
+        String sql = "SELECT " + URL_METADATA_COLUMNS + " FROM urls ORDER BY timestamp DESC";
+
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            URLRowMapper mapper = URLRowMapper.forResultSet(rs, true);
+            while (rs.next()) {
+                urls.add(mapper.map(rs));
+            }
+            logMappingCost("获取URL列表", mapper);
+        } catch (SQLException e) {
+            logger.severe("获取URL列表失败: " + e.getMessage());
+        }
+
+        return urls;
+    }
+
+    /**
+     * 获取指定主机的URL元数据，不读取报文。线程安全，使用只读连接
+     */
+    public List<URLEntry> getURLsByHost(String host) {
+        List<URLEntry> urls = new ArrayList<>();
+        String sql = "SELECT " + URL_METADATA_COLUMNS + " FROM urls WHERE host = ? ORDER BY timestamp DESC";
+
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            pstmt.setString(1, host);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                URLRowMapper mapper = URLRowMapper.forResultSet(rs, true);
+                while (rs.next()) {
+                    urls.add(mapper.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("按主机获取URL失败: " + e.getMessage());
+        }
+
+        return urls;
+    }
+
+    /**
+     * 按id获取URL元数据，不读取报文，已删除的id不返回。线程安全，使用只读连接
+     */
+    public List<URLEntry> getURLsByIds(Collection<Long> ids) {
+        List<URLEntry> urls = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return urls;
+        }
+        
+        List<Long> idList = new ArrayList<>(ids);
+        String sql = "SELECT " + URL_METADATA_COLUMNS + " FROM urls WHERE id IN (SELECT value FROM json_each(?))";
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            for (int start = 0; start < idList.size(); start += EXISTS_BATCH_SIZE) {
+                pstmt.setString(1, gson.toJson(idList.subList(start, Math.min(idList.size(), start + EXISTS_BATCH_SIZE))));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    URLRowMapper mapper = URLRowMapper.forResultSet(rs, true);
+                    while (rs.next()) {
+                        urls.add(mapper.map(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("按id获取URL失败: " + e.getMessage());
+        }
+        return urls;
+    }
+
+    /**
+     * 当前最新的变更序号，界面全量加载前记录，之后用changesSince增量同步。线程安全，使用只读连接
+     */
+    public long currentChangeSeq() {
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(URLChangeFeed.CURRENT_SEQ_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            logger.severe("读取变更序号失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 读取变更序号sinceSeq之后最多limit条URL变更，按序号顺序；hasMore为true时从返回的lastSeq继续读取
+     * 只包含已提交的变更，排队中的插入在提交后出现。线程安全，使用只读连接
+     */
+    public URLChangeSet changesSince(long sinceSeq, int limit) {
+        URLChangeSet changes = new URLChangeSet(sinceSeq);
+        if (limit <= 0) {
+            return changes;
+        }
+        
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(URLChangeFeed.CHANGES_SINCE_SQL)) {
+            pstmt.setLong(1, sinceSeq);
+            pstmt.setInt(2, limit);
+            int rows = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    long id = rs.getLong(1);
+                    boolean created = rs.getLong(3) > sinceSeq;
+                    if (rs.getBoolean(4)) {
+                        // 这段时间内新增又删除的URL调用方从未见过，不需要通知
+                        if (!created) {
+                            changes.getDeletedIds().add(id);
+                        }
+                    } else if (created) {
+                        changes.getInsertedIds().add(id);
+                    } else {
+                        changes.getUpdatedIds().add(id);
+                    }
+                    changes.setLastSeq(rs.getLong(2));
+                }
+            }
+            changes.setHasMore(rows == limit);
+        } catch (SQLException e) {
+            logger.severe("读取URL变更失败: " + e.getMessage());
+        }
+        return changes;
+    }
+
+    /**
+     * 清理已删除URL的变更记录，只在打开数据库时调用
+     */
+    private void pruneChangeTombstones() {
+        try {
+            int pruned = write(() -> {
+                try (Statement stmt = connection.createStatement()) {
+                    return stmt.executeUpdate(URLChangeFeed.PRUNE_TOMBSTONES_SQL);
+                }
+            });
+            if (pruned > 0) {
+                logger.info("已清理 " + pruned + " 条已删除URL的变更记录");
+            }
+        } catch (SQLException e) {
+            logger.severe("清理变更记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按(timestamp, id)键集分页，顺序与getAllURLs相同（时间倒序）
+     * 传入上一页最后一条的timestamp和id取下一页，第一页传Long.MAX_VALUE；返回的条目数小于limit时表示已到末尾
+     * 线程安全，使用只读连接
+     */
+    public List<URLEntry> getURLsPage(long afterTimestamp, long afterId, int limit) {
+        List<URLEntry> urls = new ArrayList<>();
+        String sql = "SELECT " + URL_METADATA_COLUMNS + " FROM urls " +
+            "WHERE timestamp < ? OR (timestamp = ? AND id < ?) ORDER BY timestamp DESC, id DESC LIMIT ?";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            pstmt.setLong(1, afterTimestamp);
+            pstmt.setLong(2, afterTimestamp);
+            pstmt.setLong(3, afterId);
+            pstmt.setInt(4, Math.max(1, limit));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                URLRowMapper mapper = URLRowMapper.forResultSet(rs, true);
+                while (rs.next()) {
+                    urls.add(mapper.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("分页获取URL失败: " + e.getMessage());
+        }
+        return urls;
+    }
+
+    /**
+     * 按页遍历全部URL元数据（时间倒序），每页读取完成后结果集即关闭，回调中可以修改或删除本页的行
+     * 线程安全，回调在调用线程上执行，执行回调时不占用只读连接
+     */
+    public void forEachURLPage(int pageSize, Consumer<List<URLEntry>> pageConsumer) {
+        int limit = Math.max(1, pageSize);
+        long lastTimestamp = Long.MAX_VALUE;
+        long lastId = Long.MAX_VALUE;
+        List<URLEntry> page;
+        do {
+            page = getURLsPage(lastTimestamp, lastId, limit);
+            if (page.isEmpty()) {
+                break;
+            }
+            URLEntry last = page.get(page.size() - 1);
+            lastTimestamp = last.getTimestamp();
+            lastId = last.getId();
+            pageConsumer.accept(page);
+        } while (page.size() == limit);
+    }
+
+    /**
+     * 逐行遍历全部URL元数据（时间倒序），只前向读取结果集，内存占用与总行数无关
+     * 遍历期间占用一个只读连接，回调中的修改不影响本次遍历看到的数据；需要边读边改时使用forEachURLPage
+     */
+    public void forEachURL(Consumer<URLEntry> consumer) {
+        try (Stream<URLEntry> stream = streamURLs()) {
+            stream.forEach(consumer);
+        }
+    }
+
+    /**
+     * 以Stream形式逐行读取全部URL元数据，必须在try-with-resources中使用以关闭底层结果集并归还只读连接
+     * 线程安全；返回的Stream只能在一个线程中消费
+     */
+    public Stream<URLEntry> streamURLs() {
+        String sql = "SELECT " + URL_METADATA_COLUMNS + " FROM urls ORDER BY timestamp DESC, id DESC";
+        ReadConnectionPool.Lease lease = null;
+        Statement stmt = null;
+        try {
+            lease = read();
+            stmt = lease.connection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery(sql);
+            URLRowMapper mapper = URLRowMapper.forResultSet(rs, true);
+            Statement owner = stmt;
+            ReadConnectionPool.Lease ownerLease = lease;
+            Spliterator<URLEntry> spliterator = new Spliterators.AbstractSpliterator<URLEntry>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super URLEntry> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(mapper.map(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("读取URL失败: " + e.getMessage(), e);
+                    }
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                logMappingCost("遍历URL", mapper);
+                try {
+                    owner.close();
+                } catch (SQLException e) {
+                    logger.warning("关闭结果集失败: " + e.getMessage());
+                } finally {
+                    ownerLease.close();
+                }
+            });
+        } catch (SQLException e) {
+            logger.severe("遍历URL失败: " + e.getMessage());
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                    // 已在出错路径上
+                }
+            }
+            if (lease != null) {
+                lease.close();
+            }
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * 记录行映射的耗时，用于确认映射不是批量读取的瓶颈
+     */
+    private void logMappingCost(String operation, URLRowMapper mapper) {
+        if (logger.isLoggable(Level.FINE) && mapper.getRowCount() > 0) {
+            logger.fine(String.format("%s: 映射 %d 行，耗时 %.1f ms", operation, mapper.getRowCount(),
+                mapper.getMappingNanos() / 1_000_000.0));
+        }
+    }
+
+    /**
+     * 更新URL元数据；条目持有报文时一并更新bodies表，未加载报文的一侧保持不变
+     */
+    public void updateURL(URLEntry entry) {
+        String sql = """
+            UPDATE urls SET 
+            method=?, host=?, path=?, query=?, status_code=?, length=?, title=?, ip=?, 
+            is_internal=?, subdomain=?, is_checked=?, check_status=?, notes=?,
+            original_request_length=?, original_response_length=?, request_truncated=?, response_truncated=?, reversed_host=?
+            WHERE id=?
+        """;
+        String bodiesSql = """
+            INSERT INTO bodies (url_id, request_hash, response_hash) VALUES (?, ?, ?)
+            ON CONFLICT(url_id) DO UPDATE SET
+                request_hash = COALESCE(excluded.request_hash, request_hash),
+                response_hash = COALESCE(excluded.response_hash, response_hash)
+        """;
+
+        try {
+            write(() -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setString(1, entry.getMethod());
+                    pstmt.setString(2, entry.getHost());
+                    pstmt.setString(3, entry.getPath());
+                    pstmt.setString(4, entry.getQuery());
+                    pstmt.setInt(5, entry.getStatusCode());
+                    pstmt.setInt(6, entry.getLength());
+                    pstmt.setString(7, entry.getTitle());
+                    pstmt.setString(8, entry.getIp());
+                    pstmt.setBoolean(9, entry.isInternal());
+                    pstmt.setString(10, entry.getSubdomain());
+                    pstmt.setBoolean(11, entry.isChecked());
+                    pstmt.setString(12, entry.getCheckStatus() != null ? entry.getCheckStatus().name() : "UNCHECKED");
+                    pstmt.setString(13, entry.getNotes());
+                    pstmt.setInt(14, entry.getOriginalRequestLength());
+                    pstmt.setInt(15, entry.getOriginalResponseLength());
+                    pstmt.setBoolean(16, entry.isRequestTruncated());
+                    pstmt.setBoolean(17, entry.isResponseTruncated());
+                    pstmt.setString(18, reverseHost(entry.getHost()));
+                    pstmt.setLong(19, entry.getId());
+                    pstmt.executeUpdate();
+            
+                    if (entry.hasRequestData() || entry.hasResponseData()) {
+                        try (PreparedStatement bodies = connection.prepareStatement(bodiesSql);
+                             BlobStore.Writer blobs = blobStore.openWriter(connection)) {
+                            bodies.setLong(1, entry.getId());
+                            bodies.setBytes(2, blobs.put(entry.getRequestData()));
+                            bodies.setBytes(3, blobs.put(entry.getResponseData()));
+                            bodies.executeUpdate();
+                        }
+                        indexBodies(entry);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.severe("更新URL失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按数据库中当前的两侧报文重建一条URL的报文索引（更新可能只替换了一侧）
+     */
+    private void indexBodies(URLEntry entry) throws SQLException {
+        MessageBodies bodies = readBodies(connection, entry);
+        if (bodies == null) {
+            return;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(INDEX_BODY_TEXT_SQL)) {
+            pstmt.setLong(1, entry.getId());
+            pstmt.setString(2, SearchIndex.indexableText(bodies.getRequestData()));
+            pstmt.setString(3, SearchIndex.indexableText(bodies.getResponseData()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 按需读取一条URL的原始报文：有id时按id查找，否则按url定位；没有存储报文时返回null
+     * 线程安全，使用只读连接
+     */
+    public MessageBodies getBodies(URLEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        
+        try (ReadConnectionPool.Lease lease = read()) {
+            return readBodies(lease.connection(), entry);
+        } catch (SQLException e) {
+            logger.severe("读取报文失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private MessageBodies readBodies(Connection conn, URLEntry entry) throws SQLException {
+        boolean byId = entry.getId() > 0;
+        String sql = "SELECT rq.codec, rq.raw_length, rq.data, rs.codec, rs.raw_length, rs.data FROM bodies b " +
+            "LEFT JOIN blobs rq ON rq.hash = b.request_hash LEFT JOIN blobs rs ON rs.hash = b.response_hash " +
+            (byId ? "WHERE b.url_id = ?" : "WHERE b.url_id = (SELECT id FROM urls WHERE url = ?)");
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (byId) {
+                pstmt.setLong(1, entry.getId());
+            } else {
+                pstmt.setString(1, entry.getUrl());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new MessageBodies(BlobStore.decode(rs.getInt(1), rs.getBytes(3), rs.getInt(2)),
+                        BlobStore.decode(rs.getInt(4), rs.getBytes(6), rs.getInt(5)));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 全文搜索URL、标题、备注和文本报文（子串匹配，忽略大小写），按相关度返回命中的URL id
+     * 少于3个字符的搜索词无法使用trigram索引，只按时间倒序搜索URL、标题和备注
+     * 线程安全，使用只读连接
+     */
+    public List<Long> search(String query, int offset, int limit) {
+        List<Long> ids = new ArrayList<>();
+        if (query == null || query.isEmpty() || limit <= 0) {
+            return ids;
+        }
+        
+        boolean useIndex = searchesBodies(query);
+        String sql = useIndex ? SearchIndex.SEARCH_SQL : SearchIndex.SHORT_SEARCH_SQL;
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            int index = 1;
+            if (useIndex) {
+                String phrase = SearchIndex.matchPhrase(query);
+                pstmt.setString(index++, phrase);
+                pstmt.setString(index++, phrase);
+            } else {
+                String pattern = SearchIndex.likePattern(query);
+                pstmt.setString(index++, pattern);
+                pstmt.setString(index++, pattern);
+                pstmt.setString(index++, pattern);
+            }
+            pstmt.setInt(index++, limit);
+            pstmt.setInt(index, Math.max(0, offset));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("全文搜索失败: " + e.getMessage());
+        }
+        return ids;
+    }
+
+    public List<Long> search(String query, int limit) {
+        return search(query, 0, limit);
+    }
+
+    /**
+     * 全文搜索的全部命中id，不排序也不截断，用于按搜索词筛选；按id分页查询，每页单独借用只读连接
+     * 少于3个字符的搜索词只搜索URL、标题和备注。线程安全，耗时与命中数相关，不要在EDT上调用
+     */
+    public Set<Long> searchIds(String query) {
+        Set<Long> ids = new HashSet<>();
+        if (query == null || query.isEmpty()) {
+            return ids;
+        }
+        
+        boolean useIndex = searchesBodies(query);
+        String sql = useIndex ? SearchIndex.SEARCH_IDS_SQL : SearchIndex.SHORT_SEARCH_IDS_SQL;
+        String pattern = useIndex ? SearchIndex.matchPhrase(query) : SearchIndex.likePattern(query);
+        long lastId = 0;
+        int read;
+        do {
+            read = 0;
+            try (ReadConnectionPool.Lease lease = read();
+                 PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+                pstmt.setString(1, pattern);
+                pstmt.setLong(2, lastId);
+                pstmt.setInt(3, SEARCH_PAGE_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        ids.add(lastId);
+                        read++;
+                    }
+                }
+            } catch (SQLException e) {
+                logger.severe("全文搜索失败: " + e.getMessage());
+                break;
+            }
+        } while (read == SEARCH_PAGE_SIZE);
+        return ids;
+    }
+
+    /**
+     * 搜索词是否会搜索报文：trigram索引要求至少3个字符，更短的搜索词只搜索URL、标题和备注
+     */
+    public static boolean searchesBodies(String query) {
+        return query != null && query.codePointCount(0, query.length()) >= SearchIndex.MIN_QUERY_LENGTH;
+    }
+
+    /**
+     * 按当前数据重建全文索引，打开没有索引的旧数据库时自动调用
+     * 线程安全，在写入线程上执行，期间其他写操作排队等待
+     */
+    public void rebuildSearchIndex() throws SQLException {
+        write(() -> {
+            writeSearchIndex();
+            return null;
+        });
+    }
+
+    private void writeSearchIndex() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement index = connection.prepareStatement(INDEX_BODY_TEXT_SQL)) {
+            stmt.execute("INSERT INTO url_fts (url_fts) VALUES ('delete-all')");
+            stmt.execute("INSERT INTO body_fts (body_fts) VALUES ('delete-all')");
+            int urls = stmt.executeUpdate("INSERT INTO url_fts (rowid, url, title, notes) SELECT id, url, title, notes FROM urls");
+            
+            int bodies;
+            try (ResultSet rs = stmt.executeQuery(BODY_BLOBS_SQL)) {
+                bodies = indexBodyRows(rs, index);
+            }
+            connection.commit();
+            logger.info("全文索引已重建: " + urls + " 条URL, " + bodies + " 条报文");
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 把BODY_BLOBS_SQL查出的报文解码后写入全文索引，返回写入的行数
+     */
+    private int indexBodyRows(ResultSet rs, PreparedStatement index) throws SQLException {
+        int rows = 0;
+        while (rs.next()) {
+            index.setLong(1, rs.getLong(1));
+            index.setString(2, SearchIndex.indexableText(BlobStore.decode(rs.getInt(2), rs.getBytes(4), rs.getInt(3))));
+            index.setString(3, SearchIndex.indexableText(BlobStore.decode(rs.getInt(5), rs.getBytes(7), rs.getInt(6))));
+            index.executeUpdate();
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * 按id重建一批URL的报文索引，在调用方的事务中执行
+     */
+    private void indexBodies(List<Long> urlIds) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(BODY_BLOBS_SQL + " WHERE b.url_id = ?");
+             PreparedStatement index = connection.prepareStatement(INDEX_BODY_TEXT_SQL)) {
+            for (long urlId : urlIds) {
+                select.setLong(1, urlId);
+                try (ResultSet rs = select.executeQuery()) {
+                    indexBodyRows(rs, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按URL回填异步解析得到的IP和内网标记
+     */
+    public void updateURLIP(String url, String ip, boolean isInternal) {
+        String sql = "UPDATE urls SET ip = ?, is_internal = ? WHERE url = ?";
+        
+        try {
+            write(() -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setString(1, ip);
+                    pstmt.setBoolean(2, isInternal);
+                    pstmt.setString(3, url);
+                    pstmt.executeUpdate();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.severe("更新URL的IP失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * URL是否已在库中（走url唯一索引），结果可能来自负缓存。线程安全，使用只读连接
+     */
+    public boolean existsByUrl(String url) {
+        return url != null && !existsByUrls(Collections.singletonList(url)).isEmpty();
+    }
+
+    /**
+     * 返回给定URL中已在库中的部分，按EXISTS_BATCH_SIZE分批走url唯一索引查询
+     * 已确认不在库中的URL记入负缓存，再次查询时不访问数据库；排队中尚未提交的插入视为不存在
+     * 查询失败时按不存在处理。线程安全，使用只读连接
+     */
+    public Set<String> existsByUrls(Collection<String> urls) {
+        Set<String> existing = new HashSet<>();
+        if (urls == null || urls.isEmpty()) {
+            return existing;
+        }
+        
+        List<String> unknown = new ArrayList<>();
+        for (String url : new LinkedHashSet<>(urls)) {
+            if (url != null && !absentUrls.contains(url)) {
+                unknown.add(url);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return existing;
+        }
+        
+        long generation = urlGeneration.get();
+        String sql = "SELECT url FROM urls WHERE url IN (SELECT value FROM json_each(?))";
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            for (int start = 0; start < unknown.size(); start += EXISTS_BATCH_SIZE) {
+                pstmt.setString(1, gson.toJson(unknown.subList(start, Math.min(unknown.size(), start + EXISTS_BATCH_SIZE))));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("查询URL是否存在失败: " + e.getMessage());
+            return existing;
+        }
+        
+        // 查询期间有插入提交时结果可能已过时，不写入负缓存
+        if (urlGeneration.get() == generation) {
+            if (absentUrls.size() + unknown.size() > ABSENT_URL_CACHE_MAX) {
+                absentUrls.clear();
+            }
+            for (String url : unknown) {
+                if (!existing.contains(url)) {
+                    absentUrls.add(url);
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 插入提交或URL被改写后使负缓存失效；entries为null时整体清空
+     */
+    private void invalidateAbsentUrls(List<URLEntry> entries) {
+        urlGeneration.incrementAndGet();
+        if (entries == null) {
+            absentUrls.clear();
+            return;
+        }
+        for (URLEntry entry : entries) {
+            absentUrls.remove(entry.getUrl());
+        }
+    }
+
+    /**
+     * 是否已存在相同规范化键的URL（走canonical_key索引）。线程安全，使用只读连接
+     */
+    public boolean existsByCanonicalKey(String canonicalKey) {
+        if (canonicalKey == null) {
+            return false;
+        }
+        
+        String sql = "SELECT 1 FROM urls WHERE canonical_key = ? LIMIT 1";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            pstmt.setString(1, canonicalKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logger.severe("查询URL是否存在失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 按当前规则重新计算canonical_key，onlyMissing为true时只回填为空的行
+     * 按id分批读写，每批一个事务，返回更新的行数
+     * 线程安全：用只读连接读取，每批更新作为一个写任务执行，重算期间插入仍可在批次之间写入
+     */
+    public int refreshCanonicalKeys(boolean onlyMissing) {
+        final int batchSize = 1000;
+        PathCanonicalizer canonicalizer = pathCanonicalizer;
+        String selectSql = "SELECT id, url, canonical_key FROM urls WHERE id > ?" +
+            (onlyMissing ? " AND canonical_key IS NULL" : "") + " ORDER BY id LIMIT " + batchSize;
+        String updateSql = "UPDATE urls SET canonical_key = ? WHERE id = ?";
+        
+        int updated = 0;
+        long lastId = 0;
+        try {
+            int read;
+            do {
+                read = 0;
+                List<Long> ids = new ArrayList<>();
+                List<String> keys = new ArrayList<>();
+                try (ReadConnectionPool.Lease lease = read();
+                     PreparedStatement select = lease.connection().prepareStatement(selectSql)) {
+                    select.setLong(1, lastId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                            lastId = rs.getLong(1);
+                            String key = canonicalizer.canonicalKey(rs.getString(2));
+                            if (key != null && !key.equals(rs.getString(3))) {
+                                ids.add(lastId);
+                                keys.add(key);
+                            }
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    continue;
+                }
+                
+                write(() -> {
+                    boolean autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement update = connection.prepareStatement(updateSql)) {
+                        for (int i = 0; i < ids.size(); i++) {
+                            update.setString(1, keys.get(i));
+                            update.setLong(2, ids.get(i));
+                            update.addBatch();
+                        }
+                        update.executeBatch();
+                        connection.commit();
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(autoCommit);
+                    }
+                    return null;
+                });
+                updated += ids.size();
+            } while (read == batchSize);
+        } catch (SQLException e) {
+            logger.severe("计算canonical_key失败: " + e.getMessage());
+        }
+        
+        if (updated > 0) {
+            logger.info("已更新 " + updated + " 条URL的canonical_key");
+        }
+        return updated;
+    }
+
+    /**
+     * 逐行遍历库中全部去重键，只读取canonical_key列，不把结果整体加载到内存
+     * 线程安全，遍历期间占用一个只读连接
+     */
+    public void forEachCanonicalKey(Consumer<String> consumer) {
+        String sql = "SELECT canonical_key FROM urls WHERE canonical_key IS NOT NULL";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                consumer.accept(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            logger.severe("遍历URL失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并一个路径模板的统计：变体草图按寄存器合并，变体数取合并后的估计值，样例去重后最多保留maxSamples个
+     * 成功后delta中的草图和变体数更新为合并结果。线程安全，读取和合并在写入线程上原子执行
+     */
+    public boolean upsertURLTemplate(URLTemplate delta, int maxSamples) {
+        if (delta == null || delta.getCanonicalKey() == null) {
+            return false;
+        }
+        
+        Set<String> samples = new LinkedHashSet<>();
+        String selectSql = "SELECT sample_urls, variant_sketch FROM url_templates WHERE canonical_key = ?";
+        // 旧版本累加出的变体数无法去重，只在估计值超过它之后才更新
+        String upsertSql = """
+            INSERT INTO url_templates (canonical_key, host, variant_count, sample_urls, first_seen, last_seen, reversed_host, variant_sketch)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(canonical_key) DO UPDATE SET
+                variant_count = MAX(variant_count, excluded.variant_count),
+                sample_urls = excluded.sample_urls,
+                last_seen = excluded.last_seen,
+                variant_sketch = excluded.variant_sketch
+        """;
+        
+        try {
+            write(() -> {
+                HyperLogLog sketch = HyperLogLog.fromBytes(delta.getVariantSketch());
+                try (PreparedStatement select = connection.prepareStatement(selectSql)) {
+                    select.setString(1, delta.getCanonicalKey());
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next()) {
+                            if (rs.getString(1) != null && !rs.getString(1).isEmpty()) {
+                                samples.addAll(Arrays.asList(rs.getString(1).split("\n")));
+                            }
+                            sketch.merge(HyperLogLog.fromBytes(rs.getBytes(2)));
+                        }
+                    }
+                }
+                for (String sample : delta.getSampleUrls()) {
+                    if (samples.size() >= maxSamples) {
+                        break;
+                    }
+                    samples.add(sample);
+                }
+        
+                try (PreparedStatement upsert = connection.prepareStatement(upsertSql)) {
+                    upsert.setString(1, delta.getCanonicalKey());
+                    upsert.setString(2, delta.getHost());
+                    upsert.setLong(3, sketch.estimate());
+                    upsert.setString(4, String.join("\n", samples));
+                    upsert.setLong(5, delta.getFirstSeen());
+                    upsert.setLong(6, delta.getLastSeen());
+                    upsert.setString(7, reverseHost(delta.getHost()));
+                    upsert.setBytes(8, sketch.toBytes());
+                    upsert.executeUpdate();
+                }
+                delta.setVariantSketch(sketch.toBytes());
+                delta.setVariantCount(sketch.estimate());
+                return null;
+            });
+            return true;
+        } catch (SQLException e) {
+            logger.severe("更新路径模板统计失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 获取路径模板统计，按变体数降序；host为null时返回全部。线程安全，使用只读连接
+     */
+    public List<URLTemplate> getURLTemplates(String host) {
+        List<URLTemplate> templates = new ArrayList<>();
+        String sql = "SELECT canonical_key, host, variant_count, sample_urls, first_seen, last_seen FROM url_templates" +
+            (host != null ? " WHERE host = ?" : "") + " ORDER BY variant_count DESC";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            if (host != null) {
+                pstmt.setString(1, host);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    URLTemplate template = new URLTemplate(rs.getString("canonical_key"), rs.getString("host"));
+                    template.setVariantCount(rs.getLong("variant_count"));
+                    String sampleUrls = rs.getString("sample_urls");
+                    if (sampleUrls != null && !sampleUrls.isEmpty()) {
+                        template.setSampleUrls(new ArrayList<>(Arrays.asList(sampleUrls.split("\n"))));
+                    }
+                    template.setFirstSeen(rs.getLong("first_seen"));
+                    template.setLastSeen(rs.getLong("last_seen"));
+                    templates.add(template);
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("获取路径模板统计失败: " + e.getMessage());
+        }
+        
+        return templates;
+    }
+
+    /**
+     * 删除一条URL，报文索引随之删除，报文内容由purgeUnreferencedBlobs回收。线程安全，阻塞到提交
+     */
+    public void deleteURL(long id) {
+        String sql = "DELETE FROM urls WHERE id = ?";
+        
+        try {
+            write(() -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setLong(1, id);
+                    pstmt.executeUpdate();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.severe("删除URL失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除根域名本身及其全部子域名下的URL和路径模板，返回删除的URL数
+     * 一个事务内按host索引批量删除，报文内容由purgeUnreferencedBlobs回收。线程安全，阻塞到提交
+     */
+    public int deleteByRootDomain(String rootDomain) {
+        if (rootDomain == null || rootDomain.isEmpty()) {
+            return 0;
+        }
+        
+        String urlsSql = "DELETE FROM urls WHERE " + HOST_IN_DOMAIN;
+        String templatesSql = "DELETE FROM url_templates WHERE " + HOST_IN_DOMAIN;
+        
+        try {
+            return write(() -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement urls = connection.prepareStatement(urlsSql);
+                     PreparedStatement templates = connection.prepareStatement(templatesSql)) {
+                    bindDomain(urls, 1, rootDomain);
+                    int deleted = urls.executeUpdate();
+                    bindDomain(templates, 1, rootDomain);
+                    templates.executeUpdate();
+                    connection.commit();
+                    return deleted;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } catch (SQLException e) {
+            logger.severe("按根域名删除失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 把根域名本身及其子域名的后缀改为新域名（如 a.example.com -> a.example.org），同步改写URL、子域名、
+     * 去重键和路径模板，返回改写的URL数。改名后与已有URL重复时保留改名后的记录。线程安全，阻塞到提交
+     */
+    public int renameHostSuffix(String oldSuffix, String newSuffix) {
+        if (oldSuffix == null || oldSuffix.isEmpty() || newSuffix == null || newSuffix.isEmpty()
+                || oldSuffix.equals(newSuffix)) {
+            return 0;
+        }
+        
+        // SET中引用的列都是改写前的值，r为每个旧host对应的新host
+        String urlsSql = """
+            UPDATE OR REPLACE urls SET
+                host = r.new_host,
+                reversed_host = r.new_reversed_host,
+                url = %s,
+                subdomain = CASE WHEN length(r.new_host) - length(replace(r.new_host, '.', '')) >= 2
+                    THEN substr(r.new_host, 1, instr(r.new_host, '.') - 1) END,
+                canonical_key = %s
+            FROM (%s) AS r
+            WHERE urls.host = r.old_host
+            """.formatted(replaceFirst("url", "r.old_host", "r.new_host"),
+                replaceFirst("canonical_key", "lower(r.old_host)", "lower(r.new_host)"), hostRenames("urls"));
+        String templatesSql = """
+            UPDATE OR REPLACE url_templates SET
+                host = r.new_host,
+                reversed_host = r.new_reversed_host,
+                canonical_key = %s
+            FROM (%s) AS r
+            WHERE url_templates.host = r.old_host
+            """.formatted(replaceFirst("canonical_key", "lower(r.old_host)", "lower(r.new_host)"),
+                hostRenames("url_templates"));
+        
+        try {
+            return write(() -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement urls = connection.prepareStatement(urlsSql);
+                     PreparedStatement templates = connection.prepareStatement(templatesSql)) {
+                    bindRename(urls, oldSuffix, newSuffix);
+                    int renamed = urls.executeUpdate();
+                    bindRename(templates, oldSuffix, newSuffix);
+                    templates.executeUpdate();
+                    connection.commit();
+                    invalidateAbsentUrls(null);
+                    return renamed;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } catch (SQLException e) {
+            logger.severe("修改域名失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 把一个host下的全部URL设为指定检查状态，返回状态实际改变的行数。线程安全，阻塞到提交
+     */
+    public int setCheckStatusByHost(String host, CheckStatus status) {
+        if (host == null || status == null) {
+            return 0;
+        }
+        return updateCheckStatus("host = ?1", host, status);
+    }
+
+    /**
+     * 把指定id的URL设为指定检查状态，返回状态实际改变的行数。线程安全，阻塞到提交
+     */
+    public int setCheckStatus(Collection<Long> ids, CheckStatus status) {
+        if (ids == null || ids.isEmpty() || status == null) {
+            return 0;
+        }
+        // id列表作为一个JSON数组参数传入，不按数量拼接占位符
+        return updateCheckStatus("id IN (SELECT value FROM json_each(?1))", gson.toJson(ids), status);
+    }
+
+    private int updateCheckStatus(String condition, String value, CheckStatus status) {
+        // 与URLEntry.setCheckStatus一致：标记为完成时更新时间戳
+        String sql = "UPDATE urls SET check_status = ?2, is_checked = ?3, timestamp = CASE WHEN ?3 THEN ?4 ELSE timestamp END " +
+            "WHERE " + condition + " AND check_status IS NOT ?2";
+        
+        try {
+            return write(() -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setString(1, value);
+                    pstmt.setString(2, status.name());
+                    pstmt.setBoolean(3, status == CheckStatus.DONE);
+                    pstmt.setLong(4, System.currentTimeMillis());
+                    return pstmt.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            logger.severe("批量更新检查状态失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 表中属于旧后缀的每个host及改名后的host，倒序host的后缀在开头，直接替换
+     * 参数依次为旧后缀长度、新后缀、倒序的新后缀、旧后缀长度和bindDomain的三个参数
+     */
+    private static String hostRenames(String table) {
+        return "SELECT host AS old_host, substr(host, 1, length(host) - ?) || ? AS new_host, " +
+            "? || substr(reversed_host, ? + 1) AS new_reversed_host FROM " + table +
+            " WHERE " + HOST_IN_DOMAIN + " GROUP BY host";
+    }
+
+    private static void bindRename(PreparedStatement pstmt, String oldSuffix, String newSuffix) throws SQLException {
+        pstmt.setInt(1, oldSuffix.length());
+        pstmt.setString(2, newSuffix);
+        pstmt.setString(3, reverseHost(newSuffix));
+        pstmt.setInt(4, oldSuffix.length());
+        bindDomain(pstmt, 5, oldSuffix);
+    }
+
+    /**
+     * 绑定HOST_IN_DOMAIN的三个参数：倒序域名本身，以及以"倒序域名."开头的范围（'/'是'.'的下一个字符）
+     */
+    private static void bindDomain(PreparedStatement pstmt, int index, String domain) throws SQLException {
+        String reversed = reverseHost(domain);
+        pstmt.setString(index, reversed);
+        pstmt.setString(index + 1, reversed + ".");
+        pstmt.setString(index + 2, reversed + "/");
+    }
+
+    /**
+     * reversed_host列的值：host转小写后逐字符倒序，按域名后缀匹配变为按前缀的范围查询
+     */
+    private static String reverseHost(String host) {
+        return host != null ? new StringBuilder(host.toLowerCase(Locale.ROOT)).reverse().toString() : null;
+    }
+
+    /**
+     * 为reversed_host为空的行按host回填，用于版本迁移和合并项目后；在写连接上执行，由调用方提交
+     */
+    private void fillReversedHosts(String table) throws SQLException {
+        List<String> hosts = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT host FROM " + table +
+                 " WHERE reversed_host IS NULL AND host IS NOT NULL")) {
+            while (rs.next()) {
+                hosts.add(rs.getString(1));
+            }
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "UPDATE " + table + " SET reversed_host = ? WHERE host = ? AND reversed_host IS NULL")) {
+            for (String host : hosts) {
+                pstmt.setString(1, reverseHost(host));
+                pstmt.setString(2, host);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 用已保存的样例给旧版本的路径模板建立初始草图；旧的变体数无法回溯去重，保留原值
+     */
+    private void seedTemplateSketches() throws SQLException {
+        Map<String, byte[]> sketches = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT canonical_key, sample_urls FROM url_templates WHERE variant_sketch IS NULL")) {
+            while (rs.next()) {
+                HyperLogLog sketch = new HyperLogLog();
+                String sampleUrls = rs.getString(2);
+                if (sampleUrls != null && !sampleUrls.isEmpty()) {
+                    for (String sample : sampleUrls.split("\n")) {
+                        sketch.add(sample);
+                    }
+                }
+                sketches.put(rs.getString(1), sketch.toBytes());
+            }
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "UPDATE url_templates SET variant_sketch = ? WHERE canonical_key = ?")) {
+            for (Map.Entry<String, byte[]> entry : sketches.entrySet()) {
+                pstmt.setBytes(1, entry.getValue());
+                pstmt.setString(2, entry.getKey());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 把column中第一次出现的target替换为replacement的SQL表达式，找不到时保持原值
+     */
+    private static String replaceFirst(String column, String target, String replacement) {
+        return ("CASE WHEN instr(%1$s, %2$s) > 0 THEN substr(%1$s, 1, instr(%1$s, %2$s) - 1) || %3$s || " +
+            "substr(%1$s, instr(%1$s, %2$s) + length(%2$s)) ELSE %1$s END").formatted(column, target, replacement);
+    }
+
+    /**
+     * 保存配置，其中的报文压缩和性能档位随即生效。线程安全，阻塞到提交
+     */
+    public void saveConfig(DomainConfig config) {
+        String sql = "INSERT OR REPLACE INTO config (id, config_data) VALUES (1, ?)";
+        
+        try {
+            write(() -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    String configJson = gson.toJson(config);
+                    pstmt.setString(1, configJson);
+                    pstmt.executeUpdate();
+                }
+                return null;
+            });
+            applyStorageConfig(config);
+        } catch (SQLException e) {
+            logger.severe("保存配置失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取配置，没有保存过时返回默认配置。线程安全，使用只读连接
+     */
+    public DomainConfig loadConfig() {
+        String sql = "SELECT config_data FROM config WHERE id = 1";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            if (rs.next()) {
+                String configJson = rs.getString("config_data");
+                return gson.fromJson(configJson, DomainConfig.class);
+            }
+        } catch (SQLException e) {
+            logger.severe("加载配置失败: " + e.getMessage());
+        }
+        
+        return new DomainConfig(); // 返回默认配置
+    }
+
+    /**
+     * 各host的URL数。线程安全，只读取汇总表
+     */
+    public Map<String, Long> countURLsByHost() {
+        return sumSummary("host", rs -> rs.getString(1));
+    }
+
+    /**
+     * 各根域名（最后两级域名）的URL数，由各host的汇总合并得到。线程安全，只读取汇总表
+     */
+    public Map<String, Long> countURLsByRootDomain() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : countURLsByHost().entrySet()) {
+            String rootDomain = URLAnalyzer.extractRootDomain(entry.getKey());
+            if (rootDomain != null) {
+                counts.merge(rootDomain, entry.getValue(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 各状态码类别的URL数，键为2-5，其他状态码（含0）为0。线程安全，只读取汇总表
+     */
+    public Map<Integer, Long> countURLsByStatusClass() {
+        return sumSummary("status_class", rs -> rs.getInt(1));
+    }
+
+    /**
+     * 各检查状态的URL数。线程安全，只读取汇总表
+     */
+    public Map<CheckStatus, Long> countURLsByCheckStatus() {
+        return sumSummary("check_status", rs -> URLRowMapper.parseCheckStatus(rs.getString(1), false));
+    }
+
+    /**
+     * 读取汇总表中一列的值
+     */
+    private interface SummaryKey<K> {
+        K read(ResultSet rs) throws SQLException;
+    }
+
+    private <K> Map<K, Long> sumSummary(String column, SummaryKey<K> key) {
+        Map<K, Long> counts = new LinkedHashMap<>();
+        String sql = "SELECT " + column + ", SUM(url_count) FROM url_summary GROUP BY " + column + " ORDER BY " + column;
+        
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.merge(key.read(rs), rs.getLong(2), Long::sum);
+            }
+        } catch (SQLException e) {
+            logger.severe("统计URL数量失败: " + e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * 按urls表重建汇总表，打开没有汇总表的旧数据库时自动调用；只在写入线程上调用
+     */
+    private void rebuildURLSummary() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM url_summary");
+            stmt.execute(URLSummary.REBUILD_SQL);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 线程安全，使用只读连接
+     */
+    public List<String> getDistinctHosts() {
+        List<String> hosts = new ArrayList<>();
+        String sql = "SELECT DISTINCT host FROM urls ORDER BY host";
+
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                hosts.add(rs.getString("host"));
+            }
+        } catch (SQLException e) {
+            logger.severe("获取主机列表失败: " + e.getMessage());
+        }
+
+        return hosts;
+    }
+
+    /**
+     * 清空全部数据。线程安全，在此之前排队的插入会先写入再被清空
+     */
+    public void clearDatabase() {
+        String sql = "DELETE FROM urls";
+        // 排队中的插入先落盘，避免清空后又被写回
+        flushInserts(10, TimeUnit.SECONDS);
+        
+        try {
+            write(() -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM bodies");
+                    stmt.executeUpdate("DELETE FROM blobs");
+                    stmt.executeUpdate(sql);
+                    stmt.executeUpdate("DELETE FROM url_templates");
+                    logger.info("数据库清空成功");
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.severe("清空数据库失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除不再被任何URL引用的报文（URL被删除或被覆盖后遗留），返回删除的份数
+     * 删除URL时不逐条清理，打开数据库时和需要回收空间时调用。线程安全，在写入线程上执行
+     */
+    public int purgeUnreferencedBlobs() {
+        String sql = "DELETE FROM blobs WHERE NOT EXISTS (SELECT 1 FROM bodies WHERE request_hash = blobs.hash) " +
+            "AND NOT EXISTS (SELECT 1 FROM bodies WHERE response_hash = blobs.hash)";
+        try {
+            int purged = write(() -> {
+                try (Statement stmt = connection.createStatement()) {
+                    return stmt.executeUpdate(sql);
+                }
+            });
+            if (purged > 0) {
+                logger.info("已清理 " + purged + " 份未引用的报文");
+            }
+            return purged;
+        } catch (SQLException e) {
+            logger.severe("清理未引用报文失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 统计报文去重和压缩效果。线程安全，使用只读连接
+     */
+    public BodyStoreStats getBodyStoreStats() {
+        BodyStoreStats stats = new BodyStoreStats();
+        
+        String uniqueSql = "SELECT COUNT(*), COALESCE(SUM(raw_length), 0), COALESCE(SUM(LENGTH(data)), 0), " +
+            "COALESCE(SUM(codec <> " + BlobStore.CODEC_RAW + "), 0) FROM blobs";
+        String referenceSql = "SELECT COUNT(*), COALESCE(SUM(b.raw_length), 0) FROM (" +
+            "SELECT request_hash AS hash FROM bodies WHERE request_hash IS NOT NULL UNION ALL " +
+            "SELECT response_hash FROM bodies WHERE response_hash IS NOT NULL) r JOIN blobs b ON b.hash = r.hash";
+        
+        try (ReadConnectionPool.Lease lease = read();
+             Statement stmt = lease.connection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(uniqueSql)) {
+                if (rs.next()) {
+                    stats.setUniqueCount(rs.getLong(1));
+                    stats.setUniqueBytes(rs.getLong(2));
+                    stats.setStoredBytes(rs.getLong(3));
+                    stats.setCompressedCount(rs.getLong(4));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(referenceSql)) {
+                if (rs.next()) {
+                    stats.setReferenceCount(rs.getLong(1));
+                    stats.setLogicalBytes(rs.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            logger.severe("统计报文存储失败: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    public void clearAllData() {
+        clearDatabase();
+    }
+    
+    /**
+     * 切换到新的数据库文件；等待旧数据库的写入全部完成并完成新数据库的迁移后返回，不应在EDT上调用
+     * 期间其他线程的写操作等待切换完成后写入新数据库
+     */
+    public void switchDatabase(String dbPath) throws SQLException {
+        lifecycleLock.writeLock().lock();
+        try {
+            // 关闭当前连接
+            close();
+            
+            // 切换到新路径
+            this.currentDbPath = dbPath;
+            
+            // 重新初始化数据库
+            initializeDatabase();
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        
+        logger.info("已切换到数据库: " + dbPath);
     }
     
     /**
@@ -498,50 +2245,225 @@ public class DatabaseManager {
     }
     
     /**
-     * 导入另一个数据库的数据
+     * 导入另一个数据库的数据，同一URL按KEEP_NEWEST合并
      */
     public void importFromDatabase(String sourceDbPath) throws SQLException {
-        String tempUrl = "jdbc:sqlite:" + sourceDbPath;
+        importFromDatabase(sourceDbPath, MergePolicy.KEEP_NEWEST);
+    }
+    
+    /**
+     * 把另一个项目合并到当前数据库，返回新增的URL数
+     * 源库以只读方式ATTACH到写连接，URL、检查状态、备注和报文在一个事务中用INSERT ... SELECT合并，失败时整体回滚。
+     * 同一URL两边都存在时按policy处理，报文随较新的一边，本项目没有报文时取对方的；旧版本源库缺少的列保持本项目的值或默认值。
+     * 线程安全，合并在写入线程上执行，期间其他写操作排队等待
+     */
+    public int importFromDatabase(String sourceDbPath, MergePolicy policy) throws SQLException {
+        Path source = Path.of(sourceDbPath).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(source)) {
+            throw new SQLException("源数据库不存在: " + sourceDbPath);
+        }
+        String dbPath = currentDbPath;
+        if (dbPath != null && source.equals(Path.of(dbPath).toAbsolutePath().normalize())) {
+            throw new SQLException("不能合并当前打开的项目");
+        }
+        MergePolicy mergePolicy = policy != null ? policy : MergePolicy.KEEP_NEWEST;
         
-        try (Connection sourceConn = DriverManager.getConnection(tempUrl);
-             Statement stmt = sourceConn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM urls")) {
-            
-            while (rs.next()) {
-                URLEntry entry = new URLEntry();
-                entry.setUrl(rs.getString("url"));
-                entry.setMethod(rs.getString("method"));
-                entry.setHost(rs.getString("host"));
-                entry.setPath(rs.getString("path"));
-                entry.setQuery(rs.getString("query"));
-                entry.setStatusCode(rs.getInt("status_code"));
-                entry.setLength(rs.getInt("length"));
-                entry.setTitle(rs.getString("title"));
-                entry.setIp(rs.getString("ip"));
-                entry.setInternal(rs.getBoolean("is_internal"));
-                entry.setSubdomain(rs.getString("subdomain"));
-                entry.setChecked(rs.getBoolean("is_checked"));
-                entry.setNotes(rs.getString("notes"));
-                entry.setTimestamp(rs.getLong("timestamp"));
-                
-                insertURL(entry);
-            }
-            
-            logger.info("从数据库导入完成: " + sourceDbPath);
-            
+        beginBulkImport();
+        try {
+            long start = System.currentTimeMillis();
+            int added = write(() -> mergeDatabase(source, mergePolicy));
+            logger.info("从数据库导入完成: " + sourceDbPath + "，新增 " + added + " 条URL，耗时 " +
+                (System.currentTimeMillis() - start) + "ms");
+            // 导入的URL按当前规则计算canonical_key，被覆盖的报文一并回收
+            refreshCanonicalKeys(true);
+            purgeUnreferencedBlobs();
+            return added;
         } catch (SQLException e) {
             logger.severe("从数据库导入失败: " + e.getMessage());
             throw e;
+        } finally {
+            endBulkImport();
+        }
+    }
+    
+    private int mergeDatabase(Path source, MergePolicy policy) throws SQLException {
+        try (PreparedStatement attach = connection.prepareStatement("ATTACH DATABASE ? AS src")) {
+            attach.setString(1, source.toUri() + "?mode=ro");
+            attach.execute();
+        }
+        
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            Set<String> urlColumns = sourceColumns("urls");
+            if (urlColumns.isEmpty()) {
+                throw new SQLException("源数据库中没有urls表");
+            }
+            Set<String> bodyColumns = sourceColumns("bodies");
+            String sourceTimestamp = urlColumns.contains("timestamp") ? "coalesce(s.timestamp, 0)" : "0";
+            
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                long before = countURLs();
+                // 两边都有的URL：对方较新时换成对方的报文，须在更新urls的时间戳之前判断
+                List<Long> indexed = new ArrayList<>(
+                    mergeBodies(urlColumns, bodyColumns, sourceTimestamp + " > coalesce(m.timestamp, 0)"));
+                stmt.executeUpdate(mergeURLsSql(urlColumns, policy));
+                // 新增的URL和本项目没有报文的URL取对方的报文
+                indexed.addAll(mergeBodies(urlColumns, bodyColumns,
+                    "NOT EXISTS (SELECT 1 FROM main.bodies mb WHERE mb.url_id = m.id)"));
+                if (bodyColumns.contains("request_hash")) {
+                    copySourceBlobs(indexed);
+                }
+                indexBodies(indexed);
+                fillReversedHosts("urls");
+                int added = (int) (countURLs() - before);
+                connection.commit();
+                invalidateAbsentUrls(null);
+                return added;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DETACH DATABASE src");
+            } catch (SQLException e) {
+                logger.warning("分离源数据库失败: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 合并urls表：新URL直接插入，已有URL按合并策略更新；id由当前库分配，canonical_key合并后按当前规则回填
+     * 旧版本源库缺少的列插入时取默认值，冲突时保留本项目的值；没有check_status列的源库按is_checked折算
+     */
+    private String mergeURLsSql(Set<String> urlColumns, MergePolicy policy) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String column : URL_METADATA_COLUMNS.split(",")) {
+            String name = column.trim();
+            if (urlColumns.contains(name) && !name.equals("id") && !name.equals("canonical_key")) {
+                values.put(name, "s." + name);
+            }
+        }
+        String checkedStatus = urlColumns.contains("is_checked") ? "CASE WHEN s.is_checked THEN 'DONE' ELSE 'UNCHECKED' END" : null;
+        if (urlColumns.contains("check_status")) {
+            values.put("check_status", "coalesce(nullif(s.check_status, ''), " + (checkedStatus != null ? checkedStatus : "'UNCHECKED'") + ")");
+            values.putIfAbsent("is_checked", "s.check_status = 'DONE'");
+        } else if (checkedStatus != null) {
+            values.put("check_status", checkedStatus);
+        }
+        
+        List<String> dataColumns = new ArrayList<>();
+        for (String name : values.keySet()) {
+            if (!name.equals("url") && !MERGE_TRIAGE_COLUMNS.contains(name)) {
+                dataColumns.add(name);
+            }
+        }
+        return "INSERT INTO main.urls (" + String.join(", ", values.keySet()) + ") " +
+            "SELECT " + String.join(", ", values.values()) + " FROM src.urls s WHERE true " +
+            "ON CONFLICT(url) DO UPDATE SET " + policy.conflictAssignments(dataColumns);
+    }
+    
+    /**
+     * 把源库中满足condition的URL的报文写入bodies表，返回写入了报文的本库URL id
+     * condition中s为源库urls行，m为本库urls行；三种源库格式：哈希引用、旧版bodies表存内容、更早版本urls表存内容
+     */
+    private List<Long> mergeBodies(Set<String> urlColumns, Set<String> bodyColumns, String condition) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        if (bodyColumns.contains("request_hash")) {
+            String sql = "INSERT INTO main.bodies (url_id, request_hash, response_hash) " +
+                "SELECT m.id, b.request_hash, b.response_hash FROM src.bodies b " +
+                "JOIN src.urls s ON s.id = b.url_id JOIN main.urls m ON m.url = s.url WHERE " + condition + " " +
+                "ON CONFLICT(url_id) DO UPDATE SET request_hash = excluded.request_hash, response_hash = excluded.response_hash " +
+                "RETURNING url_id";
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        } else if (bodyColumns.contains("request_data")) {
+            copyLegacyBodies("SELECT m.id, b.request_data, b.response_data FROM src.bodies b " +
+                "JOIN src.urls s ON s.id = b.url_id JOIN main.urls m ON m.url = s.url WHERE " + condition, ids);
+        } else if (urlColumns.contains("request_data") || urlColumns.contains("response_data")) {
+            String request = urlColumns.contains("request_data") ? "s.request_data" : "NULL";
+            String response = urlColumns.contains("response_data") ? "s.response_data" : "NULL";
+            copyLegacyBodies("SELECT m.id, " + request + ", " + response + " FROM src.urls s JOIN main.urls m ON m.url = s.url " +
+                "WHERE (" + request + " IS NOT NULL OR " + response + " IS NOT NULL) AND " + condition, ids);
+        }
+        return ids;
+    }
+    
+    /**
+     * 只复制合并后bodies中这些URL实际引用的源库报文内容，本库已有的哈希跳过；须在建立报文索引之前调用
+     */
+    private void copySourceBlobs(List<Long> urlIds) throws SQLException {
+        if (urlIds.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT OR IGNORE INTO main.blobs (hash, codec, raw_length, data) " +
+            "SELECT hash, codec, raw_length, data FROM src.blobs WHERE hash IN (" +
+            "SELECT request_hash FROM main.bodies WHERE url_id IN (SELECT value FROM json_each(?1)) " +
+            "UNION SELECT response_hash FROM main.bodies WHERE url_id IN (SELECT value FROM json_each(?1)))";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setString(1, gson.toJson(urlIds));
+            pstmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 源库表的列名（小写），表不存在时为空
+     */
+    private Set<String> sourceColumns(String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA src.table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name").toLowerCase());
+            }
+        }
+        return columns;
+    }
+    
+    private long countURLs() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT coalesce(sum(url_count), 0) FROM url_summary")) {
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 
+    /**
+     * 写完排队中的插入后关闭写入线程和全部连接；仍被借出的只读连接在归还时关闭
+     */
     public void close() {
+        lifecycleLock.writeLock().lock();
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            // 先等写入线程把排队中的插入和任务写入当前数据库并退出，再释放写连接；期间其他线程的写操作在锁上等待
+            BatchInserter inserter = batchInserter;
+            if (inserter != null) {
+                inserter.shutdown();
+                batchInserter = null;
             }
-        } catch (SQLException e) {
-            logger.severe("关闭数据库连接失败: " + e.getMessage());
+            
+            ReadConnectionPool pool = readPool;
+            readPool = null;
+            if (pool != null) {
+                pool.close();
+            }
+            // 负缓存只对当前数据库有效
+            invalidateAbsentUrls(null);
+            
+            try {
+                if (connection != null && !connection.isClosed()) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                logger.severe("关闭数据库连接失败: " + e.getMessage());
+            }
+        } finally {
+            lifecycleLock.writeLock().unlock();
         }
     }
 } 
\ No newline at end of file
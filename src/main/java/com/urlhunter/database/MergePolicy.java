@@ -0,0 +1,70 @@
+package com.urlhunter.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并项目时同一URL在两边都存在的处理方式
+ * 抓取到的数据（状态码、标题、报文等）总是取时间戳较新的一边，策略只决定检查状态和备注如何取舍；时间相同时保留本项目的数据。
+ */
+public enum MergePolicy {
+    // 整行取较新的一边，包括检查状态和备注
+    KEEP_NEWEST("保留较新的记录"),
+    // 检查状态取进度更靠后的一边（已完成 > 检查中 > 未检查），备注为空时取对方的
+    KEEP_TRIAGED("保留已检查的状态"),
+    // 检查状态同上，两边备注不同时合并保留
+    KEEP_BOTH_NOTES("保留已检查的状态并合并备注");
+
+    private final String displayName;
+
+    MergePolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    /**
+     * 冲突时urls表的更新子句，未加前缀的列为本项目的值，excluded为导入的值；SQLite在SET中读取的都是更新前的值
+     */
+    String conflictAssignments(List<String> dataColumns) {
+        List<String> newestColumns = new ArrayList<>(dataColumns);
+        if (this == KEEP_NEWEST) {
+            newestColumns.addAll(List.of("is_checked", "check_status", "notes"));
+        }
+        List<String> assignments = new ArrayList<>();
+        for (String column : newestColumns) {
+            assignments.add(column + " = CASE WHEN coalesce(excluded.timestamp, 0) > coalesce(urls.timestamp, 0) " +
+                "THEN excluded." + column + " ELSE " + column + " END");
+        }
+        if (this == KEEP_NEWEST) {
+            return String.join(", ", assignments);
+        }
+
+        String advanced = checkRank("excluded") + " > " + checkRank("urls");
+        assignments.add("is_checked = CASE WHEN " + advanced + " THEN excluded.is_checked ELSE is_checked END");
+        assignments.add("check_status = CASE WHEN " + advanced + " THEN excluded.check_status ELSE check_status END");
+        if (this == KEEP_TRIAGED) {
+            assignments.add("notes = CASE WHEN coalesce(notes, '') = '' THEN excluded.notes ELSE notes END");
+        } else {
+            // 已包含对方备注时不再追加，重复合并同一个项目结果不变
+            assignments.add("notes = CASE WHEN coalesce(excluded.notes, '') = '' OR instr(coalesce(notes, ''), excluded.notes) > 0 THEN notes " +
+                "WHEN coalesce(notes, '') = '' THEN excluded.notes ELSE notes || char(10) || excluded.notes END");
+        }
+        return String.join(", ", assignments);
+    }
+
+    /**
+     * 检查进度：已完成2、检查中1、未检查0，检查状态为空的旧数据按is_checked折算
+     */
+    private static String checkRank(String row) {
+        return ("CASE coalesce(nullif(%1$s.check_status, ''), CASE WHEN %1$s.is_checked THEN 'DONE' ELSE 'UNCHECKED' END) " +
+            "WHEN 'DONE' THEN 2 WHEN 'CHECKING' THEN 1 ELSE 0 END").formatted(row);
+    }
+}
@@ -0,0 +1,66 @@
+package com.urlhunter.database;
+
+import com.urlhunter.model.DomainConfig;
+
+import java.util.List;
+
+/**
+ * 一组SQLite性能参数
+ * synchronous和wal_autocheckpoint只需设置在写连接上；cache_size、mmap_size、temp_store是连接级参数，读写连接都要设置。
+ */
+enum PragmaProfile {
+    SAFE("FULL", -2000, 0, "DEFAULT", 1000),
+    BALANCED("NORMAL", -16000, 64L * 1024 * 1024, "MEMORY", 1000),
+    FAST("NORMAL", -64000, 256L * 1024 * 1024, "MEMORY", 4000),
+    // 批量导入：提交时不等待磁盘同步，检查点间隔加大；断电可能丢失导入中的数据，只在导入期间临时使用
+    BULK_IMPORT("OFF", -64000, 256L * 1024 * 1024, "MEMORY", 10000);
+
+    private final String synchronous;
+    // 负数表示KiB
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    // 单位为页
+    private final int walAutocheckpoint;
+
+    PragmaProfile(String synchronous, int cacheSize, long mmapSize, String tempStore, int walAutocheckpoint) {
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.walAutocheckpoint = walAutocheckpoint;
+    }
+
+    static PragmaProfile of(DomainConfig.DatabaseProfile profile) {
+        if (profile == null) {
+            return BALANCED;
+        }
+        return switch (profile) {
+            case SAFE -> SAFE;
+            case FAST -> FAST;
+            default -> BALANCED;
+        };
+    }
+
+    /**
+     * 每个连接都要设置的参数
+     */
+    List<String> connectionPragmas() {
+        return List.of(
+            "PRAGMA cache_size = " + cacheSize,
+            "PRAGMA mmap_size = " + mmapSize,
+            "PRAGMA temp_store = " + tempStore);
+    }
+
+    /**
+     * 写连接的参数，包含connectionPragmas
+     */
+    List<String> writerPragmas() {
+        return List.of(
+            "PRAGMA synchronous = " + synchronous,
+            "PRAGMA wal_autocheckpoint = " + walAutocheckpoint,
+            "PRAGMA cache_size = " + cacheSize,
+            "PRAGMA mmap_size = " + mmapSize,
+            "PRAGMA temp_store = " + tempStore);
+    }
+}
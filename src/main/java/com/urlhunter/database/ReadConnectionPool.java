@@ -0,0 +1,154 @@
+package com.urlhunter.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 只读连接池
+ * WAL模式下读连接互不阻塞，也不阻塞写入线程；每个连接设置query_only，误用时直接报错而不会写入。
+ * 连接借出后只能由借用线程使用，用完（通常在try-with-resources中）归还；池关闭后归还的连接直接关闭。
+ * 连接级参数（如cache_size）由setSessionPragmas设置，每个连接在下次借出时应用。
+ */
+final class ReadConnectionPool implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ReadConnectionPool.class.getName());
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final long borrowTimeoutMillis;
+    private volatile boolean closed;
+    private volatile List<String> sessionPragmas = List.of();
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        // 该连接上次应用的参数，与sessionPragmas不是同一个列表时在借出前重新应用
+        private List<String> appliedPragmas = List.of();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * 借出的连接，close时归还
+     */
+    final class Lease implements AutoCloseable {
+        private final PooledConnection connection;
+        private boolean returned;
+
+        private Lease(PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return connection.connection;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                release(connection);
+            }
+        }
+    }
+
+    ReadConnectionPool(String url, int size, int busyTimeoutMillis, long borrowTimeoutMillis) throws SQLException {
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        try {
+            for (int i = 0; i < Math.max(1, size); i++) {
+                Connection connection = DriverManager.getConnection(url);
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                    stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+                } catch (SQLException e) {
+                    closeQuietly(connection);
+                    throw e;
+                }
+                idle.add(new PooledConnection(connection));
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 借用一个连接，池中连接都被占用时最多等待borrowTimeoutMillis
+     */
+    Lease borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("只读连接池已关闭");
+        }
+        try {
+            PooledConnection connection = idle.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (connection == null) {
+                throw new SQLException("等待只读连接超时");
+            }
+            try {
+                applySessionPragmas(connection);
+            } catch (SQLException e) {
+                release(connection);
+                throw e;
+            }
+            return new Lease(connection);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待只读连接时被中断", e);
+        }
+    }
+
+    /**
+     * 设置连接级参数，已借出的连接在归还后下次借出时应用
+     */
+    void setSessionPragmas(List<String> pragmas) {
+        this.sessionPragmas = List.copyOf(pragmas);
+    }
+
+    private void applySessionPragmas(PooledConnection pooled) throws SQLException {
+        List<String> pragmas = sessionPragmas;
+        if (pooled.appliedPragmas == pragmas) {
+            return;
+        }
+        try (Statement stmt = pooled.connection.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute(pragma);
+            }
+        }
+        pooled.appliedPragmas = pragmas;
+    }
+
+    private void release(PooledConnection connection) {
+        idle.offer(connection);
+        // 与close并发时由这里关闭刚归还的连接
+        if (closed && idle.remove(connection)) {
+            closeQuietly(connection.connection);
+        }
+    }
+
+    /**
+     * 关闭空闲连接；仍被借出的连接在归还时关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection.connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("关闭只读连接失败: " + e.getMessage());
+        }
+    }
+}
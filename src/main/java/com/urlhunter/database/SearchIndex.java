@@ -0,0 +1,119 @@
+package com.urlhunter.database;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FTS5全文索引的表结构和文本提取
+ * url_fts索引urls表的url、title、notes，由触发器随增删改同步；
+ * body_fts索引解码后的文本报文，报文在blobs表中可能被压缩，SQL无法直接读取，由DatabaseManager写入报文时同步，
+ * 删除由bodies表的触发器同步。两张表都使用trigram分词（与原先的子串搜索语义一致，忽略大小写），
+ * 且不保存原文（contentless），不会让数据库再多存一份报文。
+ */
+final class SearchIndex {
+    // trigram分词下少于3个字符的搜索词无法使用索引
+    static final int MIN_QUERY_LENGTH = 3;
+    // 每个报文最多索引的字节数，超长报文只索引前面部分
+    private static final int MAX_INDEXED_BYTES = 256 * 1024;
+
+    static final String CREATE_URL_FTS =
+        "CREATE VIRTUAL TABLE IF NOT EXISTS url_fts USING fts5(url, title, notes, " +
+        "content='', contentless_delete=1, tokenize='trigram')";
+    static final String CREATE_BODY_FTS =
+        "CREATE VIRTUAL TABLE IF NOT EXISTS body_fts USING fts5(request_text, response_text, " +
+        "content='', contentless_delete=1, tokenize='trigram')";
+
+    static final String[] TRIGGERS = {
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_fts_insert AFTER INSERT ON urls BEGIN
+            INSERT OR REPLACE INTO url_fts (rowid, url, title, notes) VALUES (new.id, new.url, new.title, new.notes);
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_fts_update AFTER UPDATE OF url, title, notes ON urls BEGIN
+            INSERT OR REPLACE INTO url_fts (rowid, url, title, notes) VALUES (new.id, new.url, new.title, new.notes);
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_fts_delete AFTER DELETE ON urls BEGIN
+            DELETE FROM url_fts WHERE rowid = old.id;
+        END
+        """,
+        """
+        CREATE TRIGGER IF NOT EXISTS bodies_fts_delete AFTER DELETE ON bodies BEGIN
+            DELETE FROM body_fts WHERE rowid = old.url_id;
+        END
+        """
+    };
+
+    // 元数据命中的权重高于报文命中：bm25越小越相关，报文得分减半
+    static final String SEARCH_SQL = """
+        SELECT id FROM (
+            SELECT rowid AS id, bm25(url_fts, 4.0, 8.0, 2.0) AS score FROM url_fts WHERE url_fts MATCH ?
+            UNION ALL
+            SELECT rowid, bm25(body_fts) * 0.5 FROM body_fts WHERE body_fts MATCH ?
+        ) GROUP BY id ORDER BY MIN(score), id DESC LIMIT ? OFFSET ?
+        """;
+    // 按id分页取回全部命中，不计算相关度，用于筛选
+    static final String SEARCH_IDS_SQL =
+        "SELECT rowid FROM url_fts WHERE url_fts MATCH ?1 AND rowid > ?2 " +
+        "UNION SELECT rowid FROM body_fts WHERE body_fts MATCH ?1 AND rowid > ?2 ORDER BY 1 LIMIT ?3";
+    static final String SHORT_SEARCH_IDS_SQL =
+        "SELECT id FROM urls WHERE id > ?2 AND (url LIKE ?1 ESCAPE '\\' OR title LIKE ?1 ESCAPE '\\' OR notes LIKE ?1 ESCAPE '\\') " +
+        "ORDER BY id LIMIT ?3";
+    // 短搜索词退化为对元数据的LIKE扫描，不搜索报文
+    static final String SHORT_SEARCH_SQL =
+        "SELECT id FROM urls WHERE url LIKE ? ESCAPE '\\' OR title LIKE ? ESCAPE '\\' OR notes LIKE ? ESCAPE '\\' " +
+        "ORDER BY timestamp DESC, id DESC LIMIT ? OFFSET ?";
+
+    private SearchIndex() {
+    }
+
+    /**
+     * 把搜索词转为FTS5短语查询，按子串匹配，不解释FTS5查询语法
+     */
+    static String matchPhrase(String text) {
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    static String likePattern(String text) {
+        return "%" + escapeLike(text) + "%";
+    }
+
+    /**
+     * 转义LIKE通配符，配合ESCAPE '\'使用
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 提取报文中可索引的文本：报文头总是索引，报文体只在非二进制、未经Content-Encoding编码时按声明的字符集解码
+     */
+    static String indexableText(byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        int headerEnd = BlobStore.headerEnd(message);
+        String headers = BlobStore.headerBlock(message, headerEnd);
+        int length = Math.min(message.length, MAX_INDEXED_BYTES);
+        if (headerEnd >= 0 && BlobStore.isBinaryOrEncoded(headers)) {
+            length = headerEnd;
+        }
+        return new String(message, 0, length, charsetOf(headers));
+    }
+
+    private static Charset charsetOf(String headers) {
+        String type = BlobStore.headerValue(headers, "content-type");
+        int index = type != null ? type.indexOf("charset=") : -1;
+        if (index != -1) {
+            String name = type.substring(index + "charset=".length()).split(";")[0].replace("\"", "").trim();
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                // 无法识别的字符集按UTF-8解码
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
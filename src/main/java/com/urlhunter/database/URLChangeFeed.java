@@ -0,0 +1,55 @@
+package com.urlhunter.database;
+
+/**
+ * urls表的变更序列
+ * 每个URL id在url_changes中只保留一行：最后一次变更的序号、首次插入的序号和是否已删除，由urls表上的触发器维护，
+ * 表的大小与URL数相当，不随修改次数增长。序号只在写入线程的事务中分配，按提交顺序单调递增，
+ * 读连接看到的已提交序号之前不会再出现新的变更。
+ * 删除的URL保留为墓碑行；打开数据库时还没有调用方持有旧序号，此时清理墓碑，但保留序号最大的一行使序号不回退。
+ */
+final class URLChangeFeed {
+    static final String CREATE_TABLE = """
+        CREATE TABLE IF NOT EXISTS url_changes (
+            url_id INTEGER PRIMARY KEY,
+            seq INTEGER NOT NULL UNIQUE,
+            created_seq INTEGER NOT NULL,
+            deleted INTEGER NOT NULL DEFAULT 0
+        )
+        """;
+
+    // 同一条语句中两次求值得到相同的序号
+    private static final String NEXT_SEQ = "(SELECT coalesce(max(seq), 0) + 1 FROM url_changes)";
+
+    // 迁移前已存在的URL没有变更行，修改和删除时created_seq记为0
+    static final String[] TRIGGERS = {
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_changes_insert AFTER INSERT ON urls BEGIN
+            INSERT INTO url_changes (url_id, seq, created_seq, deleted) VALUES (new.id, %1$s, %1$s, 0)
+            ON CONFLICT(url_id) DO UPDATE SET seq = excluded.seq, created_seq = excluded.created_seq, deleted = 0;
+        END
+        """.formatted(NEXT_SEQ),
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_changes_update AFTER UPDATE ON urls BEGIN
+            INSERT INTO url_changes (url_id, seq, created_seq, deleted) VALUES (new.id, %1$s, 0, 0)
+            ON CONFLICT(url_id) DO UPDATE SET seq = excluded.seq;
+        END
+        """.formatted(NEXT_SEQ),
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_changes_delete AFTER DELETE ON urls BEGIN
+            INSERT INTO url_changes (url_id, seq, created_seq, deleted) VALUES (old.id, %1$s, 0, 1)
+            ON CONFLICT(url_id) DO UPDATE SET seq = excluded.seq, deleted = 1;
+        END
+        """.formatted(NEXT_SEQ)
+    };
+
+    static final String CHANGES_SINCE_SQL =
+        "SELECT url_id, seq, created_seq, deleted FROM url_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+
+    static final String CURRENT_SEQ_SQL = "SELECT coalesce(max(seq), 0) FROM url_changes";
+
+    static final String PRUNE_TOMBSTONES_SQL =
+        "DELETE FROM url_changes WHERE deleted = 1 AND seq < (SELECT max(seq) FROM url_changes)";
+
+    private URLChangeFeed() {
+    }
+}
@@ -0,0 +1,162 @@
+package com.urlhunter.database;
+
+import com.urlhunter.model.URLEntry;
+import com.urlhunter.model.URLEntry.CheckStatus;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * urls表结果集到URLEntry的映射
+ * 每个结果集创建一次，列下标在创建时按列名解析，逐行读取时只按下标取值；
+ * 结果集中不存在的列保持URLEntry默认值，因此也能读取旧版本数据库。
+ * 可选地对host、method、subdomain做字符串去重，大批量加载时同一主机只保留一个String实例。
+ */
+final class URLRowMapper {
+    // check_status文本到枚举的映射，避免逐行valueOf和异常开销
+    private static final Map<String, CheckStatus> CHECK_STATUS_LOOKUP;
+
+    static {
+        Map<String, CheckStatus> lookup = new HashMap<>();
+        for (CheckStatus status : CheckStatus.values()) {
+            lookup.put(status.name(), status);
+        }
+        CHECK_STATUS_LOOKUP = Collections.unmodifiableMap(lookup);
+    }
+
+    private final int id;
+    private final int url;
+    private final int method;
+    private final int host;
+    private final int path;
+    private final int query;
+    private final int statusCode;
+    private final int length;
+    private final int title;
+    private final int ip;
+    private final int isInternal;
+    private final int subdomain;
+    private final int isChecked;
+    private final int checkStatus;
+    private final int notes;
+    private final int timestamp;
+    private final int originalRequestLength;
+    private final int originalResponseLength;
+    private final int requestTruncated;
+    private final int responseTruncated;
+    private final int canonicalKey;
+
+    private final Map<String, String> internTable;
+    private long rowCount;
+    private long mappingNanos;
+
+    private URLRowMapper(Map<String, Integer> columns, boolean internStrings) {
+        this.id = indexOf(columns, "id");
+        this.url = indexOf(columns, "url");
+        this.method = indexOf(columns, "method");
+        this.host = indexOf(columns, "host");
+        this.path = indexOf(columns, "path");
+        this.query = indexOf(columns, "query");
+        this.statusCode = indexOf(columns, "status_code");
+        this.length = indexOf(columns, "length");
+        this.title = indexOf(columns, "title");
+        this.ip = indexOf(columns, "ip");
+        this.isInternal = indexOf(columns, "is_internal");
+        this.subdomain = indexOf(columns, "subdomain");
+        this.isChecked = indexOf(columns, "is_checked");
+        this.checkStatus = indexOf(columns, "check_status");
+        this.notes = indexOf(columns, "notes");
+        this.timestamp = indexOf(columns, "timestamp");
+        this.originalRequestLength = indexOf(columns, "original_request_length");
+        this.originalResponseLength = indexOf(columns, "original_response_length");
+        this.requestTruncated = indexOf(columns, "request_truncated");
+        this.responseTruncated = indexOf(columns, "response_truncated");
+        this.canonicalKey = indexOf(columns, "canonical_key");
+        this.internTable = internStrings ? new HashMap<>() : null;
+    }
+
+    /**
+     * 按结果集的列创建映射器
+     */
+    static URLRowMapper forResultSet(ResultSet rs, boolean internStrings) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.putIfAbsent(meta.getColumnLabel(i).toLowerCase(), i);
+        }
+        return new URLRowMapper(columns, internStrings);
+    }
+
+    private static int indexOf(Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 映射当前行
+     */
+    URLEntry map(ResultSet rs) throws SQLException {
+        long start = System.nanoTime();
+        URLEntry entry = new URLEntry();
+        if (id > 0) entry.setId(rs.getLong(id));
+        if (url > 0) entry.setUrl(rs.getString(url));
+        if (method > 0) entry.setMethod(intern(rs.getString(method)));
+        if (host > 0) entry.setHost(intern(rs.getString(host)));
+        if (path > 0) entry.setPath(rs.getString(path));
+        if (query > 0) entry.setQuery(rs.getString(query));
+        if (statusCode > 0) entry.setStatusCode(rs.getInt(statusCode));
+        if (length > 0) entry.setLength(rs.getInt(length));
+        if (title > 0) entry.setTitle(rs.getString(title));
+        if (ip > 0) entry.setIp(rs.getString(ip));
+        if (isInternal > 0) entry.setInternal(rs.getBoolean(isInternal));
+        if (subdomain > 0) entry.setSubdomain(intern(rs.getString(subdomain)));
+        if (isChecked > 0) entry.setChecked(rs.getBoolean(isChecked));
+
+        entry.setCheckStatus(parseCheckStatus(checkStatus > 0 ? rs.getString(checkStatus) : null, entry.isChecked()));
+
+        if (notes > 0) entry.setNotes(rs.getString(notes));
+        if (timestamp > 0) entry.setTimestamp(rs.getLong(timestamp));
+        if (originalRequestLength > 0) entry.setOriginalRequestLength(rs.getInt(originalRequestLength));
+        if (originalResponseLength > 0) entry.setOriginalResponseLength(rs.getInt(originalResponseLength));
+        if (requestTruncated > 0) entry.setRequestTruncated(rs.getBoolean(requestTruncated));
+        if (responseTruncated > 0) entry.setResponseTruncated(rs.getBoolean(responseTruncated));
+        if (canonicalKey > 0) entry.setCanonicalKey(rs.getString(canonicalKey));
+
+        rowCount++;
+        mappingNanos += System.nanoTime() - start;
+        return entry;
+    }
+
+    /**
+     * 解析check_status文本：缺失的状态值从旧的is_checked字段迁移，无效的状态值设为默认值
+     */
+    static CheckStatus parseCheckStatus(String statusText, boolean checked) {
+        if (statusText == null || statusText.isEmpty()) {
+            return checked ? CheckStatus.DONE : CheckStatus.UNCHECKED;
+        }
+        return CHECK_STATUS_LOOKUP.getOrDefault(statusText, CheckStatus.UNCHECKED);
+    }
+
+    private String intern(String value) {
+        if (internTable == null || value == null) {
+            return value;
+        }
+        String existing = internTable.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 映射累计耗时（不含数据库读取行的时间）
+     */
+    long getMappingNanos() {
+        return mappingNanos;
+    }
+}
@@ -0,0 +1,72 @@
+package com.urlhunter.database;
+
+/**
+ * urls表的汇总计数表
+ * 按 host × 状态码类别 × 检查状态 × 是否内网 保存URL数，由urls表上的触发器随增删改同步，
+ * 域名表格和统计信息只读取汇总行，耗时与URL总数无关。
+ * 状态码类别为2-5，其他（含未请求的0）为0；检查状态为空的旧数据按is_checked折算。
+ */
+final class URLSummary {
+    static final String CREATE_TABLE = """
+        CREATE TABLE IF NOT EXISTS url_summary (
+            host TEXT NOT NULL,
+            status_class INTEGER NOT NULL,
+            check_status TEXT NOT NULL,
+            is_internal INTEGER NOT NULL,
+            url_count INTEGER NOT NULL,
+            PRIMARY KEY (host, status_class, check_status, is_internal)
+        ) WITHOUT ROWID
+        """;
+
+    static final String[] TRIGGERS = {
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_summary_insert AFTER INSERT ON urls BEGIN
+            %s
+        END
+        """.formatted(increment("new")),
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_summary_delete AFTER DELETE ON urls BEGIN
+            %s
+        END
+        """.formatted(decrement("old")),
+        """
+        CREATE TRIGGER IF NOT EXISTS urls_summary_update
+        AFTER UPDATE OF host, status_code, check_status, is_checked, is_internal ON urls
+        WHEN (%s) != (%s) BEGIN
+            %s
+            %s
+        END
+        """.formatted(key("old"), key("new"), decrement("old"), increment("new"))
+    };
+
+    static final String REBUILD_SQL =
+        "INSERT INTO url_summary (host, status_class, check_status, is_internal, url_count) " +
+        "SELECT " + key("urls") + ", COUNT(*) FROM urls GROUP BY 1, 2, 3, 4";
+
+    private URLSummary() {
+    }
+
+    /**
+     * 一行urls对应的汇总键：host、状态码类别、检查状态、是否内网
+     */
+    private static String key(String row) {
+        return ("coalesce(%1$s.host, ''), " +
+            "CASE WHEN %1$s.status_code >= 200 AND %1$s.status_code < 300 THEN 2 " +
+            "WHEN %1$s.status_code >= 300 AND %1$s.status_code < 400 THEN 3 " +
+            "WHEN %1$s.status_code >= 400 AND %1$s.status_code < 500 THEN 4 " +
+            "WHEN %1$s.status_code >= 500 THEN 5 ELSE 0 END, " +
+            "coalesce(nullif(%1$s.check_status, ''), CASE WHEN %1$s.is_checked THEN 'DONE' ELSE 'UNCHECKED' END), " +
+            "coalesce(%1$s.is_internal, 0) != 0").formatted(row);
+    }
+
+    private static String increment(String row) {
+        return "INSERT INTO url_summary (host, status_class, check_status, is_internal, url_count) " +
+            "VALUES (" + key(row) + ", 1) ON CONFLICT DO UPDATE SET url_count = url_count + 1;";
+    }
+
+    private static String decrement(String row) {
+        String match = "(host, status_class, check_status, is_internal) = (" + key(row) + ")";
+        return "UPDATE url_summary SET url_count = url_count - 1 WHERE " + match + ";\n" +
+            "            DELETE FROM url_summary WHERE " + match + " AND url_count <= 0;";
+    }
+}
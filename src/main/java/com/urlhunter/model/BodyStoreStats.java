@@ -0,0 +1,101 @@
+package com.urlhunter.model;
+
+/**
+ * 报文存储统计：bodies表引用的报文总量与blobs表实际存储量的对比
+ */
+public class BodyStoreStats {
+    // bodies表中的报文引用数（请求和响应分别计数）
+    private long referenceCount;
+    // 去重后的报文数
+    private long uniqueCount;
+    // 不去重、不压缩时应占用的字节数
+    private long logicalBytes;
+    // 去重后、压缩前的字节数
+    private long uniqueBytes;
+    // 实际存储的字节数
+    private long storedBytes;
+    // 使用压缩编码存储的报文数
+    private long compressedCount;
+
+    public long getReferenceCount() {
+        return referenceCount;
+    }
+
+    public void setReferenceCount(long referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+
+    public long getUniqueCount() {
+        return uniqueCount;
+    }
+
+    public void setUniqueCount(long uniqueCount) {
+        this.uniqueCount = uniqueCount;
+    }
+
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    public void setLogicalBytes(long logicalBytes) {
+        this.logicalBytes = logicalBytes;
+    }
+
+    public long getUniqueBytes() {
+        return uniqueBytes;
+    }
+
+    public void setUniqueBytes(long uniqueBytes) {
+        this.uniqueBytes = uniqueBytes;
+    }
+
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    public void setStoredBytes(long storedBytes) {
+        this.storedBytes = storedBytes;
+    }
+
+    public long getCompressedCount() {
+        return compressedCount;
+    }
+
+    public void setCompressedCount(long compressedCount) {
+        this.compressedCount = compressedCount;
+    }
+
+    /**
+     * 去重比：平均每份存储的报文被引用的次数
+     */
+    public double getDedupRatio() {
+        return uniqueCount > 0 ? (double) referenceCount / uniqueCount : 1.0;
+    }
+
+    /**
+     * 去重和压缩共节省的字节数
+     */
+    public long getBytesSaved() {
+        return Math.max(0, logicalBytes - storedBytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("报文引用 %d 个，去重后 %d 个（去重比 %.2f），压缩 %d 个；原始 %s，去重后 %s，实际存储 %s，节省 %s",
+            referenceCount, uniqueCount, getDedupRatio(), compressedCount,
+            formatBytes(logicalBytes), formatBytes(uniqueBytes), formatBytes(storedBytes), formatBytes(getBytesSaved()));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -1,9 +1,28 @@
 package com.urlhunter.model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DomainConfig {
+    /**
+     * 捕获队列已满时的处理方式
+     */
+    public enum OverflowPolicy {
+        DROP_NEW,   // 丢弃新到达的URL
+        SAMPLE      // 按采样率保留新URL，替换队列中最旧的任务
+    }
+
+    /**
+     * 数据库性能档位，对应一组SQLite参数（synchronous、cache_size、mmap_size等）
+     */
+    public enum DatabaseProfile {
+        SAFE,       // 每次提交都同步到磁盘，缓存较小
+        BALANCED,   // WAL下只在检查点同步，中等缓存并启用内存映射
+        FAST        // 大缓存和大内存映射，检查点间隔更长
+    }
+
     private List<String> blacklistDomains;
     private List<String> blacklistExtensions;
     private List<Integer> blacklistStatusCodes;
@@ -13,12 +32,36 @@ public class DomainConfig {
     private String shortLinkCharset;
     private int shortLinkMinLength;
     private int shortLinkMaxLength;
+    private boolean asyncCaptureEnabled;
+    private int dnsPositiveTtlSeconds;
+    private int dnsNegativeTtlSeconds;
+    private int titleScanMaxBytes;
+    private int dedupMemoryBudgetKb;
+    private boolean verboseLoggingEnabled;
+    private int maxRequestCaptureBytes;
+    private int maxResponseCaptureBytes;
+    private boolean headOnlyForBinary;
+    private Map<String, Integer> contentTypeCaptureLimits;
+    private int captureQueueCapacity;
+    private int shedBodiesThresholdPercent;
+    private OverflowPolicy overflowPolicy;
+    private int overflowSampleRate;
+    private boolean pathCanonicalizationEnabled;
+    private Map<String, String> pathTemplateRules;
+    private boolean toolCaptureEnabled;
+    private Map<String, Integer> toolCaptureSampleRates;
+    private boolean bodyCompressionEnabled;
+    private int bodyCompressionMinBytes;
+    private DatabaseProfile databaseProfile;
 
     public DomainConfig() {
         this.blacklistDomains = new ArrayList<>();
         this.blacklistExtensions = new ArrayList<>();
         this.blacklistStatusCodes = new ArrayList<>();
         this.fuzzDictionary = new ArrayList<>();
+        this.contentTypeCaptureLimits = new LinkedHashMap<>();
+        this.pathTemplateRules = new LinkedHashMap<>();
+        this.toolCaptureSampleRates = new LinkedHashMap<>();
         
         // 默认配置
         initializeDefaults();
@@ -62,6 +105,50 @@ public class DomainConfig {
         shortLinkCharset = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
         shortLinkMinLength = 1;
         shortLinkMaxLength = 4;
+
+        // 捕获默认配置
+        asyncCaptureEnabled = true;
+        dnsPositiveTtlSeconds = 600;
+        dnsNegativeTtlSeconds = 60;
+        titleScanMaxBytes = 64 * 1024;
+        dedupMemoryBudgetKb = 4096;
+        verboseLoggingEnabled = false;
+
+        // 报文存储策略默认配置（按报文体字节数计算，报文头总是完整保留）
+        maxRequestCaptureBytes = 256 * 1024;
+        maxResponseCaptureBytes = 1024 * 1024;
+        headOnlyForBinary = true;
+        contentTypeCaptureLimits.put("application/javascript", 256 * 1024);
+        contentTypeCaptureLimits.put("text/javascript", 256 * 1024);
+        contentTypeCaptureLimits.put("text/css", 64 * 1024);
+
+        // 捕获队列减载默认配置：超过70%时只保存报文头，满时丢弃新URL
+        captureQueueCapacity = 10000;
+        shedBodiesThresholdPercent = 70;
+        overflowPolicy = OverflowPolicy.DROP_NEW;
+        overflowSampleRate = 10;
+
+        // 路径模板规则：段名=正则，按顺序匹配
+        pathCanonicalizationEnabled = true;
+        pathTemplateRules.put("uuid", "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+        pathTemplateRules.put("int", "\\d+");
+        pathTemplateRules.put("hex", "[0-9a-fA-F]{16,}");
+
+        // 其他Burp工具的流量捕获：工具名=N，每N个响应采集1个，0表示不采集；Proxy流量由ProxyListener单独处理
+        toolCaptureEnabled = false;
+        toolCaptureSampleRates.put("REPEATER", 1);
+        toolCaptureSampleRates.put("TARGET", 1);
+        toolCaptureSampleRates.put("EXTENSIONS", 1);
+        toolCaptureSampleRates.put("SCANNER", 10);
+        toolCaptureSampleRates.put("INTRUDER", 50);
+        toolCaptureSampleRates.put("SEQUENCER", 0);
+
+        // 报文存储：相同内容只存一份，达到阈值的文本报文用Deflate压缩
+        bodyCompressionEnabled = true;
+        bodyCompressionMinBytes = 512;
+
+        // 数据库性能档位，导入时临时切换为批量导入参数，结束后恢复
+        databaseProfile = DatabaseProfile.BALANCED;
     }
 
     // Getters and Setters
@@ -144,4 +231,172 @@ public class DomainConfig {
     public void setShortLinkMaxLength(int shortLinkMaxLength) {
         this.shortLinkMaxLength = shortLinkMaxLength;
     }
+
+    public boolean isAsyncCaptureEnabled() {
+        return asyncCaptureEnabled;
+    }
+
+    public void setAsyncCaptureEnabled(boolean asyncCaptureEnabled) {
+        this.asyncCaptureEnabled = asyncCaptureEnabled;
+    }
+
+    public int getDnsPositiveTtlSeconds() {
+        return dnsPositiveTtlSeconds;
+    }
+
+    public void setDnsPositiveTtlSeconds(int dnsPositiveTtlSeconds) {
+        this.dnsPositiveTtlSeconds = dnsPositiveTtlSeconds;
+    }
+
+    public int getDnsNegativeTtlSeconds() {
+        return dnsNegativeTtlSeconds;
+    }
+
+    public void setDnsNegativeTtlSeconds(int dnsNegativeTtlSeconds) {
+        this.dnsNegativeTtlSeconds = dnsNegativeTtlSeconds;
+    }
+
+    public int getTitleScanMaxBytes() {
+        return titleScanMaxBytes;
+    }
+
+    public void setTitleScanMaxBytes(int titleScanMaxBytes) {
+        this.titleScanMaxBytes = titleScanMaxBytes;
+    }
+
+    public int getDedupMemoryBudgetKb() {
+        return dedupMemoryBudgetKb;
+    }
+
+    public void setDedupMemoryBudgetKb(int dedupMemoryBudgetKb) {
+        this.dedupMemoryBudgetKb = dedupMemoryBudgetKb;
+    }
+
+    public boolean isVerboseLoggingEnabled() {
+        return verboseLoggingEnabled;
+    }
+
+    public void setVerboseLoggingEnabled(boolean verboseLoggingEnabled) {
+        this.verboseLoggingEnabled = verboseLoggingEnabled;
+    }
+
+    public int getMaxRequestCaptureBytes() {
+        return maxRequestCaptureBytes;
+    }
+
+    public void setMaxRequestCaptureBytes(int maxRequestCaptureBytes) {
+        this.maxRequestCaptureBytes = maxRequestCaptureBytes;
+    }
+
+    public int getMaxResponseCaptureBytes() {
+        return maxResponseCaptureBytes;
+    }
+
+    public void setMaxResponseCaptureBytes(int maxResponseCaptureBytes) {
+        this.maxResponseCaptureBytes = maxResponseCaptureBytes;
+    }
+
+    public boolean isHeadOnlyForBinary() {
+        return headOnlyForBinary;
+    }
+
+    public void setHeadOnlyForBinary(boolean headOnlyForBinary) {
+        this.headOnlyForBinary = headOnlyForBinary;
+    }
+
+    public Map<String, Integer> getContentTypeCaptureLimits() {
+        return contentTypeCaptureLimits;
+    }
+
+    public void setContentTypeCaptureLimits(Map<String, Integer> contentTypeCaptureLimits) {
+        this.contentTypeCaptureLimits = contentTypeCaptureLimits;
+    }
+
+    public int getCaptureQueueCapacity() {
+        return captureQueueCapacity;
+    }
+
+    public void setCaptureQueueCapacity(int captureQueueCapacity) {
+        this.captureQueueCapacity = captureQueueCapacity;
+    }
+
+    public int getShedBodiesThresholdPercent() {
+        return shedBodiesThresholdPercent;
+    }
+
+    public void setShedBodiesThresholdPercent(int shedBodiesThresholdPercent) {
+        this.shedBodiesThresholdPercent = shedBodiesThresholdPercent;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getOverflowSampleRate() {
+        return overflowSampleRate;
+    }
+
+    public void setOverflowSampleRate(int overflowSampleRate) {
+        this.overflowSampleRate = overflowSampleRate;
+    }
+
+    public boolean isPathCanonicalizationEnabled() {
+        return pathCanonicalizationEnabled;
+    }
+
+    public void setPathCanonicalizationEnabled(boolean pathCanonicalizationEnabled) {
+        this.pathCanonicalizationEnabled = pathCanonicalizationEnabled;
+    }
+
+    public Map<String, String> getPathTemplateRules() {
+        return pathTemplateRules;
+    }
+
+    public void setPathTemplateRules(Map<String, String> pathTemplateRules) {
+        this.pathTemplateRules = pathTemplateRules;
+    }
+
+    public boolean isToolCaptureEnabled() {
+        return toolCaptureEnabled;
+    }
+
+    public void setToolCaptureEnabled(boolean toolCaptureEnabled) {
+        this.toolCaptureEnabled = toolCaptureEnabled;
+    }
+
+    public Map<String, Integer> getToolCaptureSampleRates() {
+        return toolCaptureSampleRates;
+    }
+
+    public void setToolCaptureSampleRates(Map<String, Integer> toolCaptureSampleRates) {
+        this.toolCaptureSampleRates = toolCaptureSampleRates;
+    }
+
+    public boolean isBodyCompressionEnabled() {
+        return bodyCompressionEnabled;
+    }
+
+    public void setBodyCompressionEnabled(boolean bodyCompressionEnabled) {
+        this.bodyCompressionEnabled = bodyCompressionEnabled;
+    }
+
+    public int getBodyCompressionMinBytes() {
+        return bodyCompressionMinBytes;
+    }
+
+    public void setBodyCompressionMinBytes(int bodyCompressionMinBytes) {
+        this.bodyCompressionMinBytes = bodyCompressionMinBytes;
+    }
+
+    public DatabaseProfile getDatabaseProfile() {
+        return databaseProfile;
+    }
+
+    public void setDatabaseProfile(DatabaseProfile databaseProfile) {
+        this.databaseProfile = databaseProfile;
+    }
 } 
\ No newline at end of file
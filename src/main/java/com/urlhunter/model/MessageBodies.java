@@ -0,0 +1,33 @@
+package com.urlhunter.model;
+
+/**
+ * 按需从bodies表读取的原始请求/响应报文
+ */
+public class MessageBodies {
+    private byte[] requestData;
+    private byte[] responseData;
+
+    public MessageBodies() {
+    }
+
+    public MessageBodies(byte[] requestData, byte[] responseData) {
+        this.requestData = requestData;
+        this.responseData = responseData;
+    }
+
+    public byte[] getRequestData() {
+        return requestData;
+    }
+
+    public void setRequestData(byte[] requestData) {
+        this.requestData = requestData;
+    }
+
+    public byte[] getResponseData() {
+        return responseData;
+    }
+
+    public void setResponseData(byte[] responseData) {
+        this.responseData = responseData;
+    }
+}
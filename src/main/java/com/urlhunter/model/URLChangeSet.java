@@ -0,0 +1,54 @@
+package com.urlhunter.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 某个变更序号之后urls表的变更：新增、修改和删除的URL id
+ * 同一URL在这段时间内的多次变更只出现一次；新增后又删除的URL不出现在任何列表中
+ */
+public class URLChangeSet {
+    private final List<Long> insertedIds = new ArrayList<>();
+    private final List<Long> updatedIds = new ArrayList<>();
+    private final List<Long> deletedIds = new ArrayList<>();
+    // 本批包含的最后一个变更序号，下次从这里继续读取
+    private long lastSeq;
+    // 达到读取上限，还有更多变更未读取
+    private boolean hasMore;
+
+    public URLChangeSet(long sinceSeq) {
+        this.lastSeq = sinceSeq;
+    }
+
+    public List<Long> getInsertedIds() {
+        return insertedIds;
+    }
+
+    public List<Long> getUpdatedIds() {
+        return updatedIds;
+    }
+
+    public List<Long> getDeletedIds() {
+        return deletedIds;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public boolean isEmpty() {
+        return insertedIds.isEmpty() && updatedIds.isEmpty() && deletedIds.isEmpty();
+    }
+}
@@ -1,5 +1,7 @@
 package com.urlhunter.model;
 
+import burp.api.montoya.core.ByteArray;
+
 public class URLEntry {
     
     // 枚举定义检查状态
@@ -44,6 +46,19 @@ public class URLEntry {
     private byte[] requestData;
     private byte[] responseData;
 
+    // 采集时持有Burp报文的引用，入库时才转换为byte[]；不参与序列化
+    private transient ByteArray requestBytes;
+    private transient ByteArray responseBytes;
+
+    // 存储策略截断信息：原始报文长度和是否被截断
+    private int originalRequestLength;
+    private int originalResponseLength;
+    private boolean requestTruncated;
+    private boolean responseTruncated;
+
+    // 路径模板规范化后的去重键，如 https://a.com/user/{int}
+    private String canonicalKey;
+
     public URLEntry() {
         this.timestamp = System.currentTimeMillis();
     }
@@ -229,19 +244,122 @@ public class URLEntry {
     }
 
     // 新增：request/response 数据的 getter/setter 方法
+    // 持有Burp引用时每次调用都会生成新数组，只应在写入数据库时调用
     public byte[] getRequestData() {
-        return requestData;
+        ByteArray bytes = requestBytes;
+        return bytes != null ? bytes.getBytes() : requestData;
     }
 
     public void setRequestData(byte[] requestData) {
         this.requestData = requestData;
+        this.requestBytes = null;
     }
 
     public byte[] getResponseData() {
-        return responseData;
+        ByteArray bytes = responseBytes;
+        return bytes != null ? bytes.getBytes() : responseData;
     }
 
     public void setResponseData(byte[] responseData) {
         this.responseData = responseData;
+        this.responseBytes = null;
+    }
+
+    /**
+     * 直接保存Burp的ByteArray引用，不复制
+     */
+    public void setRequestBytes(ByteArray requestBytes) {
+        this.requestBytes = requestBytes;
+        this.requestData = null;
+    }
+
+    public void setResponseBytes(ByteArray responseBytes) {
+        this.responseBytes = responseBytes;
+        this.responseData = null;
+    }
+
+    /**
+     * 采集时保存的Burp引用，从数据库加载的条目返回null
+     */
+    public ByteArray getRequestBytes() {
+        return requestBytes;
+    }
+
+    public ByteArray getResponseBytes() {
+        return responseBytes;
+    }
+
+    public boolean hasRequestData() {
+        return requestBytes != null || requestData != null;
+    }
+
+    public boolean hasResponseData() {
+        return responseBytes != null || responseData != null;
+    }
+
+    /**
+     * 请求数据的ByteArray视图，用于构造HttpRequest；只有byte[]时会包装一次
+     */
+    public ByteArray toRequestByteArray() {
+        ByteArray bytes = requestBytes;
+        if (bytes != null) {
+            return bytes;
+        }
+        return requestData != null ? ByteArray.byteArray(requestData) : null;
+    }
+
+    public ByteArray toResponseByteArray() {
+        ByteArray bytes = responseBytes;
+        if (bytes != null) {
+            return bytes;
+        }
+        return responseData != null ? ByteArray.byteArray(responseData) : null;
+    }
+
+    public int getOriginalRequestLength() {
+        return originalRequestLength;
+    }
+
+    public void setOriginalRequestLength(int originalRequestLength) {
+        this.originalRequestLength = originalRequestLength;
+    }
+
+    public int getOriginalResponseLength() {
+        return originalResponseLength;
+    }
+
+    public void setOriginalResponseLength(int originalResponseLength) {
+        this.originalResponseLength = originalResponseLength;
+    }
+
+    public boolean isRequestTruncated() {
+        return requestTruncated;
+    }
+
+    public void setRequestTruncated(boolean requestTruncated) {
+        this.requestTruncated = requestTruncated;
+    }
+
+    public boolean isResponseTruncated() {
+        return responseTruncated;
+    }
+
+    public void setResponseTruncated(boolean responseTruncated) {
+        this.responseTruncated = responseTruncated;
+    }
+
+    /**
+     * 请求或响应是否只保存了部分内容
+     */
+    public boolean isTruncated() {
+        return requestTruncated || responseTruncated;
+    }
+
+    public String getCanonicalKey() {
+        return canonicalKey;
+    }
+
+    public void setCanonicalKey(String canonicalKey) {
+        this.canonicalKey = canonicalKey;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.urlhunter.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路径模板统计：一个规范化键下观察到的具体URL变体数量和若干样例
+ * variantCount是variantSketch（HyperLogLog寄存器）的估计值，为近似值
+ */
+public class URLTemplate {
+    private String canonicalKey;
+    private String host;
+    private long variantCount;
+    private List<String> sampleUrls = new ArrayList<>();
+    private long firstSeen;
+    private long lastSeen;
+    private byte[] variantSketch;
+
+    public URLTemplate() {
+    }
+
+    public URLTemplate(String canonicalKey, String host) {
+        this.canonicalKey = canonicalKey;
+        this.host = host;
+    }
+
+    public String getCanonicalKey() {
+        return canonicalKey;
+    }
+
+    public void setCanonicalKey(String canonicalKey) {
+        this.canonicalKey = canonicalKey;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public long getVariantCount() {
+        return variantCount;
+    }
+
+    public void setVariantCount(long variantCount) {
+        this.variantCount = variantCount;
+    }
+
+    public List<String> getSampleUrls() {
+        return sampleUrls;
+    }
+
+    public void setSampleUrls(List<String> sampleUrls) {
+        this.sampleUrls = sampleUrls;
+    }
+
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(long firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public byte[] getVariantSketch() {
+        return variantSketch;
+    }
+
+    public void setVariantSketch(byte[] variantSketch) {
+        this.variantSketch = variantSketch;
+    }
+}
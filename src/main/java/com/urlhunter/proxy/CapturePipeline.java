@@ -0,0 +1,188 @@
+package com.urlhunter.proxy;
+
+import com.urlhunter.model.DomainConfig.OverflowPolicy;
+import com.urlhunter.utils.HunterLogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 有界捕获管道
+ * Proxy线程只调用submit()把快照放入队列后立即返回，
+ * 解析、富化和入库由固定数量的工作线程完成，绝不阻塞Burp。
+ * 积压时逐级减载：超过阈值后新任务只保存报文头；队列满时按溢出策略丢弃新URL或采样替换最旧的任务。
+ * 每个被减载的任务都会计数，用于调整容量。
+ */
+public class CapturePipeline {
+    public static final String COUNTER_SHED_BODIES = "shed-bodies";
+    public static final String COUNTER_SHED_DROPPED = "shed-dropped";
+    public static final String COUNTER_SHED_EVICTED = "shed-evicted";
+
+    private final HunterLogger logger;
+    private final BlockingQueue<CaptureTask> queue;
+    private final ExecutorService workers;
+    private final Consumer<CaptureTask> processor;
+    private final int capacity;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong bodiesShedCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile int shedBodiesThreshold;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEW;
+    private volatile int overflowSampleRate = 10;
+
+    public CapturePipeline(HunterLogger logger, int capacity, int workerCount, Consumer<CaptureTask> processor) {
+        this.logger = logger;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.processor = processor;
+        this.shedBodiesThreshold = capacity;
+
+        logger.registerCounter(COUNTER_SHED_BODIES, "积压丢弃报文体");
+        logger.registerCounter(COUNTER_SHED_DROPPED, "队列满丢弃URL");
+        logger.registerCounter(COUNTER_SHED_EVICTED, "采样替换旧任务");
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread thread = new Thread(r, "URLHunter-Capture-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workerLoop);
+        }
+    }
+
+    /**
+     * 配置减载策略
+     * shedBodiesPercent为队列占用百分比，达到后新任务只保存报文头；sampleRate为SAMPLE策略下每N个溢出任务保留1个
+     */
+    public void configureShedding(int shedBodiesPercent, OverflowPolicy policy, int sampleRate) {
+        int percent = Math.max(0, Math.min(100, shedBodiesPercent));
+        this.shedBodiesThreshold = (int) ((long) capacity * percent / 100);
+        this.overflowPolicy = policy != null ? policy : OverflowPolicy.DROP_NEW;
+        this.overflowSampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * 提交捕获任务，任务被丢弃或管道已关闭时返回false
+     */
+    public boolean submit(CaptureTask task) {
+        if (!running) {
+            return false;
+        }
+
+        // 第一级：积压超过阈值，只保留报文头
+        if (queue.size() >= shedBodiesThreshold && !task.isBodiesShed()) {
+            task = task.withoutBodies();
+            bodiesShedCount.incrementAndGet();
+            logger.count(COUNTER_SHED_BODIES);
+        }
+
+        if (queue.offer(task)) {
+            submittedCount.incrementAndGet();
+            return true;
+        }
+
+        // 第二级：队列已满，按采样率用新任务替换最旧的任务，其余丢弃
+        if (overflowPolicy == OverflowPolicy.SAMPLE && overflowCount.incrementAndGet() % overflowSampleRate == 0) {
+            if (queue.poll() != null) {
+                evictedCount.incrementAndGet();
+                logger.count(COUNTER_SHED_EVICTED);
+            }
+            if (queue.offer(task)) {
+                submittedCount.incrementAndGet();
+                return true;
+            }
+        }
+
+        droppedCount.incrementAndGet();
+        logger.count(COUNTER_SHED_DROPPED);
+        logger.rateLimited("capture-queue-full", HunterLogger.Level.WARN,
+            () -> "捕获队列已满(" + capacity + ")，新URL被丢弃，可在配置中调大队列容量");
+        return false;
+    }
+
+    private void workerLoop() {
+        while (running || !queue.isEmpty()) {
+            CaptureTask task;
+            try {
+                task = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+
+            try {
+                processor.accept(task);
+                processedCount.incrementAndGet();
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                logger.rateLimited("capture-task", HunterLogger.Level.ERROR, () -> "处理捕获任务失败: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getBodiesShedCount() {
+        return bodiesShedCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * 停止接收新任务，等待队列中剩余任务处理完毕
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeout, unit)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.urlhunter.proxy;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+/**
+ * 一次待处理的流量捕获
+ * 只保存Proxy线程上能零成本拿到的引用，URL解析、标题提取等工作全部留给工作线程
+ */
+public class CaptureTask {
+    private final HttpRequest request;
+    private final HttpResponse response;
+    private final long capturedAt;
+    // 流量来源工具
+    private final ToolType source;
+    // 队列积压时置位，处理时只保存报文头、不提取标题
+    private final boolean bodiesShed;
+
+    public CaptureTask(HttpRequest request, HttpResponse response) {
+        this(request, response, ToolType.PROXY);
+    }
+
+    public CaptureTask(HttpRequest request, HttpResponse response, ToolType source) {
+        this(request, response, source, System.currentTimeMillis(), false);
+    }
+
+    private CaptureTask(HttpRequest request, HttpResponse response, ToolType source, long capturedAt, boolean bodiesShed) {
+        this.request = request;
+        this.response = response;
+        this.source = source != null ? source : ToolType.PROXY;
+        this.capturedAt = capturedAt;
+        this.bodiesShed = bodiesShed;
+    }
+
+    /**
+     * 返回丢弃报文体的副本
+     */
+    public CaptureTask withoutBodies() {
+        return bodiesShed ? this : new CaptureTask(request, response, source, capturedAt, true);
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    public HttpResponse getResponse() {
+        return response;
+    }
+
+    public ToolType getSource() {
+        return source;
+    }
+
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    public boolean isBodiesShed() {
+        return bodiesShed;
+    }
+}
@@ -0,0 +1,222 @@
+package com.urlhunter.proxy;
+
+import burp.api.montoya.MontoyaApi;
+import com.urlhunter.database.DatabaseManager;
+import com.urlhunter.utils.BloomDedupFilter;
+import com.urlhunter.utils.DedupFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已处理URL的去重跟踪
+ * 最近处理的URL保存在有界的精确LRU中，更早的交给固定内存的DedupFilter；
+ * 过滤器报告"可能存在"时以数据库为准，误判不会导致漏采。
+ * 已标记但还在保存队列和批量写入队列中的URL数据库里查不到，入库完成前另行固定，不受LRU淘汰影响。
+ * 去重键为路径模板规范化后的URL（PathCanonicalizer），对应数据库的canonical_key列。
+ */
+public class ProcessedUrlTracker {
+    private static final int RECENT_CAPACITY = 8192;
+
+    private final MontoyaApi api;
+    private final DatabaseManager dbManager;
+    private final DedupFilter filter;
+    private final Map<String, Boolean> recentUrls;
+    // 已标记处理、尚未入库的键
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // 预热期间过滤器尚不完整，未命中时也要查数据库
+    private volatile boolean warming;
+
+    private final AtomicLong databaseCheckCount = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    public ProcessedUrlTracker(MontoyaApi api, DatabaseManager dbManager, long memoryBudgetBytes) {
+        this.api = api;
+        this.dbManager = dbManager;
+        this.filter = new BloomDedupFilter(memoryBudgetBytes);
+        this.recentUrls = new LinkedHashMap<>(RECENT_CAPACITY * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * 去掉查询参数后的具体URL，用于统计模板变体
+     */
+    public static String toKey(String url) {
+        if (url == null || url.isEmpty()) {
+            return url;
+        }
+
+        int questionMarkIndex = url.indexOf('?');
+        if (questionMarkIndex != -1) {
+            return url.substring(0, questionMarkIndex);
+        }
+
+        return url;
+    }
+
+    /**
+     * 是否已处理过，过滤器可能误判的情况由数据库确认
+     */
+    public boolean isProcessed(String key) {
+        synchronized (recentUrls) {
+            if (recentUrls.get(key) != null) {
+                return true;
+            }
+        }
+        if (pendingKeys.contains(key)) {
+            return true;
+        }
+
+        boolean maybeSeen = filter.mightContain(key);
+        if (!maybeSeen && !warming) {
+            return false;
+        }
+
+        databaseCheckCount.incrementAndGet();
+        if (dbManager.existsByCanonicalKey(key)) {
+            synchronized (recentUrls) {
+                recentUrls.put(key, Boolean.TRUE);
+            }
+            filter.put(key);
+            return true;
+        }
+        if (maybeSeen) {
+            falsePositiveCount.incrementAndGet();
+        }
+        return false;
+    }
+
+    /**
+     * 标记为已处理并固定到入库为止；若其他线程已抢先标记则返回false
+     * 返回true后调用方须以releaseWhenSaved、release或forget之一结束固定
+     */
+    public boolean markProcessed(String key) {
+        synchronized (recentUrls) {
+            if (recentUrls.putIfAbsent(key, Boolean.TRUE) != null || !pendingKeys.add(key)) {
+                return false;
+            }
+        }
+        filter.put(key);
+        return true;
+    }
+
+    /**
+     * 写入完成后解除固定，之后由数据库确认；写入失败时撤销已处理标记
+     */
+    public void releaseWhenSaved(String key, CompletableFuture<?> saved) {
+        saved.whenComplete((ignored, error) -> {
+            if (error != null) {
+                forget(key);
+            } else {
+                pendingKeys.remove(key);
+            }
+        });
+    }
+
+    /**
+     * 解除固定但保留已处理标记（URL不需要入库时调用）
+     */
+    public void release(String key) {
+        pendingKeys.remove(key);
+    }
+
+    /**
+     * 撤销已处理标记（URL被减载丢弃、未能入库时调用）
+     * 过滤器中的位无法清除，之后的查询会落到数据库确认，因此不会漏采
+     */
+    public void forget(String key) {
+        synchronized (recentUrls) {
+            recentUrls.remove(key);
+        }
+        pendingKeys.remove(key);
+    }
+
+    /**
+     * 在后台线程中用数据库里已有的URL预热过滤器，避免重启后重复采集
+     */
+    public void warmStartAsync() {
+        warmStartAsync(false);
+    }
+
+    /**
+     * 预热前先计算canonical_key：rebuildKeys为true时按当前规则重算全部行，否则只回填为空的行
+     */
+    public void warmStartAsync(boolean rebuildKeys) {
+        int currentGeneration = generation.incrementAndGet();
+        warming = true;
+
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            AtomicLong loaded = new AtomicLong();
+            try {
+                dbManager.refreshCanonicalKeys(!rebuildKeys);
+                dbManager.forEachCanonicalKey(key -> {
+                    if (generation.get() == currentGeneration) {
+                        filter.put(key);
+                        loaded.incrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                api.logging().logToError("去重过滤器预热失败: " + e.getMessage());
+            } finally {
+                if (generation.get() == currentGeneration) {
+                    warming = false;
+                    api.logging().logToOutput("去重过滤器预热完成，载入 " + loaded.get() + " 个URL，耗时 " +
+                        (System.currentTimeMillis() - start) + "ms");
+                }
+            }
+        }, "URLHunter-DedupWarmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 清空全部状态并按当前数据库重新预热（切换项目时调用）
+     */
+    public void reset() {
+        reset(false);
+    }
+
+    /**
+     * 清空全部状态并重新预热，去重规则变化时传入true以重算已有数据的去重键
+     */
+    public void reset(boolean rebuildKeys) {
+        synchronized (recentUrls) {
+            recentUrls.clear();
+        }
+        pendingKeys.clear();
+        filter.clear();
+        warmStartAsync(rebuildKeys);
+    }
+
+    public long getTrackedCount() {
+        return filter.getInsertCount();
+    }
+
+    public long getMemoryBytes() {
+        return filter.getMemoryBytes();
+    }
+
+    public long getDatabaseCheckCount() {
+        return databaseCheckCount.get();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+
+    public boolean isWarming() {
+        return warming;
+    }
+}
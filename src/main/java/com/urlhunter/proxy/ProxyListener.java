@@ -2,6 +2,8 @@ package com.urlhunter.proxy;
 
 import burp.api.montoya.MontoyaApi;
 
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.proxy.http.InterceptedRequest;
 import burp.api.montoya.proxy.http.InterceptedResponse;
 import burp.api.montoya.proxy.http.ProxyRequestHandler;
@@ -12,33 +14,63 @@ import burp.api.montoya.proxy.http.ProxyResponseReceivedAction;
 import burp.api.montoya.proxy.http.ProxyResponseToBeSentAction;
 import com.urlhunter.model.URLEntry;
 import com.urlhunter.model.DomainConfig;
+import com.urlhunter.utils.CapturePolicy;
+import com.urlhunter.utils.CompiledFilter;
+import com.urlhunter.utils.DnsResolver;
+import com.urlhunter.utils.DomainIndex;
+import com.urlhunter.utils.HunterLogger;
+import com.urlhunter.utils.PathCanonicalizer;
+import com.urlhunter.utils.TitleExtractor;
 import com.urlhunter.utils.URLAnalyzer;
 import com.urlhunter.database.DatabaseManager;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 自动监听Proxy流量，实时提取匹配主域名的子域名和URL
  */
 public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler {
+    private static final int CAPTURE_WORKER_THREADS = 2;
+    private static final int SAVE_WORKER_THREADS = 2;
+    
+    // 汇总日志计数器
+    private static final String COUNTER_CAPTURED = "captured";
+    private static final String COUNTER_DUPLICATE = "duplicate";
+    private static final String COUNTER_FILTERED_DOMAIN = "filtered-domain";
+    private static final String COUNTER_FILTERED_EXTENSION = "filtered-extension";
+    private static final String COUNTER_FILTERED_STATUS = "filtered-status";
+    
     private final MontoyaApi api;
+    private final HunterLogger logger;
     private final DatabaseManager dbManager;
     private final URLAnalyzer urlAnalyzer;
-    private final Set<String> rootDomains;
+    private volatile DomainIndex rootDomainIndex = DomainIndex.EMPTY;
+    private volatile CompiledFilter compiledFilter = CompiledFilter.EMPTY;
+    private volatile CapturePolicy capturePolicy = CapturePolicy.UNLIMITED;
+    private volatile PathCanonicalizer pathCanonicalizer = PathCanonicalizer.DEFAULT;
     private final Map<String, Set<String>> discoveredSubdomains;
-    private final Set<String> processedUrls;
-    private final ScheduledExecutorService scheduler;
+    private final ProcessedUrlTracker processedUrlTracker;
+    private final TemplateVariantTracker templateVariantTracker;
+    private final ThreadPoolExecutor saveExecutor;
+    private final int saveQueueCapacity;
+    private volatile int shedBodiesThresholdPercent;
+    private final CapturePipeline capturePipeline;
+    private final ToolTrafficHandler toolTrafficHandler;
     private volatile DomainConfig currentConfig;
+    private volatile boolean asyncCapture;
     
     // 回调接口，用于通知UI更新
     public interface ProxyDiscoveryCallback {
         void onSubdomainDiscovered(String rootDomain, String subdomain);
         void onURLDiscovered(URLEntry urlEntry);
-        void onURLDiscoveredWithRequestResponse(URLEntry urlEntry, burp.api.montoya.http.message.requests.HttpRequest request, InterceptedResponse response);
+        void onURLDiscoveredWithRequestResponse(URLEntry urlEntry, burp.api.montoya.http.message.requests.HttpRequest request, HttpResponse response);
         void onRootDomainsUpdated(Set<String> newRootDomains);
     }
     
@@ -47,18 +79,49 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
     
     public ProxyListener(MontoyaApi api, DatabaseManager dbManager) {
         this.api = api;
+        this.logger = new HunterLogger(api);
         this.dbManager = dbManager;
         this.urlAnalyzer = new URLAnalyzer();
-        this.rootDomains = ConcurrentHashMap.newKeySet();
         this.discoveredSubdomains = new ConcurrentHashMap<>();
-        this.processedUrls = ConcurrentHashMap.newKeySet();
-        this.scheduler = Executors.newScheduledThreadPool(2);
         this.isEnabled = true;
         
         // 加载默认配置
         loadDefaultConfig();
         
-        api.logging().logToOutput("ProxyListener 已启动，开始监听流量...");
+        // 同步模式的入库队列同样有界，满时丢弃并计数，不再无限堆积
+        this.saveQueueCapacity = Math.max(1, currentConfig.getCaptureQueueCapacity());
+        AtomicInteger saveThreadIndex = new AtomicInteger();
+        this.saveExecutor = new ThreadPoolExecutor(SAVE_WORKER_THREADS, SAVE_WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(saveQueueCapacity), r -> {
+                Thread thread = new Thread(r, "URLHunter-Save-" + saveThreadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        
+        // 去重过滤器：固定内存预算，启动时从数据库预热
+        this.processedUrlTracker = new ProcessedUrlTracker(api, dbManager, currentConfig.getDedupMemoryBudgetKb() * 1024L);
+        processedUrlTracker.warmStartAsync();
+        this.templateVariantTracker = new TemplateVariantTracker(api, dbManager);
+        
+        // 捕获管道：Proxy线程只负责入队，解析和入库在工作线程中完成
+        // 队列容量在启动时确定，修改后需重启插件生效
+        this.capturePipeline = new CapturePipeline(logger, Math.max(1, currentConfig.getCaptureQueueCapacity()),
+            CAPTURE_WORKER_THREADS, this::processCapture);
+        applySheddingConfig(currentConfig);
+        
+        // 其他Burp工具的流量按工具采样后进入同一条捕获管道
+        this.toolTrafficHandler = new ToolTrafficHandler(logger, this::submitToolCapture);
+        toolTrafficHandler.configure(currentConfig);
+        
+        // 高频事件只计数，每10秒输出一行汇总
+        logger.registerCounter(COUNTER_CAPTURED, "新URL");
+        logger.registerCounter(COUNTER_DUPLICATE, "重复URL");
+        logger.registerCounter(COUNTER_FILTERED_DOMAIN, "域名黑名单过滤");
+        logger.registerCounter(COUNTER_FILTERED_EXTENSION, "扩展名过滤");
+        logger.registerCounter(COUNTER_FILTERED_STATUS, "状态码过滤");
+        logger.startSummary();
+        
+        logger.info("ProxyListener 已启动，开始监听流量...");
     }
     
     /**
@@ -71,9 +134,16 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
                 this.currentConfig = new DomainConfig();
             }
         } catch (Exception e) {
-            api.logging().logToError("加载配置失败，使用默认配置: " + e.getMessage());
+            logger.error("加载配置失败，使用默认配置: " + e.getMessage());
             this.currentConfig = new DomainConfig();
         }
+        this.asyncCapture = currentConfig.isAsyncCaptureEnabled();
+        logger.setDebugEnabled(currentConfig.isVerboseLoggingEnabled());
+        this.compiledFilter = CompiledFilter.compile(currentConfig);
+        this.capturePolicy = CapturePolicy.compile(currentConfig);
+        this.pathCanonicalizer = PathCanonicalizer.compile(currentConfig);
+        dbManager.setPathCanonicalizer(pathCanonicalizer);
+        applyDnsConfig(currentConfig);
     }
     
     /**
@@ -81,7 +151,55 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
      */
     public void updateConfig(DomainConfig config) {
         this.currentConfig = config;
-        api.logging().logToOutput("ProxyListener配置已更新");
+        this.asyncCapture = config == null || config.isAsyncCaptureEnabled();
+        logger.setDebugEnabled(config != null && config.isVerboseLoggingEnabled());
+        this.compiledFilter = CompiledFilter.compile(config);
+        this.capturePolicy = CapturePolicy.compile(config);
+        applyPathCanonicalizer(PathCanonicalizer.compile(config));
+        applyDnsConfig(config);
+        applySheddingConfig(config);
+        toolTrafficHandler.configure(config);
+        logger.info("ProxyListener配置已更新");
+    }
+    
+    /**
+     * 更新路径模板规则；规则变化时按新规则重算已有数据的去重键并重新预热
+     */
+    private void applyPathCanonicalizer(PathCanonicalizer canonicalizer) {
+        boolean changed = !canonicalizer.getSignature().equals(pathCanonicalizer.getSignature());
+        this.pathCanonicalizer = canonicalizer;
+        dbManager.setPathCanonicalizer(canonicalizer);
+        if (changed) {
+            processedUrlTracker.reset(true);
+            templateVariantTracker.reset();
+            logger.info("路径模板规则已变化，正在后台重算已有URL的去重键");
+        }
+    }
+    
+    /**
+     * 将减载策略应用到捕获管道和同步入库队列
+     */
+    private void applySheddingConfig(DomainConfig config) {
+        DomainConfig effective = config != null ? config : new DomainConfig();
+        this.shedBodiesThresholdPercent = effective.getShedBodiesThresholdPercent();
+        capturePipeline.configureShedding(effective.getShedBodiesThresholdPercent(),
+            effective.getOverflowPolicy(), effective.getOverflowSampleRate());
+    }
+    
+    /**
+     * 同步模式下入库队列是否已积压到需要丢弃报文体
+     */
+    private boolean isSaveQueueBacklogged() {
+        return (long) saveExecutor.getQueue().size() * 100 >= (long) saveQueueCapacity * shedBodiesThresholdPercent;
+    }
+    
+    /**
+     * 将DNS缓存TTL配置应用到共享解析器
+     */
+    private void applyDnsConfig(DomainConfig config) {
+        if (config != null) {
+            DnsResolver.getInstance().setTtl(config.getDnsPositiveTtlSeconds(), config.getDnsNegativeTtlSeconds());
+        }
     }
     
     public void setCallback(ProxyDiscoveryCallback callback) {
@@ -90,7 +208,7 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
     
     public void setEnabled(boolean enabled) {
         this.isEnabled = enabled;
-        api.logging().logToOutput("ProxyListener " + (enabled ? "已启用" : "已禁用"));
+        logger.info("ProxyListener " + (enabled ? "已启用" : "已禁用"));
     }
     
     public boolean isEnabled() {
@@ -101,20 +219,15 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
      * 更新根域名列表
      */
     public void updateRootDomains(Set<String> newRootDomains) {
-        this.rootDomains.clear();
-        if (newRootDomains != null) {
-            for (String domain : newRootDomains) {
-                if (domain != null && !domain.trim().isEmpty()) {
-                    this.rootDomains.add(domain.trim().toLowerCase());
-                }
-            }
-        }
+        // 整体重建索引后一次性替换，处理中的请求不会看到半更新的状态
+        DomainIndex index = DomainIndex.build(newRootDomains);
+        this.rootDomainIndex = index;
         
         if (callback != null) {
-            callback.onRootDomainsUpdated(new HashSet<>(this.rootDomains));
+            callback.onRootDomainsUpdated(new HashSet<>(index.getDomains()));
         }
         
-        api.logging().logToOutput("根域名列表已更新，共 " + this.rootDomains.size() + " 个域名");
+        logger.info("根域名列表已更新，共 " + index.size() + " 个域名");
     }
     
     @Override
@@ -140,13 +253,27 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
             return ProxyResponseReceivedAction.continueWith(interceptedResponse);
         }
         
+        // 没有目标域名时不可能匹配，直接放行
+        if (rootDomainIndex.isEmpty()) {
+            return ProxyResponseReceivedAction.continueWith(interceptedResponse);
+        }
+        
         try {
-            String url = interceptedResponse.initiatingRequest().url();
-            String method = interceptedResponse.initiatingRequest().method();
             // 主要的URL发现在响应阶段处理，这时我们有完整的请求响应对
-            processURL(url, method, interceptedResponse.initiatingRequest(), interceptedResponse);
+            if (asyncCapture) {
+                // 异步模式：只保存请求/响应引用，立即把响应交还给Burp
+                capturePipeline.submit(new CaptureTask(interceptedResponse.initiatingRequest(), interceptedResponse));
+            } else {
+                String url = interceptedResponse.initiatingRequest().url();
+                String method = interceptedResponse.initiatingRequest().method();
+                boolean shedBodies = isSaveQueueBacklogged();
+                if (shedBodies) {
+                    logger.count(CapturePipeline.COUNTER_SHED_BODIES);
+                }
+                processURL(url, method, interceptedResponse.initiatingRequest(), interceptedResponse, false, shedBodies, ToolType.PROXY);
+            }
         } catch (Exception e) {
-            api.logging().logToError("处理响应时发生错误: " + e.getMessage());
+            logger.rateLimited("handle-response", HunterLogger.Level.ERROR, () -> "处理响应时发生错误: " + e.getMessage());
         }
         
         return ProxyResponseReceivedAction.continueWith(interceptedResponse);
@@ -159,19 +286,37 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
     }
     
     /**
-     * 处理发现的URL
+     * 接收其他工具的捕获任务，总是走有界捕获管道，不在调用线程上处理
      */
-    private void processURL(String url, String method, burp.api.montoya.http.message.requests.HttpRequest request, InterceptedResponse response) {
-        if (url == null || url.isEmpty() || rootDomains.isEmpty()) {
-            return;
+    private boolean submitToolCapture(CaptureTask task) {
+        if (!isEnabled || rootDomainIndex.isEmpty()) {
+            return false;
         }
-        
-        // 避免重复处理相同URL - 修改为只对路径部分去重，忽略参数
-        String urlWithoutParams = removeUrlParameters(url);
-        if (processedUrls.contains(urlWithoutParams)) {
+        return capturePipeline.submit(task);
+    }
+    
+    /**
+     * 捕获管道工作线程的入口
+     */
+    private void processCapture(CaptureTask task) {
+        burp.api.montoya.http.message.requests.HttpRequest request = task.getRequest();
+        processURL(request.url(), request.method(), request, task.getResponse(), true, task.isBodiesShed(), task.getSource());
+    }
+    
+    /**
+     * 处理发现的URL
+     * onWorker为true时已在捕获工作线程中，直接同步入库；否则交给入库线程池异步入库
+     * shedBodies为true时处于减载状态，只保存报文头，也不把报文交给UI
+     * source为流量来源工具，记录在备注中
+     */
+    private void processURL(String url, String method, burp.api.montoya.http.message.requests.HttpRequest request, HttpResponse response,
+                            boolean onWorker, boolean shedBodies, ToolType source) {
+        if (url == null || url.isEmpty() || rootDomainIndex.isEmpty()) {
             return;
         }
         
+        // 已标记处理、还未交给入库流程的去重键，出错时解除固定
+        String pinnedKey = null;
         try {
             String host = extractHostFromUrl(url);
             if (host == null || host.isEmpty()) {
@@ -179,31 +324,46 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
             }
             
             // 检查是否匹配根域名
-            String matchedRootDomain = findMatchingRootDomain(host, rootDomains);
+            String matchedRootDomain = rootDomainIndex.longestMatch(host);
             if (matchedRootDomain == null) {
                 return;
             }
             
-            // 应用过滤配置
-            if (currentConfig != null) {
-                // 1. 检查域名黑名单
-                if (isHostBlacklisted(host)) {
-                    return;
-                }
-                
-                // 2. 检查URL扩展名黑名单
-                if (isUrlExtensionBlacklisted(url)) {
-                    return;
-                }
-                
-                // 3. 如果有响应，检查状态码黑名单
-                if (response != null && isStatusCodeBlacklisted(response.statusCode())) {
-                    return;
-                }
+            // 应用过滤配置（读取一次快照，保证同一请求的三项检查使用同一版本配置）
+            CompiledFilter filter = compiledFilter;
+            
+            // 1. 检查域名黑名单
+            if (filter.isHostBlacklisted(host)) {
+                logger.count(COUNTER_FILTERED_DOMAIN);
+                logger.debug(() -> "URL被域名黑名单过滤: " + host);
+                return;
+            }
+            
+            // 2. 检查URL扩展名黑名单
+            if (filter.isExtensionBlacklisted(url)) {
+                logger.count(COUNTER_FILTERED_EXTENSION);
+                logger.debug(() -> "URL被扩展名黑名单过滤: " + url + " (扩展名: " + CompiledFilter.extensionOf(url) + ")");
+                return;
             }
             
-            // 标记为已处理（使用去除参数后的URL）
-            processedUrls.add(urlWithoutParams);
+            // 3. 如果有响应，检查状态码黑名单
+            if (response != null && filter.isStatusCodeBlacklisted(response.statusCode())) {
+                logger.count(COUNTER_FILTERED_STATUS);
+                logger.debug(() -> "URL被状态码黑名单过滤，状态码: " + response.statusCode());
+                return;
+            }
+            
+            // 避免重复处理相同URL - 按路径模板去重，忽略参数，/user/123和/user/456视为同一端点
+            // 放在廉价的域名和黑名单过滤之后，减少需要数据库确认的次数
+            String dedupKey = pathCanonicalizer.canonicalKey(url);
+            if (PathCanonicalizer.isTemplate(dedupKey)) {
+                templateVariantTracker.record(dedupKey, host, ProcessedUrlTracker.toKey(url));
+            }
+            if (processedUrlTracker.isProcessed(dedupKey) || !processedUrlTracker.markProcessed(dedupKey)) {
+                logger.count(COUNTER_DUPLICATE);
+                return;
+            }
+            pinnedKey = dedupKey;
             
             // 发现新的子域名
             discoveredSubdomains.computeIfAbsent(matchedRootDomain, k -> ConcurrentHashMap.newKeySet()).add(host);
@@ -213,45 +373,64 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
                 callback.onSubdomainDiscovered(matchedRootDomain, host);
             }
             
+            // 非阻塞解析IP：缓存命中直接填充，未命中则入库后由DNS线程回填
+            CompletableFuture<String> ipFuture = DnsResolver.getInstance().resolveAsync(host);
+            boolean ipPending = !ipFuture.isDone();
+            
             // 创建URLEntry
-            URLEntry entry = createURLEntry(url, method, host, request, response);
+            URLEntry entry = createURLEntry(url, method, host, request, response, ipFuture.getNow(null), shedBodies, source);
             if (entry != null) {
-                // 异步保存到数据库
-                scheduler.execute(() -> {
+                entry.setCanonicalKey(dedupKey);
+                Runnable saveTask = () -> {
                     try {
-                        dbManager.insertURL(entry);
+                        // 交给批量写入线程，IP在所在批次提交后再回填；提交前去重键保持固定
+                        CompletableFuture<Void> saved = dbManager.queueInsert(entry);
+                        processedUrlTracker.releaseWhenSaved(dedupKey, saved);
+                        if (ipPending) {
+                            ipFuture.thenAcceptBoth(saved, (ip, ignored) -> applyResolvedIP(entry, ip));
+                        }
                         
-                        // 通知UI URL发现 - 使用新的回调方法传递完整的请求响应数据
+                        // 通知UI URL发现 - 使用新的回调方法传递完整的请求响应数据；减载时只传条目，避免UI持有报文
                         if (callback != null) {
-                            callback.onURLDiscoveredWithRequestResponse(entry, request, response);
+                            if (shedBodies) {
+                                callback.onURLDiscovered(entry);
+                            } else {
+                                callback.onURLDiscoveredWithRequestResponse(entry, request, response);
+                            }
                         }
                     } catch (Exception e) {
-                        api.logging().logToError("保存URL到数据库失败: " + e.getMessage());
+                        processedUrlTracker.release(dedupKey);
+                        logger.rateLimited("save-url", HunterLogger.Level.ERROR, () -> "保存URL到数据库失败: " + e.getMessage());
+                    }
+                };
+                
+                pinnedKey = null;
+                if (onWorker) {
+                    saveTask.run();
+                } else {
+                    // 异步保存到数据库，队列已满时丢弃，并撤销已处理标记以便下次遇到时重新采集
+                    try {
+                        saveExecutor.execute(saveTask);
+                    } catch (RejectedExecutionException e) {
+                        processedUrlTracker.forget(dedupKey);
+                        logger.count(CapturePipeline.COUNTER_SHED_DROPPED);
+                        return;
                     }
-                });
+                }
+            } else {
+                processedUrlTracker.release(dedupKey);
+                pinnedKey = null;
             }
             
-            api.logging().logToOutput("发现新URL: " + url + " (主域名: " + matchedRootDomain + ")");
+            logger.count(COUNTER_CAPTURED);
+            logger.debug(() -> "发现新URL: " + url + " (主域名: " + matchedRootDomain + ")");
             
         } catch (Exception e) {
-            api.logging().logToError("处理URL失败: " + url + " - " + e.getMessage());
-        }
-    }
-    
-    /**
-     * 移除URL中的参数部分，只保留路径用于去重
-     */
-    private String removeUrlParameters(String url) {
-        if (url == null || url.isEmpty()) {
-            return url;
-        }
-        
-        int questionMarkIndex = url.indexOf('?');
-        if (questionMarkIndex != -1) {
-            return url.substring(0, questionMarkIndex);
+            if (pinnedKey != null) {
+                processedUrlTracker.release(pinnedKey);
+            }
+            logger.rateLimited("process-url", HunterLogger.Level.ERROR, () -> "处理URL失败: " + url + " - " + e.getMessage());
         }
-        
-        return url;
     }
     
     /**
@@ -293,37 +472,11 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
         }
     }
     
-    /**
-     * 找到匹配的根域名
-     */
-    private String findMatchingRootDomain(String host, Set<String> rootDomains) {
-        if (host == null || host.isEmpty()) {
-            return null;
-        }
-        
-        host = host.toLowerCase();
-        
-        for (String rootDomain : rootDomains) {
-            String normalizedRootDomain = rootDomain.toLowerCase();
-            
-            // 精确匹配
-            if (host.equals(normalizedRootDomain)) {
-                return rootDomain;
-            }
-            
-            // 子域名匹配
-            if (host.endsWith("." + normalizedRootDomain)) {
-                return rootDomain;
-            }
-        }
-        
-        return null;
-    }
-    
     /**
      * 创建URLEntry
      */
-    private URLEntry createURLEntry(String url, String method, String host, burp.api.montoya.http.message.requests.HttpRequest request, InterceptedResponse response) {
+    private URLEntry createURLEntry(String url, String method, String host, burp.api.montoya.http.message.requests.HttpRequest request, HttpResponse response,
+                                    String ip, boolean shedBodies, ToolType source) {
         try {
             URLEntry entry = new URLEntry();
             entry.setUrl(url);
@@ -332,32 +485,39 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
             entry.setPath(urlAnalyzer.extractPath(url));
             entry.setQuery(urlAnalyzer.extractQuery(url));
             
-            // 存储原始请求数据
+            // 按存储策略保存原始请求数据，超出上限的报文体会被截断
+            CapturePolicy policy = shedBodies ? CapturePolicy.HEADERS_ONLY : capturePolicy;
             if (request != null) {
                 try {
-                    entry.setRequestData(request.toByteArray().getBytes());
+                    policy.applyTo(entry, request, null);
                 } catch (Exception e) {
-                    api.logging().logToError("存储请求数据失败: " + e.getMessage());
+                    logger.rateLimited("store-request", HunterLogger.Level.ERROR, () -> "存储请求数据失败: " + e.getMessage());
                 }
             }
             
             // 处理响应信息
             if (response != null) {
                 entry.setStatusCode(response.statusCode());
-                entry.setLength(response.body().length());
+                entry.setLength(CapturePolicy.bodyLength(response));
                 
                 // 存储原始响应数据
                 try {
-                    entry.setResponseData(response.toByteArray().getBytes());
+                    policy.applyTo(entry, null, response);
                 } catch (Exception e) {
-                    api.logging().logToError("存储响应数据失败: " + e.getMessage());
+                    logger.rateLimited("store-response", HunterLogger.Level.ERROR, () -> "存储响应数据失败: " + e.getMessage());
                 }
                 
-                try {
-                    String responseBody = response.bodyToString();
-                    entry.setTitle(urlAnalyzer.extractTitle(responseBody));
-                } catch (Exception e) {
+                // 减载时跳过标题提取
+                if (shedBodies) {
                     entry.setTitle("");
+                } else {
+                    try {
+                        DomainConfig config = currentConfig;
+                        int titleScanLimit = config != null ? config.getTitleScanMaxBytes() : TitleExtractor.DEFAULT_MAX_SCAN_BYTES;
+                        entry.setTitle(urlAnalyzer.extractTitle(response, titleScanLimit));
+                    } catch (Exception e) {
+                        entry.setTitle("");
+                    }
                 }
             } else {
                 entry.setStatusCode(0);
@@ -365,28 +525,39 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
                 entry.setTitle("");
             }
             
-            // 解析IP和内网判断
-            try {
-                String ip = urlAnalyzer.resolveIP(host);
-                entry.setIp(ip);
-                entry.setIsInternal(urlAnalyzer.isInternalIP(ip));
-            } catch (Exception e) {
-                entry.setIp("");
-                entry.setIsInternal(false);
-            }
+            // IP和内网判断，解析未完成时为空，稍后回填
+            entry.setIp(ip);
+            entry.setIsInternal(urlAnalyzer.isInternalIP(ip));
             
             entry.setSubdomain(urlAnalyzer.extractSubdomain(host));
             entry.setTimestamp(new Date());
             entry.setIsChecked(false);
-            entry.setNotes("自动从Proxy实时提取");
+            entry.setNotes(source == null || source == ToolType.PROXY ? "自动从Proxy实时提取" : "自动从" + source.toolName() + "提取");
             
             return entry;
         } catch (Exception e) {
-            api.logging().logToError("创建URLEntry失败: " + e.getMessage());
+            logger.rateLimited("create-entry", HunterLogger.Level.ERROR, () -> "创建URLEntry失败: " + e.getMessage());
             return null;
         }
     }
     
+    /**
+     * 回填异步解析得到的IP，同时更新内存中的条目和数据库记录
+     */
+    private void applyResolvedIP(URLEntry entry, String ip) {
+        if (ip == null) {
+            return;
+        }
+        try {
+            boolean internal = urlAnalyzer.isInternalIP(ip);
+            entry.setIp(ip);
+            entry.setIsInternal(internal);
+            dbManager.updateURLIP(entry.getUrl(), ip, internal);
+        } catch (Exception e) {
+            logger.rateLimited("fill-ip", HunterLogger.Level.ERROR, () -> "回填IP失败: " + entry.getUrl() + " - " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取已发现的子域名统计
      */
@@ -395,119 +566,100 @@ public class ProxyListener implements ProxyRequestHandler, ProxyResponseHandler
     }
     
     /**
-     * 清理已处理的URL缓存（定期清理避免内存泄漏）
+     * 当前捕获队列中等待处理的任务数
      */
-    public void clearProcessedUrls() {
-        processedUrls.clear();
-        api.logging().logToOutput("已清理处理过的URL缓存");
+    public int getCaptureQueueDepth() {
+        return capturePipeline.getQueueDepth();
     }
     
     /**
-     * 关闭监听器
+     * 捕获队列容量
      */
-    public void shutdown() {
-        setEnabled(false);
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        api.logging().logToOutput("ProxyListener 已关闭");
+    public int getCaptureQueueCapacity() {
+        return capturePipeline.getCapacity();
     }
     
     /**
-     * 检查主机是否在黑名单中
+     * 因队列已满而丢弃的捕获数
      */
-    private boolean isHostBlacklisted(String host) {
-        if (currentConfig == null || currentConfig.getDomainBlacklist() == null) {
-            return false;
-        }
-        
-        for (String blacklistDomain : currentConfig.getDomainBlacklist()) {
-            if (blacklistDomain != null && !blacklistDomain.trim().isEmpty()) {
-                String normalizedBlacklist = blacklistDomain.trim().toLowerCase();
-                if (host.equals(normalizedBlacklist) || host.endsWith("." + normalizedBlacklist)) {
-                    api.logging().logToOutput("URL被域名黑名单过滤: " + host);
-                    return true;
-                }
-            }
-        }
-        return false;
+    public long getCaptureDroppedCount() {
+        return capturePipeline.getDroppedCount();
     }
     
     /**
-     * 检查URL扩展名是否在黑名单中
+     * 因积压只保存了报文头的捕获数
      */
-    private boolean isUrlExtensionBlacklisted(String url) {
-        if (currentConfig == null || currentConfig.getBlacklistExtensions() == null) {
-            return false;
-        }
-        
-        // 提取文件扩展名
-        String extension = extractFileExtension(url);
-        if (extension == null || extension.isEmpty()) {
-            return false;
-        }
-        
-        for (String blacklistExt : currentConfig.getBlacklistExtensions()) {
-            if (blacklistExt != null && blacklistExt.trim().equalsIgnoreCase(extension)) {
-                api.logging().logToOutput("URL被扩展名黑名单过滤: " + url + " (扩展名: " + extension + ")");
-                return true;
-            }
-        }
-        return false;
+    public long getCaptureBodiesShedCount() {
+        return capturePipeline.getBodiesShedCount();
     }
     
     /**
-     * 检查状态码是否在黑名单中
+     * 采样策略下被新任务替换掉的旧任务数
      */
-    private boolean isStatusCodeBlacklisted(int statusCode) {
-        if (currentConfig == null || currentConfig.getBlacklistStatusCodes() == null) {
-            return false;
-        }
-        
-        for (Integer blacklistCode : currentConfig.getBlacklistStatusCodes()) {
-            if (blacklistCode != null && blacklistCode == statusCode) {
-                api.logging().logToOutput("URL被状态码黑名单过滤，状态码: " + statusCode);
-                return true;
-            }
-        }
-        return false;
+    public long getCaptureEvictedCount() {
+        return capturePipeline.getEvictedCount();
+    }
+    
+    /**
+     * 已由工作线程处理完成的捕获数
+     */
+    public long getCaptureProcessedCount() {
+        return capturePipeline.getProcessedCount();
+    }
+    
+    /**
+     * 重置已处理的URL缓存，并按当前数据库重新预热（切换项目后调用）
+     */
+    public void clearProcessedUrls() {
+        processedUrlTracker.reset();
+        templateVariantTracker.reset();
+        logger.info("已清理处理过的URL缓存");
+    }
+    
+    /**
+     * 当前生效的报文存储策略，供其他需要保存请求/响应的组件复用
+     */
+    public CapturePolicy getCapturePolicy() {
+        return capturePolicy;
+    }
+    
+    /**
+     * 当前生效的路径模板规则，UI按同一规则去重
+     */
+    public PathCanonicalizer getPathCanonicalizer() {
+        return pathCanonicalizer;
+    }
+    
+    /**
+     * 其他Burp工具流量的HttpHandler，由调用方注册到Burp
+     */
+    public ToolTrafficHandler getToolTrafficHandler() {
+        return toolTrafficHandler;
+    }
+    
+    public long getProcessedUrlCount() {
+        return processedUrlTracker.getTrackedCount();
     }
     
     /**
-     * 提取文件扩展名
+     * 关闭监听器
      */
-    private String extractFileExtension(String url) {
+    public void shutdown() {
+        setEnabled(false);
+        capturePipeline.shutdown(5, TimeUnit.SECONDS);
+        templateVariantTracker.shutdown();
+        saveExecutor.shutdown();
         try {
-            // 移除查询参数
-            int questionIndex = url.indexOf('?');
-            if (questionIndex != -1) {
-                url = url.substring(0, questionIndex);
+            if (!saveExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                saveExecutor.shutdownNow();
             }
-            
-            // 移除片段标识符
-            int hashIndex = url.indexOf('#');
-            if (hashIndex != -1) {
-                url = url.substring(0, hashIndex);
-            }
-            
-            // 查找最后一个点
-            int lastDotIndex = url.lastIndexOf('.');
-            int lastSlashIndex = url.lastIndexOf('/');
-            
-            // 确保点在最后一个斜杠之后，且不是隐藏文件
-            if (lastDotIndex > lastSlashIndex && lastDotIndex < url.length() - 1) {
-                return url.substring(lastDotIndex + 1).toLowerCase();
-            }
-            
-            return null;
-        } catch (Exception e) {
-            return null;
+        } catch (InterruptedException e) {
+            saveExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
+        logger.shutdown();
+        logger.info("ProxyListener 已关闭，累计处理 " + capturePipeline.getProcessedCount() + 
+            " 个捕获，丢弃 " + capturePipeline.getDroppedCount() + " 个");
+        logger.info(DnsResolver.getInstance().getStatsSummary());
     }
 } 
\ No newline at end of file
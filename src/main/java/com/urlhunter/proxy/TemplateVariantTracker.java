@@ -0,0 +1,135 @@
+package com.urlhunter.proxy;
+
+import burp.api.montoya.MontoyaApi;
+import com.urlhunter.database.DatabaseManager;
+import com.urlhunter.model.URLTemplate;
+import com.urlhunter.utils.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径模板的变体统计
+ * 每个规范化键用一个HyperLogLog草图记录出现过的具体路径，变体数是草图的去重估计（近似值，误差约3%），并保留前几个作为样例。
+ * 草图随模板保存在url_templates表中，写入时按寄存器合并，重启或切换项目后重复出现的路径不会再次计数；
+ * 统计先在内存中累积，定期合并写入数据库，不在Proxy线程上访问数据库。
+ */
+public class TemplateVariantTracker {
+    public static final int MAX_SAMPLES = 5;
+
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+    // 缓存的已入库草图数量上限，每个约1KB；超出时清空，之后的观察照常合并入库，只是多写几次
+    private static final int MAX_CACHED_SKETCHES = 4096;
+
+    private final MontoyaApi api;
+    private final DatabaseManager dbManager;
+    private final Map<String, PendingTemplate> pending = new ConcurrentHashMap<>();
+    // 最近一次写入后的合并草图，观察不会改变它时直接跳过，不产生写入
+    private final Map<String, HyperLogLog> storedSketches = new ConcurrentHashMap<>();
+    // 本次会话中已收满样例的模板，之后只累加计数
+    private final Map<String, Boolean> fullSamples = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public TemplateVariantTracker(MontoyaApi api, DatabaseManager dbManager) {
+        this.api = api;
+        this.dbManager = dbManager;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "URLHunter-TemplateFlush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 记录一次观察，concreteKey为去掉查询参数的具体URL
+     */
+    public void record(String canonicalKey, String host, String concreteKey) {
+        HyperLogLog stored = storedSketches.get(canonicalKey);
+        if (stored != null && stored.covers(concreteKey)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        pending.compute(canonicalKey, (key, delta) -> {
+            if (delta == null) {
+                delta = new PendingTemplate(new URLTemplate(key, host));
+                delta.template.setFirstSeen(now);
+            }
+            if (!delta.sketch.add(concreteKey)) {
+                return delta;
+            }
+            delta.template.setLastSeen(now);
+            List<String> samples = delta.template.getSampleUrls();
+            if (!fullSamples.containsKey(key) && samples.size() < MAX_SAMPLES && !samples.contains(concreteKey)) {
+                samples.add(concreteKey);
+            }
+            return delta;
+        });
+    }
+
+    /**
+     * 把累积的统计写入数据库
+     */
+    public void flush() {
+        try {
+            List<String> keys = new ArrayList<>(pending.keySet());
+            for (String key : keys) {
+                PendingTemplate delta = pending.remove(key);
+                if (delta == null) {
+                    continue;
+                }
+                URLTemplate template = delta.template;
+                template.setVariantSketch(delta.sketch.toBytes());
+                if (!dbManager.upsertURLTemplate(template, MAX_SAMPLES)) {
+                    continue;
+                }
+                if (storedSketches.size() >= MAX_CACHED_SKETCHES) {
+                    storedSketches.clear();
+                }
+                storedSketches.put(key, HyperLogLog.fromBytes(template.getVariantSketch()));
+                if (template.getSampleUrls().size() >= MAX_SAMPLES) {
+                    fullSamples.put(key, Boolean.TRUE);
+                }
+            }
+        } catch (Exception e) {
+            api.logging().logToError("写入路径模板统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 清空内存中的统计（切换项目时调用），未写入的增量会被丢弃
+     */
+    public void reset() {
+        pending.clear();
+        fullSamples.clear();
+        storedSketches.clear();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 停止定期写入并写入剩余统计
+     */
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    // 一个模板在两次写入之间的增量，只在pending.compute中修改
+    private static final class PendingTemplate {
+        private final URLTemplate template;
+        private final HyperLogLog sketch = new HyperLogLog();
+
+        PendingTemplate(URLTemplate template) {
+            this.template = template;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.urlhunter.proxy;
+
+import burp.api.montoya.core.ToolSource;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.handler.HttpHandler;
+import burp.api.montoya.http.handler.HttpRequestToBeSent;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.RequestToBeSentAction;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+import com.urlhunter.model.DomainConfig;
+import com.urlhunter.utils.HunterLogger;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 捕获Proxy以外的Burp工具（Repeater、Intruder、Scanner、其他插件等）产生的流量
+ * 按工具开关和采样率筛选后只把请求/响应引用放入捕获管道，解析和入库与Proxy流量共用同一组工作线程，
+ * 因此Intruder等工具的突发流量最多占满有界队列，不会阻塞Burp或压垮数据库。
+ * Proxy流量已由ProxyListener处理，这里直接跳过，避免重复捕获；本插件自己发出的请求（扫描、Fuzz、短链爆破）
+ * 带有INTERNAL_REQUEST_HEADER标记，发送前去掉标记并记下消息id，其响应同样跳过，不占用捕获队列。
+ */
+public class ToolTrafficHandler implements HttpHandler {
+    /**
+     * 本插件发出的请求加上此请求头，由本处理器在发送前移除
+     */
+    public static final String INTERNAL_REQUEST_HEADER = "X-URLHunter-Internal";
+
+    private static final String COUNTER_TOOL_CAPTURED = "tool-captured";
+    private static final String COUNTER_TOOL_SAMPLED_OUT = "tool-sampled-out";
+    private static final String COUNTER_TOOL_INTERNAL = "tool-internal";
+    // 没有收到响应的请求不会从集合中移除，超过上限时清空
+    private static final int MAX_PENDING_INTERNAL = 10000;
+
+    /**
+     * 捕获任务的接收方，任务被丢弃时返回false
+     */
+    public interface CaptureSink {
+        boolean submit(CaptureTask task);
+    }
+
+    private final HunterLogger logger;
+    private final CaptureSink sink;
+    // 每个工具一个计数器，采样按工具独立进行
+    private final Map<ToolType, AtomicLong> seenCounts = new EnumMap<>(ToolType.class);
+    // 本插件发出、尚未收到响应的请求的消息id
+    private final Set<Integer> internalMessageIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean enabled;
+    // 工具 -> 每N个采集1个，未配置或不大于0表示不采集
+    private volatile Map<ToolType, Integer> sampleRates = Collections.emptyMap();
+
+    public ToolTrafficHandler(HunterLogger logger, CaptureSink sink) {
+        this.logger = logger;
+        this.sink = sink;
+        for (ToolType tool : ToolType.values()) {
+            seenCounts.put(tool, new AtomicLong());
+        }
+
+        logger.registerCounter(COUNTER_TOOL_CAPTURED, "其他工具流量入队");
+        logger.registerCounter(COUNTER_TOOL_SAMPLED_OUT, "其他工具流量采样跳过");
+        logger.registerCounter(COUNTER_TOOL_INTERNAL, "本插件请求跳过");
+    }
+
+    /**
+     * 应用工具捕获配置，无法识别的工具名会被忽略
+     */
+    public void configure(DomainConfig config) {
+        DomainConfig effective = config != null ? config : new DomainConfig();
+        Map<ToolType, Integer> rates = new EnumMap<>(ToolType.class);
+        if (effective.getToolCaptureSampleRates() != null) {
+            for (Map.Entry<String, Integer> rule : effective.getToolCaptureSampleRates().entrySet()) {
+                if (rule.getKey() == null || rule.getValue() == null) {
+                    continue;
+                }
+                try {
+                    rates.put(ToolType.valueOf(rule.getKey().trim().toUpperCase()), rule.getValue());
+                } catch (IllegalArgumentException e) {
+                    logger.warn("忽略未知的工具名: " + rule.getKey());
+                }
+            }
+        }
+        rates.remove(ToolType.PROXY);
+        this.sampleRates = Collections.unmodifiableMap(rates);
+        this.enabled = effective.isToolCaptureEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent requestToBeSent) {
+        // 不论是否启用捕获都去掉标记，不把它发给目标
+        if (!requestToBeSent.hasHeader(INTERNAL_REQUEST_HEADER)) {
+            return RequestToBeSentAction.continueWith(requestToBeSent);
+        }
+        if (enabled) {
+            if (internalMessageIds.size() >= MAX_PENDING_INTERNAL) {
+                internalMessageIds.clear();
+            }
+            internalMessageIds.add(requestToBeSent.messageId());
+        }
+        return RequestToBeSentAction.continueWith(requestToBeSent.withRemovedHeader(INTERNAL_REQUEST_HEADER));
+    }
+
+    @Override
+    public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
+        if (!enabled) {
+            return ResponseReceivedAction.continueWith(responseReceived);
+        }
+
+        try {
+            if (internalMessageIds.remove(responseReceived.messageId())) {
+                logger.count(COUNTER_TOOL_INTERNAL);
+                return ResponseReceivedAction.continueWith(responseReceived);
+            }
+            ToolSource toolSource = responseReceived.toolSource();
+            ToolType tool = toolSource != null ? toolSource.toolType() : null;
+            if (tool != null && tool != ToolType.PROXY && shouldSample(tool)) {
+                // 只保存引用，URL解析、过滤和入库都在捕获工作线程中完成
+                if (sink.submit(new CaptureTask(responseReceived.initiatingRequest(), responseReceived, tool))) {
+                    logger.count(COUNTER_TOOL_CAPTURED);
+                }
+            }
+        } catch (Exception e) {
+            logger.rateLimited("tool-capture", HunterLogger.Level.ERROR, () -> "捕获工具流量失败: " + e.getMessage());
+        }
+
+        return ResponseReceivedAction.continueWith(responseReceived);
+    }
+
+    /**
+     * 按工具采样率决定是否采集，每N个响应采集第1个
+     */
+    private boolean shouldSample(ToolType tool) {
+        Integer rate = sampleRates.get(tool);
+        if (rate == null || rate <= 0) {
+            return false;
+        }
+        if (rate == 1) {
+            return true;
+        }
+        AtomicLong seen = seenCounts.get(tool);
+        if (seen.getAndIncrement() % rate != 0) {
+            logger.count(COUNTER_TOOL_SAMPLED_OUT);
+            return false;
+        }
+        return true;
+    }
+}
@@ -7,6 +7,9 @@ import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import com.urlhunter.model.URLEntry;
 import com.urlhunter.model.DomainConfig;
+import com.urlhunter.proxy.ToolTrafficHandler;
+import com.urlhunter.utils.CapturePolicy;
+import com.urlhunter.utils.CompiledFilter;
 import com.urlhunter.utils.URLAnalyzer;
 import com.urlhunter.database.DatabaseManager;
 
@@ -57,7 +60,9 @@ public class URLScanner {
             HttpService service = HttpService.httpService(urlAnalyzer.extractHost(url), 
                 urlAnalyzer.isHttps(url) ? 443 : 80, urlAnalyzer.isHttps(url));
             
-            HttpRequestResponse response = api.http().sendRequest(request.withService(service));
+            // 带上标记，工具流量捕获不会把扫描自己的请求再送入捕获队列
+            HttpRequestResponse response = api.http().sendRequest(request.withService(service)
+                .withAddedHeader(ToolTrafficHandler.INTERNAL_REQUEST_HEADER, "1"));
             
             URLEntry entry = new URLEntry();
             entry.setUrl(url);
@@ -69,8 +74,8 @@ public class URLScanner {
             if (response.response() != null) {
                 HttpResponse httpResponse = response.response();
                 entry.setStatusCode(httpResponse.statusCode());
-                entry.setLength(httpResponse.body().length());
-                entry.setTitle(urlAnalyzer.extractTitle(httpResponse.bodyToString()));
+                entry.setLength(CapturePolicy.bodyLength(httpResponse));
+                entry.setTitle(urlAnalyzer.extractTitle(httpResponse));
             }
             
             // 解析IP地址
@@ -108,7 +113,8 @@ public class URLScanner {
         CompletableFuture.runAsync(() -> {
             try {
                 DomainConfig config = dbManager.loadConfig();
-                List<String> filteredUrls = filterUrls(urls, config);
+                CompiledFilter filter = CompiledFilter.compile(config);
+                List<String> filteredUrls = filterUrls(urls, filter);
                 
                 int total = filteredUrls.size();
                 int current = 0;
@@ -117,8 +123,8 @@ public class URLScanner {
                     if (!isScanning.get()) break;
                     
                     URLEntry entry = scanURL(url);
-                    if (entry != null && !shouldFilterByStatusCode(entry.getStatusCode(), config)) {
-                        dbManager.insertURL(entry);
+                    if (entry != null && !filter.isStatusCodeBlacklisted(entry.getStatusCode())) {
+                        dbManager.queueInsert(entry);
                         
                         if (callback != null) {
                             callback.onURLScanned(entry);
@@ -126,7 +132,7 @@ public class URLScanner {
                         
                         // 如果启用Fuzz扫描，执行Fuzz攻击
                         if (isFuzzEnabled.get()) {
-                            performFuzzAttack(entry, config);
+                            performFuzzAttack(entry, config, filter);
                         }
                     }
                     
@@ -156,25 +162,17 @@ public class URLScanner {
     /**
      * 过滤URL列表
      */
-    private List<String> filterUrls(List<String> urls, DomainConfig config) {
+    private List<String> filterUrls(List<String> urls, CompiledFilter filter) {
         List<String> filteredUrls = new ArrayList<>();
         
         for (String url : urls) {
-            if (urlAnalyzer.shouldFilter(url, config.getBlacklistExtensions())) {
+            // 先做不需要解析主机的扩展名检查
+            if (filter.isExtensionBlacklisted(url)) {
                 continue;
             }
             
             // 检查主域名黑名单
-            String host = urlAnalyzer.extractHost(url);
-            boolean isBlacklisted = false;
-            for (String blacklistDomain : config.getDomainBlacklist()) {
-                if (host.endsWith(blacklistDomain)) {
-                    isBlacklisted = true;
-                    break;
-                }
-            }
-            
-            if (!isBlacklisted) {
+            if (!filter.isHostBlacklisted(urlAnalyzer.extractHost(url))) {
                 filteredUrls.add(url);
             }
         }
@@ -182,17 +180,10 @@ public class URLScanner {
         return filteredUrls;
     }
     
-    /**
-     * 根据状态码过滤
-     */
-    private boolean shouldFilterByStatusCode(int statusCode, DomainConfig config) {
-        return config.getBlacklistStatusCodes().contains(statusCode);
-    }
-    
     /**
      * 执行Fuzz攻击
      */
-    private void performFuzzAttack(URLEntry baseEntry, DomainConfig config) {
+    private void performFuzzAttack(URLEntry baseEntry, DomainConfig config, CompiledFilter filter) {
         if (!isFuzzEnabled.get()) return;
         
         try {
@@ -207,9 +198,9 @@ public class URLScanner {
                 String fuzzUrl = baseUrl.endsWith("/") ? baseUrl + fuzzWord : baseUrl + "/" + fuzzWord;
                 
                 URLEntry fuzzEntry = scanURL(fuzzUrl);
-                if (fuzzEntry != null && !shouldFilterByStatusCode(fuzzEntry.getStatusCode(), config)) {
+                if (fuzzEntry != null && !filter.isStatusCodeBlacklisted(fuzzEntry.getStatusCode())) {
                     fuzzEntry.setNotes("Fuzz发现: " + fuzzWord);
-                    dbManager.insertURL(fuzzEntry);
+                    dbManager.queueInsert(fuzzEntry);
                     
                     if (callback != null) {
                         callback.onURLScanned(fuzzEntry);
@@ -232,7 +223,7 @@ public class URLScanner {
         
         CompletableFuture.runAsync(() -> {
             try {
-                DomainConfig config = dbManager.loadConfig();
+                CompiledFilter filter = CompiledFilter.compile(dbManager.loadConfig());
                 
                 // 生成短链接字符集
                 String charset = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
@@ -241,7 +232,7 @@ public class URLScanner {
                 for (int length = 1; length <= 4; length++) {
                     if (!isShortLinkBruteForceEnabled.get()) break;
                     
-                    generateAndTestShortLinks(baseUrl, charset, length, config);
+                    generateAndTestShortLinks(baseUrl, charset, length, filter);
                 }
                 
             } catch (Exception e) {
@@ -253,23 +244,23 @@ public class URLScanner {
     /**
      * 生成并测试指定长度的短链接
      */
-    private void generateAndTestShortLinks(String baseUrl, String charset, int length, DomainConfig config) {
-        generateCombinations(charset, length, "", baseUrl, config);
+    private void generateAndTestShortLinks(String baseUrl, String charset, int length, CompiledFilter filter) {
+        generateCombinations(charset, length, "", baseUrl, filter);
     }
     
     /**
      * 递归生成字符组合
      */
-    private void generateCombinations(String charset, int length, String current, String baseUrl, DomainConfig config) {
+    private void generateCombinations(String charset, int length, String current, String baseUrl, CompiledFilter filter) {
         if (!isShortLinkBruteForceEnabled.get()) return;
         
         if (current.length() == length) {
             String shortLinkUrl = baseUrl.endsWith("/") ? baseUrl + current : baseUrl + "/" + current;
             
             URLEntry entry = scanURL(shortLinkUrl);
-            if (entry != null && !shouldFilterByStatusCode(entry.getStatusCode(), config)) {
+            if (entry != null && !filter.isStatusCodeBlacklisted(entry.getStatusCode())) {
                 entry.setNotes("短链接爆破发现: " + current);
-                dbManager.insertURL(entry);
+                dbManager.queueInsert(entry);
                 
                 if (callback != null) {
                     callback.onURLScanned(entry);
@@ -286,7 +277,7 @@ public class URLScanner {
         
         for (char c : charset.toCharArray()) {
             if (!isShortLinkBruteForceEnabled.get()) break;
-            generateCombinations(charset, length, current + c, baseUrl, config);
+            generateCombinations(charset, length, current + c, baseUrl, filter);
         }
     }
     
@@ -22,6 +22,27 @@ public class ConfigDialog extends JDialog {
     private JTextArea fuzzDictionaryArea;
     private JSpinner shortLinkMaxLengthSpinner;
     private JTextField shortLinkCharsetField;
+    private JCheckBox asyncCaptureCheckBox;
+    private JSpinner dnsPositiveTtlSpinner;
+    private JSpinner dnsNegativeTtlSpinner;
+    private JSpinner titleScanMaxBytesSpinner;
+    private JSpinner dedupMemorySpinner;
+    private JCheckBox verboseLoggingCheckBox;
+    private JSpinner maxRequestCaptureSpinner;
+    private JSpinner maxResponseCaptureSpinner;
+    private JCheckBox headOnlyForBinaryCheckBox;
+    private JTextArea contentTypeLimitsArea;
+    private JSpinner captureQueueCapacitySpinner;
+    private JSpinner shedBodiesThresholdSpinner;
+    private JComboBox<String> overflowPolicyComboBox;
+    private JSpinner overflowSampleRateSpinner;
+    private JCheckBox pathCanonicalizationCheckBox;
+    private JTextArea pathTemplateRulesArea;
+    private JCheckBox toolCaptureCheckBox;
+    private JTextArea toolSampleRatesArea;
+    private JCheckBox bodyCompressionCheckBox;
+    private JSpinner bodyCompressionMinBytesSpinner;
+    private JComboBox<String> databaseProfileComboBox;
     
     public ConfigDialog(Window parent, DatabaseManager dbManager) {
         super(parent, "配置", ModalityType.APPLICATION_MODAL);
@@ -52,6 +73,10 @@ public class ConfigDialog extends JDialog {
         JPanel shortLinkPanel = createShortLinkPanel();
         tabbedPane.addTab("短链接配置", shortLinkPanel);
         
+        // 捕获配置选项卡
+        JPanel capturePanel = createCapturePanel();
+        tabbedPane.addTab("捕获配置", capturePanel);
+        
         add(tabbedPane, BorderLayout.CENTER);
         
         // 按钮面板
@@ -173,6 +198,164 @@ public class ConfigDialog extends JDialog {
         return panel;
     }
     
+    private JPanel createCapturePanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+        gbc.anchor = GridBagConstraints.WEST;
+        
+        // 异步捕获开关
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
+        asyncCaptureCheckBox = new JCheckBox("异步捕获（Proxy线程只入队，解析和入库在后台完成）");
+        panel.add(asyncCaptureCheckBox, gbc);
+        
+        // DNS缓存TTL
+        gbc.gridx = 0; gbc.gridy = 1; gbc.gridwidth = 1;
+        panel.add(new JLabel("DNS缓存有效期(秒):"), gbc);
+        
+        gbc.gridx = 1;
+        dnsPositiveTtlSpinner = new JSpinner(new SpinnerNumberModel(600, 0, 86400, 60));
+        panel.add(dnsPositiveTtlSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 2;
+        panel.add(new JLabel("DNS解析失败缓存(秒):"), gbc);
+        
+        gbc.gridx = 1;
+        dnsNegativeTtlSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 3600, 10));
+        panel.add(dnsNegativeTtlSpinner, gbc);
+        
+        // 标题提取扫描上限
+        gbc.gridx = 0; gbc.gridy = 3;
+        panel.add(new JLabel("标题扫描上限(KB):"), gbc);
+        
+        gbc.gridx = 1;
+        titleScanMaxBytesSpinner = new JSpinner(new SpinnerNumberModel(64, 1, 10240, 16));
+        panel.add(titleScanMaxBytesSpinner, gbc);
+        
+        // 去重过滤器内存预算
+        gbc.gridx = 0; gbc.gridy = 4;
+        panel.add(new JLabel("去重过滤器内存(KB，重启生效):"), gbc);
+        
+        gbc.gridx = 1;
+        dedupMemorySpinner = new JSpinner(new SpinnerNumberModel(4096, 64, 262144, 1024));
+        panel.add(dedupMemorySpinner, gbc);
+        
+        // 调试日志开关
+        gbc.gridx = 0; gbc.gridy = 5; gbc.gridwidth = 2;
+        verboseLoggingCheckBox = new JCheckBox("详细日志（逐条输出每个URL的捕获和过滤，仅用于调试）");
+        panel.add(verboseLoggingCheckBox, gbc);
+        gbc.gridwidth = 1;
+        
+        // 请求/响应存储上限
+        gbc.gridx = 0; gbc.gridy = 6;
+        panel.add(new JLabel("请求体存储上限(KB):"), gbc);
+        
+        gbc.gridx = 1;
+        maxRequestCaptureSpinner = new JSpinner(new SpinnerNumberModel(256, 0, 1048576, 64));
+        panel.add(maxRequestCaptureSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 7;
+        panel.add(new JLabel("响应体存储上限(KB):"), gbc);
+        
+        gbc.gridx = 1;
+        maxResponseCaptureSpinner = new JSpinner(new SpinnerNumberModel(1024, 0, 1048576, 256));
+        panel.add(maxResponseCaptureSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 8; gbc.gridwidth = 2;
+        headOnlyForBinaryCheckBox = new JCheckBox("二进制响应（图片、字体、压缩包等）只保存响应头");
+        panel.add(headOnlyForBinaryCheckBox, gbc);
+        
+        // 按Content-Type配置的响应体上限
+        gbc.gridy = 9;
+        panel.add(new JLabel("按Content-Type设置响应体上限（每行一条，格式: 类型前缀=KB）:"), gbc);
+        
+        gbc.gridy = 10; gbc.fill = GridBagConstraints.HORIZONTAL;
+        contentTypeLimitsArea = new JTextArea(4, 30);
+        panel.add(new JScrollPane(contentTypeLimitsArea), gbc);
+        gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        
+        // 捕获队列减载
+        gbc.gridx = 0; gbc.gridy = 11;
+        panel.add(new JLabel("捕获队列容量(重启生效):"), gbc);
+        
+        gbc.gridx = 1;
+        captureQueueCapacitySpinner = new JSpinner(new SpinnerNumberModel(10000, 100, 1000000, 1000));
+        panel.add(captureQueueCapacitySpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 12;
+        panel.add(new JLabel("队列占用超过(%)时只保存报文头:"), gbc);
+        
+        gbc.gridx = 1;
+        shedBodiesThresholdSpinner = new JSpinner(new SpinnerNumberModel(70, 0, 100, 5));
+        panel.add(shedBodiesThresholdSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 13;
+        panel.add(new JLabel("队列满时:"), gbc);
+        
+        gbc.gridx = 1;
+        overflowPolicyComboBox = new JComboBox<>(new String[]{"丢弃新URL", "采样保留（替换最旧任务）"});
+        panel.add(overflowPolicyComboBox, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 14;
+        panel.add(new JLabel("采样率(每N个保留1个):"), gbc);
+        
+        gbc.gridx = 1;
+        overflowSampleRateSpinner = new JSpinner(new SpinnerNumberModel(10, 1, 1000, 1));
+        panel.add(overflowSampleRateSpinner, gbc);
+        
+        // 路径模板去重
+        gbc.gridx = 0; gbc.gridy = 15; gbc.gridwidth = 2;
+        pathCanonicalizationCheckBox = new JCheckBox("按路径模板去重（/user/123与/user/456视为同一端点）");
+        panel.add(pathCanonicalizationCheckBox, gbc);
+        
+        gbc.gridy = 16;
+        panel.add(new JLabel("路径段规则（每行一条，格式: 占位符名=正则，按顺序匹配）:"), gbc);
+        
+        gbc.gridy = 17; gbc.fill = GridBagConstraints.HORIZONTAL;
+        pathTemplateRulesArea = new JTextArea(4, 30);
+        panel.add(new JScrollPane(pathTemplateRulesArea), gbc);
+        gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        
+        // 其他Burp工具的流量
+        gbc.gridx = 0; gbc.gridy = 18; gbc.gridwidth = 2;
+        toolCaptureCheckBox = new JCheckBox("同时捕获Repeater、Intruder、Scanner等其他工具的流量");
+        panel.add(toolCaptureCheckBox, gbc);
+        
+        gbc.gridy = 19;
+        panel.add(new JLabel("按工具采样（每行一条，格式: 工具名=N，每N个响应采集1个，0为不采集）:"), gbc);
+        
+        gbc.gridy = 20; gbc.fill = GridBagConstraints.HORIZONTAL;
+        toolSampleRatesArea = new JTextArea(4, 30);
+        panel.add(new JScrollPane(toolSampleRatesArea), gbc);
+        gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
+        
+        // 报文压缩
+        gbc.gridx = 0; gbc.gridy = 21; gbc.gridwidth = 2;
+        bodyCompressionCheckBox = new JCheckBox("压缩存储文本报文（Deflate，二进制和已压缩的响应原样保存）");
+        panel.add(bodyCompressionCheckBox, gbc);
+        gbc.gridwidth = 1;
+        
+        gbc.gridx = 0; gbc.gridy = 22;
+        panel.add(new JLabel("报文达到多少字节才压缩:"), gbc);
+        
+        gbc.gridx = 1;
+        bodyCompressionMinBytesSpinner = new JSpinner(new SpinnerNumberModel(512, 0, 1048576, 256));
+        panel.add(bodyCompressionMinBytesSpinner, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 23;
+        panel.add(new JLabel("数据库性能档位:"), gbc);
+        
+        gbc.gridx = 1;
+        databaseProfileComboBox = new JComboBox<>(new String[]{"安全（每次提交同步磁盘）", "均衡", "高速（更多内存）"});
+        panel.add(databaseProfileComboBox, gbc);
+        
+        // 占位，使内容靠上
+        gbc.gridy = 99; gbc.weighty = 1.0;
+        panel.add(Box.createVerticalGlue(), gbc);
+        
+        return panel;
+    }
+    
     private JPanel createButtonPanel() {
         JPanel buttonPanel = new JPanel(new FlowLayout());
         
@@ -226,6 +409,42 @@ public class ConfigDialog extends JDialog {
         // 加载短链接配置
         shortLinkCharsetField.setText(config.getShortLinkCharset());
         shortLinkMaxLengthSpinner.setValue(config.getShortLinkMaxLength());
+        
+        // 加载捕获配置
+        asyncCaptureCheckBox.setSelected(config.isAsyncCaptureEnabled());
+        dnsPositiveTtlSpinner.setValue(config.getDnsPositiveTtlSeconds());
+        dnsNegativeTtlSpinner.setValue(config.getDnsNegativeTtlSeconds());
+        titleScanMaxBytesSpinner.setValue(Math.max(1, config.getTitleScanMaxBytes() / 1024));
+        dedupMemorySpinner.setValue(Math.max(64, config.getDedupMemoryBudgetKb()));
+        verboseLoggingCheckBox.setSelected(config.isVerboseLoggingEnabled());
+        maxRequestCaptureSpinner.setValue(Math.max(0, config.getMaxRequestCaptureBytes() / 1024));
+        maxResponseCaptureSpinner.setValue(Math.max(0, config.getMaxResponseCaptureBytes() / 1024));
+        headOnlyForBinaryCheckBox.setSelected(config.isHeadOnlyForBinary());
+        StringBuilder contentTypeLimits = new StringBuilder();
+        for (java.util.Map.Entry<String, Integer> rule : config.getContentTypeCaptureLimits().entrySet()) {
+            contentTypeLimits.append(rule.getKey()).append("=").append(rule.getValue() / 1024).append("\n");
+        }
+        contentTypeLimitsArea.setText(contentTypeLimits.toString());
+        captureQueueCapacitySpinner.setValue(Math.max(100, config.getCaptureQueueCapacity()));
+        shedBodiesThresholdSpinner.setValue(Math.max(0, Math.min(100, config.getShedBodiesThresholdPercent())));
+        overflowPolicyComboBox.setSelectedIndex(config.getOverflowPolicy() == DomainConfig.OverflowPolicy.SAMPLE ? 1 : 0);
+        overflowSampleRateSpinner.setValue(Math.max(1, config.getOverflowSampleRate()));
+        pathCanonicalizationCheckBox.setSelected(config.isPathCanonicalizationEnabled());
+        StringBuilder pathRules = new StringBuilder();
+        for (java.util.Map.Entry<String, String> rule : config.getPathTemplateRules().entrySet()) {
+            pathRules.append(rule.getKey()).append("=").append(rule.getValue()).append("\n");
+        }
+        pathTemplateRulesArea.setText(pathRules.toString());
+        toolCaptureCheckBox.setSelected(config.isToolCaptureEnabled());
+        StringBuilder toolRates = new StringBuilder();
+        for (java.util.Map.Entry<String, Integer> rule : config.getToolCaptureSampleRates().entrySet()) {
+            toolRates.append(rule.getKey()).append("=").append(rule.getValue()).append("\n");
+        }
+        toolSampleRatesArea.setText(toolRates.toString());
+        bodyCompressionCheckBox.setSelected(config.isBodyCompressionEnabled());
+        bodyCompressionMinBytesSpinner.setValue(Math.max(0, config.getBodyCompressionMinBytes()));
+        DomainConfig.DatabaseProfile profile = config.getDatabaseProfile();
+        databaseProfileComboBox.setSelectedIndex(profile != null ? profile.ordinal() : DomainConfig.DatabaseProfile.BALANCED.ordinal());
     }
     
     private void saveConfig() {
@@ -276,6 +495,95 @@ public class ConfigDialog extends JDialog {
             config.setShortLinkCharset(shortLinkCharsetField.getText());
             config.setShortLinkMaxLength((Integer) shortLinkMaxLengthSpinner.getValue());
             
+            // 保存捕获配置
+            config.setAsyncCaptureEnabled(asyncCaptureCheckBox.isSelected());
+            config.setDnsPositiveTtlSeconds((Integer) dnsPositiveTtlSpinner.getValue());
+            config.setDnsNegativeTtlSeconds((Integer) dnsNegativeTtlSpinner.getValue());
+            config.setTitleScanMaxBytes((Integer) titleScanMaxBytesSpinner.getValue() * 1024);
+            config.setDedupMemoryBudgetKb((Integer) dedupMemorySpinner.getValue());
+            config.setVerboseLoggingEnabled(verboseLoggingCheckBox.isSelected());
+            config.setMaxRequestCaptureBytes((Integer) maxRequestCaptureSpinner.getValue() * 1024);
+            config.setMaxResponseCaptureBytes((Integer) maxResponseCaptureSpinner.getValue() * 1024);
+            config.setHeadOnlyForBinary(headOnlyForBinaryCheckBox.isSelected());
+            
+            java.util.Map<String, Integer> contentTypeLimits = new java.util.LinkedHashMap<>();
+            for (String line : contentTypeLimitsArea.getText().split("\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                try {
+                    if (eq <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    contentTypeLimits.put(line.substring(0, eq).trim().toLowerCase(),
+                        Integer.parseInt(line.substring(eq + 1).trim()) * 1024);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, 
+                        "无效的Content-Type规则: " + line, 
+                        "配置错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+            config.setContentTypeCaptureLimits(contentTypeLimits);
+            config.setCaptureQueueCapacity((Integer) captureQueueCapacitySpinner.getValue());
+            config.setShedBodiesThresholdPercent((Integer) shedBodiesThresholdSpinner.getValue());
+            config.setOverflowPolicy(overflowPolicyComboBox.getSelectedIndex() == 1 ?
+                DomainConfig.OverflowPolicy.SAMPLE : DomainConfig.OverflowPolicy.DROP_NEW);
+            config.setOverflowSampleRate((Integer) overflowSampleRateSpinner.getValue());
+            config.setPathCanonicalizationEnabled(pathCanonicalizationCheckBox.isSelected());
+            
+            java.util.Map<String, String> pathRules = new java.util.LinkedHashMap<>();
+            for (String line : pathTemplateRulesArea.getText().split("\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                String regex = eq > 0 ? line.substring(eq + 1).trim() : "";
+                try {
+                    if (regex.isEmpty()) {
+                        throw new java.util.regex.PatternSyntaxException("缺少正则", line, -1);
+                    }
+                    java.util.regex.Pattern.compile(regex);
+                } catch (java.util.regex.PatternSyntaxException ex) {
+                    JOptionPane.showMessageDialog(this, 
+                        "无效的路径段规则: " + line, 
+                        "配置错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                pathRules.put(line.substring(0, eq).trim(), regex);
+            }
+            config.setPathTemplateRules(pathRules);
+            config.setToolCaptureEnabled(toolCaptureCheckBox.isSelected());
+            
+            java.util.Map<String, Integer> toolRates = new java.util.LinkedHashMap<>();
+            for (String line : toolSampleRatesArea.getText().split("\n")) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                try {
+                    if (eq <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    String tool = line.substring(0, eq).trim().toUpperCase();
+                    burp.api.montoya.core.ToolType.valueOf(tool);
+                    toolRates.put(tool, Math.max(0, Integer.parseInt(line.substring(eq + 1).trim())));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(this, 
+                        "无效的工具采样规则: " + line, 
+                        "配置错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+            config.setToolCaptureSampleRates(toolRates);
+            config.setBodyCompressionEnabled(bodyCompressionCheckBox.isSelected());
+            config.setBodyCompressionMinBytes((Integer) bodyCompressionMinBytesSpinner.getValue());
+            config.setDatabaseProfile(DomainConfig.DatabaseProfile.values()[databaseProfileComboBox.getSelectedIndex()]);
+            
             // 保存到数据库
             dbManager.saveConfig(config);
             
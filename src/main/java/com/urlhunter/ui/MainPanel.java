@@ -5,10 +5,15 @@ import burp.api.montoya.proxy.ProxyHttpRequestResponse;
 import burp.api.montoya.proxy.http.InterceptedResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.HttpRequestResponse;
+import com.urlhunter.model.URLChangeSet;
 import com.urlhunter.model.URLEntry;
 import com.urlhunter.model.DomainConfig;
 import com.urlhunter.database.DatabaseManager;
+import com.urlhunter.database.MergePolicy;
 import com.urlhunter.scanner.URLScanner;
+import com.urlhunter.utils.CapturePolicy;
+import com.urlhunter.utils.DnsResolver;
+import com.urlhunter.utils.DomainIndex;
 import com.urlhunter.utils.URLAnalyzer;
 import com.urlhunter.proxy.ProxyListener;
 
@@ -27,6 +32,8 @@ import java.nio.file.Files;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.text.SimpleDateFormat;
 
 public class MainPanel extends JPanel {
@@ -57,12 +64,26 @@ public class MainPanel extends JPanel {
     // 通用组件
     private JProgressBar progressBar;
     private JLabel statusLabel;
+    private JLabel captureStatsLabel;
+    private javax.swing.Timer captureStatsTimer;
+    // 定时从数据库变更序列增量同步界面，补上回调遗漏的变更
+    private javax.swing.Timer changeFeedTimer;
     private JSplitPane mainSplitPane;
     
     // 数据
     private Map<String, DefaultMutableTreeNode> domainNodes = new HashMap<>();
     private List<URLEntry> allEntries = new ArrayList<>();
     private Set<String> checkedDomains = new HashSet<>();
+    // 界面已同步到的数据库变更序号、是否有同步正在进行、进行中时是否又请求了同步；只在EDT上读写
+    private long appliedChangeSeq;
+    private boolean changeRefreshRunning;
+    private boolean changeRefreshPending;
+    // 正在后台全量加载的序号，新的加载开始后旧的结果作废；加载期间增量同步推迟到加载完成后；只在EDT上读写
+    private long dataLoadGeneration;
+    private boolean dataLoading;
+    // 域名表格计数是否需要刷新、刷新是否正在进行；只在EDT上读写
+    private boolean domainCountsStale;
+    private boolean domainCountsRefreshing;
     
     // 表格列名
     private static final String[] DOMAINS_COLUMNS = {
@@ -73,6 +94,10 @@ public class MainPanel extends JPanel {
     private static final String STATUS_UNCHECKED = "UnChecked";
     private static final String STATUS_CHECKING = "Checking";
     private static final String STATUS_DONE = "Done";
+    // 增量同步每次读取的变更数；一次累计超过上限时改为全量重新加载
+    private static final int CHANGE_FEED_PAGE_SIZE = 1000;
+    private static final int CHANGE_FEED_RELOAD_THRESHOLD = 50000;
+    private static final int CHANGE_FEED_INTERVAL_MILLIS = 3000;
     
     public MainPanel(MontoyaApi api, DatabaseManager dbManager) {
         this.api = api;
@@ -87,6 +112,7 @@ public class MainPanel extends JPanel {
         // 注册ProxyListener到Burp
         api.proxy().registerRequestHandler(proxyListener);
         api.proxy().registerResponseHandler(proxyListener);
+        api.http().registerHttpHandler(proxyListener.getToolTrafficHandler());
         
         createUI();
     }
@@ -97,7 +123,7 @@ public class MainPanel extends JPanel {
             public void onURLScanned(URLEntry urlEntry) {
                 SwingUtilities.invokeLater(() -> {
                     updateDomainTree(urlEntry);
-                    updateDomainsTable();
+                    domainCountsStale = true;
                     
                     // 同时更新树形面板
                     titlesTreePanel.addURLEntry(urlEntry, null);
@@ -152,7 +178,7 @@ public class MainPanel extends JPanel {
             }
             
             @Override
-            public void onURLDiscoveredWithRequestResponse(URLEntry urlEntry, burp.api.montoya.http.message.requests.HttpRequest request, burp.api.montoya.proxy.http.InterceptedResponse response) {
+            public void onURLDiscoveredWithRequestResponse(URLEntry urlEntry, burp.api.montoya.http.message.requests.HttpRequest request, burp.api.montoya.http.message.responses.HttpResponse response) {
                 SwingUtilities.invokeLater(() -> {
                     // 创建HttpRequestResponse对象
                     try {
@@ -241,6 +267,10 @@ public class MainPanel extends JPanel {
         
         // 创建树形Titles面板
         titlesTreePanel = new TitlesTreePanel(api, urlScanner);
+        titlesTreePanel.setCapturePolicySource(proxyListener::getCapturePolicy);
+        titlesTreePanel.setCanonicalizerSource(proxyListener::getPathCanonicalizer);
+        titlesTreePanel.setBodySource(dbManager::getBodies, dbManager::searchIds);
+        titlesTreePanel.setStatisticsSource(dbManager::countURLsByCheckStatus, dbManager::countURLsByStatusClass);
         
         // 创建主标签页
         mainTabbedPane = new JTabbedPane();
@@ -264,6 +294,8 @@ public class MainPanel extends JPanel {
         
         // 加载数据
         loadDataFromDatabase();
+        changeFeedTimer = new javax.swing.Timer(CHANGE_FEED_INTERVAL_MILLIS, e -> refreshFromChanges());
+        changeFeedTimer.start();
     }
     
     private JMenuBar createMenuBar() {
@@ -280,10 +312,18 @@ public class MainPanel extends JPanel {
         openProjectItem.addActionListener(e -> openProject());
         projectMenu.add(openProjectItem);
         
+        JMenuItem mergeProjectItem = new JMenuItem("合并项目");
+        mergeProjectItem.addActionListener(e -> mergeProject());
+        projectMenu.add(mergeProjectItem);
+        
         JMenuItem importDomainListItem = new JMenuItem("导入域名列表");
         importDomainListItem.addActionListener(e -> importDomainList());
         projectMenu.add(importDomainListItem);
         
+        JMenuItem bodyStoreStatsItem = new JMenuItem("报文存储统计");
+        bodyStoreStatsItem.addActionListener(e -> showBodyStoreStats());
+        projectMenu.add(bodyStoreStatsItem);
+        
         projectMenu.addSeparator();
         
         JMenuItem exitItem = new JMenuItem("退出");
@@ -466,9 +506,33 @@ public class MainPanel extends JPanel {
         progressBar.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
         statusPanel.add(progressBar, BorderLayout.CENTER);
         
+        // 捕获队列状态，定时刷新
+        captureStatsLabel = new JLabel();
+        captureStatsLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        statusPanel.add(captureStatsLabel, BorderLayout.EAST);
+        captureStatsTimer = new javax.swing.Timer(2000, e -> updateCaptureStats());
+        captureStatsTimer.start();
+        
         return statusPanel;
     }
     
+    /**
+     * 刷新捕获队列深度和丢弃计数
+     */
+    private void updateCaptureStats() {
+        DnsResolver dnsResolver = DnsResolver.getInstance();
+        captureStatsLabel.setText(String.format("捕获队列: %d/%d  已处理: %d  丢弃: %d  仅报文头: %d  采样替换: %d  DNS命中: %d  未命中: %d",
+            proxyListener.getCaptureQueueDepth(),
+            proxyListener.getCaptureQueueCapacity(),
+            proxyListener.getCaptureProcessedCount(),
+            proxyListener.getCaptureDroppedCount(),
+            proxyListener.getCaptureBodiesShedCount(),
+            proxyListener.getCaptureEvictedCount(),
+            dnsResolver.getHitCount(),
+            dnsResolver.getMissCount()));
+        refreshStaleDomainCounts();
+    }
+    
     // 其余方法保持不变...
     // [保留其他必要的方法实现，但移除所有titles表格相关代码]
     
@@ -486,7 +550,7 @@ public class MainPanel extends JPanel {
         
         // 更新域名相关显示
         updateDomainTree(entry);
-        updateDomainsTable();
+        domainCountsStale = true;
     }
     
     /**
@@ -537,17 +601,15 @@ public class MainPanel extends JPanel {
                 }
             }
             
-            try {
-                // 创建新的数据库文件
-                dbManager.createNewDatabase(selectedFile.getAbsolutePath());
-                clearAllData();
-                statusLabel.setText("新项目已创建: " + selectedFile.getName());
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, 
-                    "创建新项目失败: " + e.getMessage(), 
-                    "错误", 
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            // 创建新的数据库文件
+            File projectFile = selectedFile;
+            clearAllData();
+            switchProjectAsync(projectFile, "创建新项目", changeSeq -> {
+                appliedChangeSeq = changeSeq;
+                proxyListener.clearProcessedUrls();
+                finishDataLoad();
+                statusLabel.setText("新项目已创建: " + projectFile.getName());
+            });
         }
     }
     
@@ -557,21 +619,109 @@ public class MainPanel extends JPanel {
         
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            try {
-                // 先清空所有现有数据
-                clearAllData();
-                
-                // 切换数据库文件
-                dbManager.switchDatabase(selectedFile.getAbsolutePath());
+            // 先清空所有现有数据
+            clearAllData();
+            switchProjectAsync(selectedFile, "打开项目", changeSeq -> {
+                // 按新数据库重建去重状态
+                proxyListener.clearProcessedUrls();
                 
                 // 从新数据库加载数据
                 loadDataFromDatabase();
                 
                 statusLabel.setText("项目已打开: " + selectedFile.getName());
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "打开项目失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+    
+    /**
+     * 在后台线程中切换数据库文件：等待旧项目排队的写入完成、打开并迁移新项目，可能耗时较长
+     * 切换期间暂停增量同步，之前开始的全量加载结果作废；成功后在EDT上以新项目的变更序号调用onSwitched
+     */
+    private void switchProjectAsync(File file, String action, java.util.function.LongConsumer onSwitched) {
+        ++dataLoadGeneration;
+        dataLoading = true;
+        statusLabel.setText("正在" + action + ": " + file.getName() + "...");
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                dbManager.switchDatabase(file.getAbsolutePath());
+            } catch (java.sql.SQLException e) {
+                throw new CompletionException(e);
             }
+            return dbManager.currentChangeSeq();
+        }).whenComplete((changeSeq, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                finishDataLoad();
+                statusLabel.setText(action + "失败");
+                JOptionPane.showMessageDialog(this, action + "失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            onSwitched.accept(changeSeq);
+        }));
+    }
+    
+    /**
+     * 把队友的项目合并到当前项目，同一URL的取舍由用户选择的合并策略决定；合并在后台线程执行，完成后重新加载数据
+     */
+    private void mergeProject() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("SQLite数据库文件", "db"));
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File selectedFile = fileChooser.getSelectedFile();
+        MergePolicy policy = (MergePolicy) JOptionPane.showInputDialog(this,
+            "两个项目中都存在的URL如何处理：",
+            "合并项目",
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            MergePolicy.values(),
+            MergePolicy.KEEP_TRIAGED);
+        if (policy == null) {
+            return;
         }
+        
+        statusLabel.setText("正在合并项目: " + selectedFile.getName() + "...");
+        CompletableFuture.supplyAsync(() -> {
+            // 先写入排队中的URL，合并时与它们按同一规则处理
+            dbManager.flushInserts(10, TimeUnit.SECONDS);
+            try {
+                return dbManager.importFromDatabase(selectedFile.getAbsolutePath(), policy);
+            } catch (java.sql.SQLException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((added, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                statusLabel.setText("合并项目失败");
+                JOptionPane.showMessageDialog(this, "合并项目失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // 合并的URL经变更序列增量加入界面
+            proxyListener.clearProcessedUrls();
+            refreshFromChanges();
+            statusLabel.setText("项目已合并: " + selectedFile.getName() + "，新增 " + added + " 个URL");
+        }));
+    }
+    
+    /**
+     * 回收未引用的报文后显示去重和压缩统计，统计需要扫描报文表，在后台线程执行
+     */
+    private void showBodyStoreStats() {
+        statusLabel.setText("正在统计报文存储...");
+        CompletableFuture.supplyAsync(() -> {
+            dbManager.flushInserts(10, TimeUnit.SECONDS);
+            dbManager.purgeUnreferencedBlobs();
+            return dbManager.getBodyStoreStats();
+        }).whenComplete((stats, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                statusLabel.setText("统计报文存储失败");
+                JOptionPane.showMessageDialog(this, "统计报文存储失败: " + error.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            statusLabel.setText("报文存储: 去重比 " + String.format("%.2f", stats.getDedupRatio()));
+            JOptionPane.showMessageDialog(this, stats.toString().replace("；", "\n"), "报文存储统计", JOptionPane.INFORMATION_MESSAGE);
+        }));
     }
     
     private void addDomain() { 
@@ -615,6 +765,13 @@ public class MainPanel extends JPanel {
             return;
         }
         
+        DomainIndex rootDomainIndex = DomainIndex.build(rootDomains);
+        // 列表中已有的URL，在UI线程上取快照供后台去重
+        Set<String> listedUrls = new HashSet<>();
+        for (URLEntry entry : allEntries) {
+            listedUrls.add(entry.getUrl());
+        }
+        
         getDomainButton.setEnabled(false);
         getDomainButton.setText("正在从Proxy提取...");
         
@@ -631,7 +788,7 @@ public class MainPanel extends JPanel {
                         
                         if (host != null && !host.isEmpty()) {
                             // 检查是否属于已添加的主域名
-                            String matchedRootDomain = findMatchingRootDomain(host, rootDomains);
+                            String matchedRootDomain = rootDomainIndex.longestMatch(host);
                             
                             if (matchedRootDomain != null) {
                                 // 添加子域名到发现列表
@@ -650,6 +807,37 @@ public class MainPanel extends JPanel {
                     }
                 }
                 
+                // 一次批量查询哪些URL已入库，不逐条扫描数据库
+                List<String> candidateUrls = new ArrayList<>();
+                for (List<URLEntry> urlList : discoveredUrls.values()) {
+                    for (URLEntry entry : urlList) {
+                        candidateUrls.add(entry.getUrl());
+                    }
+                }
+                Set<String> storedUrls = dbManager.existsByUrls(candidateUrls);
+                
+                // 已入库、已在列表中或本次已添加的URL不再重复添加
+                Set<String> knownUrls = new HashSet<>(storedUrls);
+                knownUrls.addAll(listedUrls);
+                List<URLEntry> newEntries = new ArrayList<>();
+                for (String rootDomain : rootDomains) {
+                    for (URLEntry entry : discoveredUrls.getOrDefault(rootDomain, Collections.emptyList())) {
+                        if (!isDuplicateURL(entry.getUrl(), knownUrls)) {
+                            newEntries.add(entry);
+                        }
+                    }
+                }
+                
+                // 写入期间临时使用批量导入参数，在同一线程中成对恢复，不跨越后面的对话框
+                dbManager.beginBulkImport();
+                try {
+                    for (URLEntry entry : newEntries) {
+                        dbManager.queueInsert(entry);
+                    }
+                } finally {
+                    dbManager.endBulkImport();
+                }
+                
                 // 更新UI
                 SwingUtilities.invokeLater(() -> {
                     try {
@@ -670,19 +858,15 @@ public class MainPanel extends JPanel {
                             
                             if (urls != null) {
                                 totalUrls += urls.size();
-                                
-                                // 保存URL到数据库并添加到树形面板
-                                for (URLEntry entry : urls) {
-                                    // 检查是否已存在相同URL，避免重复
-                                    if (!isDuplicateURL(entry.getUrl())) {
-                                        dbManager.insertURL(entry);
-                                        titlesTreePanel.addURLEntry(entry, null);
-                                        allEntries.add(entry);
-                                    }
-                                }
                             }
                         }
                         
+                        // 已排队入库的新URL添加到树形面板
+                        for (URLEntry entry : newEntries) {
+                            titlesTreePanel.addURLEntry(entry, null);
+                            allEntries.add(entry);
+                        }
+                        
                         statusLabel.setText(String.format("从Proxy提取完成：发现 %d 个子域名，%d 个URL", 
                             totalSubdomains, totalUrls));
                         
@@ -890,12 +1074,42 @@ public class MainPanel extends JPanel {
         // 右键菜单实现
     }
     
+    /**
+     * 从数据库全量加载URL元数据和域名计数，读取在后台线程执行，完成后在EDT上替换列表和树
+     * 树形面板的筛选和搜索需要全部条目，元数据仍全部保存在allEntries中；报文不随条目加载
+     */
     private void loadDataFromDatabase() { 
-        // 从数据库加载数据
+        long generation = ++dataLoadGeneration;
+        dataLoading = true;
+        statusLabel.setText("正在加载数据...");
+        
+        CompletableFuture.runAsync(() -> {
+            // 先记录变更序号，加载期间提交的变更会在下次增量同步时再应用一次
+            long changeSeq = dbManager.currentChangeSeq();
+            List<URLEntry> entries = new ArrayList<>();
+            dbManager.forEachURL(entries::add);
+            Map<String, Long> domainCounts = dbManager.countURLsByRootDomain();
+            SwingUtilities.invokeLater(() -> applyLoadedData(generation, changeSeq, entries, domainCounts));
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                api.logging().logToError("加载数据失败: " + error.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == dataLoadGeneration) {
+                        statusLabel.setText("加载数据失败: " + error.getMessage());
+                        finishDataLoad();
+                    }
+                });
+            }
+        });
+    }
+    
+    private void applyLoadedData(long generation, long changeSeq, List<URLEntry> entries, Map<String, Long> domainCounts) {
+        // 加载期间又开始了新的加载（如再次切换项目），结果作废
+        if (generation != dataLoadGeneration) {
+            return;
+        }
         try {
-            List<URLEntry> entries = dbManager.getAllURLs();
-            
-            // 重新构建allEntries列表
+            appliedChangeSeq = changeSeq;
             allEntries.clear();
             allEntries.addAll(entries);
             
@@ -907,8 +1121,8 @@ public class MainPanel extends JPanel {
                 updateDomainTree(entry);
             }
             
-            // 从URL数据中提取和重建域名表格数据
-            rebuildDomainsTableFromURLs(entries);
+            // 从汇总表重建域名表格数据
+            rebuildDomainsTable(domainCounts);
             
             // 加载数据完成后，更新ProxyListener的根域名列表和配置
             updateProxyListenerDomains();
@@ -918,6 +1132,16 @@ public class MainPanel extends JPanel {
         } catch (Exception e) {
             statusLabel.setText("加载数据失败: " + e.getMessage());
             api.logging().logToError("加载数据失败: " + e.getMessage());
+        } finally {
+            finishDataLoad();
+        }
+    }
+    
+    private void finishDataLoad() {
+        dataLoading = false;
+        if (changeRefreshPending && !changeRefreshRunning) {
+            changeRefreshPending = false;
+            refreshFromChanges();
         }
     }
     
@@ -934,50 +1158,39 @@ public class MainPanel extends JPanel {
         // 可以在这里添加其他需要的逻辑
     }
     
-    private void updateDomainsTable() { 
-        // 更新域名表格中的子域名数量
-        Map<String, Integer> domainCounts = new HashMap<>();
-        for (URLEntry entry : allEntries) {
-            String host = entry.getHost();
-            domainCounts.put(host, domainCounts.getOrDefault(host, 0) + 1);
-        }
-        
-        for (int i = 0; i < domainsTableModel.getRowCount(); i++) {
-            String domain = (String) domainsTableModel.getValueAt(i, 1);
-            Integer count = domainCounts.get(domain);
-            if (count != null) {
-                domainsTableModel.setValueAt(count, i, 2);
-            }
+    /**
+     * 扫描结果等零散写入只把域名计数标记为过期，由captureStatsTimer合并为每个周期至多一次后台查询
+     * 计数来自数据库汇总表，排队中尚未提交的URL在下次刷新时计入
+     */
+    private void refreshStaleDomainCounts() {
+        if (!domainCountsStale || domainCountsRefreshing) {
+            return;
         }
+        domainCountsStale = false;
+        domainCountsRefreshing = true;
+        CompletableFuture.supplyAsync(dbManager::countURLsByRootDomain)
+            .whenComplete((domainCounts, error) -> SwingUtilities.invokeLater(() -> {
+                domainCountsRefreshing = false;
+                if (error != null) {
+                    api.logging().logToError("刷新域名计数失败: " + error.getMessage());
+                    return;
+                }
+                refreshDomainCounts(Collections.emptySet(), domainCounts);
+            }));
     }
     
     /**
-     * 从URL数据重建域名表格
+     * 按后台读取的汇总表计数（各主域名，即最后两级域名下的URL数量）重建域名表格
      */
-    private void rebuildDomainsTableFromURLs(List<URLEntry> entries) {
+    private void rebuildDomainsTable(Map<String, Long> domainCounts) {
         // 清空现有域名表格
         domainsTableModel.setRowCount(0);
         
-        // 统计各主域名下的URL数量
-        Map<String, Integer> domainCounts = new HashMap<>();
-        Set<String> rootDomains = new HashSet<>();
-        
-        for (URLEntry entry : entries) {
-            String host = entry.getHost();
-            if (host != null && !host.isEmpty()) {
-                // 提取根域名（简单实现：取最后两级域名）
-                String rootDomain = extractRootDomain(host);
-                if (rootDomain != null) {
-                    rootDomains.add(rootDomain);
-                    domainCounts.put(rootDomain, domainCounts.getOrDefault(rootDomain, 0) + 1);
-                }
-            }
-        }
-        
         // 将根域名添加到表格中
         int index = 1;
-        for (String rootDomain : rootDomains) {
-            int count = domainCounts.getOrDefault(rootDomain, 0);
+        for (Map.Entry<String, Long> domainCount : domainCounts.entrySet()) {
+            String rootDomain = domainCount.getKey();
+            int count = domainCount.getValue().intValue();
             domainsTableModel.addRow(new Object[] {
                 index++,
                 rootDomain,
@@ -990,26 +1203,145 @@ public class MainPanel extends JPanel {
     }
     
     /**
-     * 从完整域名中提取根域名
+     * 从数据库变更序列增量同步树形面板、allEntries和域名表格，不重新读取全部数据
+     * 由定时器和写操作完成后调用，只在EDT上调用；读取在后台线程执行，已有同步或全量加载进行时在其完成后再同步一次
      */
-    private String extractRootDomain(String host) {
-        if (host == null || host.isEmpty()) {
-            return null;
+    private void refreshFromChanges() {
+        if (changeRefreshRunning || dataLoading) {
+            changeRefreshPending = true;
+            return;
+        }
+        changeRefreshRunning = true;
+        long sinceSeq = appliedChangeSeq;
+        String dbPath = dbManager.getCurrentDbPath();
+        
+        CompletableFuture.runAsync(() -> {
+            URLChangeSet changes = collectChanges(sinceSeq);
+            List<Long> changedIds = new ArrayList<>(changes.getInsertedIds());
+            changedIds.addAll(changes.getUpdatedIds());
+            List<URLEntry> changed = changes.hasMore() ? List.of() : dbManager.getURLsByIds(changedIds);
+            Map<String, Long> domainCounts = changes.hasMore() || changes.isEmpty() ? Map.of() : dbManager.countURLsByRootDomain();
+            SwingUtilities.invokeLater(() -> applyChangeSet(dbPath, sinceSeq, changes, changed, domainCounts));
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                api.logging().logToError("同步数据库变更失败: " + error.getMessage());
+                SwingUtilities.invokeLater(this::finishChangeRefresh);
+            }
+        });
+    }
+    
+    private void finishChangeRefresh() {
+        changeRefreshRunning = false;
+        if (changeRefreshPending) {
+            changeRefreshPending = false;
+            refreshFromChanges();
+        }
+    }
+    
+    /**
+     * 读取sinceSeq之后的全部变更并合并为一份；超过CHANGE_FEED_RELOAD_THRESHOLD时停止读取并标记hasMore
+     */
+    private URLChangeSet collectChanges(long sinceSeq) {
+        Set<Long> inserted = new LinkedHashSet<>();
+        Set<Long> updated = new LinkedHashSet<>();
+        Set<Long> deleted = new LinkedHashSet<>();
+        long seq = sinceSeq;
+        URLChangeSet page;
+        do {
+            page = dbManager.changesSince(seq, CHANGE_FEED_PAGE_SIZE);
+            inserted.addAll(page.getInsertedIds());
+            updated.addAll(page.getUpdatedIds());
+            deleted.addAll(page.getDeletedIds());
+            seq = page.getLastSeq();
+        } while (page.hasMore() && inserted.size() + updated.size() + deleted.size() <= CHANGE_FEED_RELOAD_THRESHOLD);
+        
+        // 读取期间又有变更时同一id可能出现在多页中，以最后的状态为准
+        inserted.removeAll(deleted);
+        updated.removeAll(deleted);
+        updated.removeAll(inserted);
+        URLChangeSet changes = new URLChangeSet(sinceSeq);
+        changes.getInsertedIds().addAll(inserted);
+        changes.getUpdatedIds().addAll(updated);
+        changes.getDeletedIds().addAll(deleted);
+        changes.setLastSeq(seq);
+        changes.setHasMore(page.hasMore());
+        return changes;
+    }
+    
+    private void applyChangeSet(String dbPath, long sinceSeq, URLChangeSet changes, List<URLEntry> changed,
+                                Map<String, Long> domainCounts) {
+        try {
+            // 读取期间切换了项目或已全量重新加载，结果作废
+            if (Objects.equals(dbPath, dbManager.getCurrentDbPath()) && appliedChangeSeq == sinceSeq) {
+                applyChangeSet(changes, changed, domainCounts);
+            }
+        } finally {
+            finishChangeRefresh();
+        }
+    }
+    
+    private void applyChangeSet(URLChangeSet changes, List<URLEntry> changed, Map<String, Long> domainCounts) {
+        if (changes.hasMore()) {
+            // 变更过多（如合并大项目），全量重新加载比逐条应用更快
+            clearAllData();
+            loadDataFromDatabase();
+            return;
+        }
+        appliedChangeSeq = changes.getLastSeq();
+        if (changes.isEmpty()) {
+            return;
         }
         
-        // 移除端口号
-        int colonIndex = host.indexOf(':');
-        if (colonIndex != -1) {
-            host = host.substring(0, colonIndex);
+        Set<Long> removedIds = new HashSet<>(changes.getDeletedIds());
+        removedIds.addAll(changes.getUpdatedIds());
+        Set<String> changedUrls = new HashSet<>();
+        Set<String> changedRootDomains = new HashSet<>();
+        for (URLEntry entry : changed) {
+            changedUrls.add(entry.getUrl());
+            if (entry.getHost() != null) {
+                changedRootDomains.add(URLAnalyzer.extractRootDomain(entry.getHost()));
+            }
         }
+        // 实时捕获的条目没有id，按URL替换
+        allEntries.removeIf(entry -> removedIds.contains(entry.getId()) || changedUrls.contains(entry.getUrl()));
+        allEntries.addAll(changed);
         
-        String[] parts = host.split("\\.");
-        if (parts.length >= 2) {
-            // 返回最后两级域名作为根域名
-            return parts[parts.length - 2] + "." + parts[parts.length - 1];
+        titlesTreePanel.applyChanges(changed, changes.getDeletedIds());
+        refreshDomainCounts(changedRootDomains, domainCounts);
+    }
+    
+    /**
+     * 按后台读取的汇总表计数刷新域名表格的URL数；本次变更涉及、表格中还没有的主域名追加到末尾，已有行的其他列保持不变
+     */
+    private void refreshDomainCounts(Set<String> changedRootDomains, Map<String, Long> domainCounts) {
+        Set<String> listed = new HashSet<>();
+        for (int i = 0; i < domainsTableModel.getRowCount(); i++) {
+            String domain = (String) domainsTableModel.getValueAt(i, 1);
+            listed.add(domain);
+            int count = domainCounts.getOrDefault(domain, 0L).intValue();
+            if (!Objects.equals(domainsTableModel.getValueAt(i, 2), count)) {
+                domainsTableModel.setValueAt(count, i, 2);
+            }
         }
         
-        return host;
+        boolean added = false;
+        for (String rootDomain : changedRootDomains) {
+            Long count = domainCounts.get(rootDomain);
+            if (count != null && listed.add(rootDomain)) {
+                domainsTableModel.addRow(new Object[] {
+                    domainsTableModel.getRowCount() + 1,
+                    rootDomain,
+                    count.intValue(),
+                    STATUS_UNCHECKED,
+                    "",
+                    ""
+                });
+                added = true;
+            }
+        }
+        if (added) {
+            updateProxyListenerDomains();
+        }
     }
     
     private void editSelectedDomain() {
@@ -1089,78 +1421,55 @@ public class MainPanel extends JPanel {
             JOptionPane.WARNING_MESSAGE);
         
         if (result == JOptionPane.YES_OPTION) {
-            // 删除数据库中相关的URL条目
-            try {
-                List<URLEntry> allEntries = dbManager.getAllURLs();
-                int deletedCount = 0;
-                
-                for (URLEntry entry : allEntries) {
-                    String host = entry.getHost();
-                    if (host != null && (host.equals(domain) || host.endsWith("." + domain))) {
-                        dbManager.deleteURL(entry.getId());
-                        deletedCount++;
-                    }
-                }
-                
-                // 从树形面板中移除相关条目
-                if (titlesTreePanel != null) {
-                    // titlesTreePanel.removeEntriesForDomain(domain); // 暂时注释，需要在TitlesTreePanel中实现
+            statusLabel.setText("正在删除域名 " + domain + " 下的数据...");
+            CompletableFuture.supplyAsync(() -> {
+                // 先写入排队中的URL，避免删除后又被写回；一条按reversed_host索引的批量删除，再回收不再被引用的报文
+                dbManager.flushInserts(10, TimeUnit.SECONDS);
+                int deletedCount = dbManager.deleteByRootDomain(domain);
+                dbManager.purgeUnreferencedBlobs();
+                return deletedCount;
+            }).whenComplete((deletedCount, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    statusLabel.setText("删除域名数据失败");
+                    JOptionPane.showMessageDialog(this, 
+                        "删除过程中发生错误: " + error.getMessage(), 
+                        "错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
                 
-                // 清空allEntries中的相关条目
-                allEntries.removeIf(entry -> {
-                    String host = entry.getHost();
-                    return host != null && (host.equals(domain) || host.endsWith("." + domain));
-                });
+                // 从树形面板和allEntries中移除已删除的条目
+                refreshFromChanges();
                 
-                // 重置域名表格中的子域名数量
-                domainsTableModel.setValueAt(0, modelRow, 2);
-                domainsTableModel.setValueAt(STATUS_UNCHECKED, modelRow, 3);
+                // 重置域名表格中的子域名数量，删除期间表格可能已变化，按域名重新定位行
+                for (int row = 0; row < domainsTableModel.getRowCount(); row++) {
+                    if (domain.equals(domainsTableModel.getValueAt(row, 1))) {
+                        domainsTableModel.setValueAt(0, row, 2);
+                        domainsTableModel.setValueAt(STATUS_UNCHECKED, row, 3);
+                    }
+                }
                 
                 statusLabel.setText("已删除域名 " + domain + " 下的 " + deletedCount + " 个子域名和URL");
-                
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, 
-                    "删除过程中发生错误: " + e.getMessage(), 
-                    "错误", 
-                    JOptionPane.ERROR_MESSAGE);
-            }
+            }));
         }
     }
     
     private void updateDomainReferences(String oldDomain, String newDomain) {
-        // 更新数据库中的相关记录
-        try {
-            List<URLEntry> allEntries = dbManager.getAllURLs();
-            
-            for (URLEntry entry : allEntries) {
-                String host = entry.getHost();
-                if (host != null && (host.equals(oldDomain) || host.endsWith("." + oldDomain))) {
-                    // 更新host字段
-                    String newHost = host.equals(oldDomain) ? newDomain : host.replace("." + oldDomain, "." + newDomain);
-                    entry.setHost(newHost);
-                    
-                    // 更新URL字段
-                    String oldUrl = entry.getUrl();
-                    String newUrl = oldUrl.replace(host, newHost);
-                    entry.setUrl(newUrl);
-                    
-                    // 更新数据库
-                    dbManager.updateURL(entry);
-                }
-            }
-            
-            // 更新树形面板
-            if (titlesTreePanel != null) {
-                // titlesTreePanel.updateDomainReferences(oldDomain, newDomain); // 暂时注释，需要在TitlesTreePanel中实现
+        // 一条批量UPDATE改写host和URL，不读取也不重写报文，在后台线程执行
+        CompletableFuture.runAsync(() -> {
+            dbManager.flushInserts(10, TimeUnit.SECONDS);
+            dbManager.renameHostSuffix(oldDomain, newDomain);
+        }).whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, 
+                    "更新域名引用时发生错误: " + error.getMessage(), 
+                    "错误", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
             }
-            
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, 
-                "更新域名引用时发生错误: " + e.getMessage(), 
-                "错误", 
-                JOptionPane.ERROR_MESSAGE);
-        }
+            // 改名后的URL经变更序列同步到树形面板
+            refreshFromChanges();
+        }));
     }
     
     /**
@@ -1202,33 +1511,6 @@ public class MainPanel extends JPanel {
         }
     }
     
-    /**
-     * 找到匹配的根域名
-     */
-    private String findMatchingRootDomain(String host, Set<String> rootDomains) {
-        if (host == null || host.isEmpty()) {
-            return null;
-        }
-        
-        host = host.toLowerCase();
-        
-        for (String rootDomain : rootDomains) {
-            String normalizedRootDomain = rootDomain.toLowerCase();
-            
-            // 精确匹配
-            if (host.equals(normalizedRootDomain)) {
-                return rootDomain;
-            }
-            
-            // 子域名匹配（必须以.rootDomain结尾）
-            if (host.endsWith("." + normalizedRootDomain)) {
-                return rootDomain;
-            }
-        }
-        
-        return null;
-    }
-    
     /**
      * 从Proxy项目创建URLEntry
      */
@@ -1244,11 +1526,10 @@ public class MainPanel extends JPanel {
             // 处理响应信息
             if (proxyItem.response() != null) {
                 entry.setStatusCode(proxyItem.response().statusCode());
-                entry.setLength(proxyItem.response().body().length());
+                entry.setLength(CapturePolicy.bodyLength(proxyItem.response()));
                 
                 try {
-                    String responseBody = proxyItem.response().bodyToString();
-                    entry.setTitle(urlAnalyzer.extractTitle(responseBody));
+                    entry.setTitle(urlAnalyzer.extractTitle(proxyItem.response()));
                 } catch (Exception e) {
                     // 如果无法解析响应体，继续处理
                     entry.setTitle("");
@@ -1313,34 +1594,13 @@ public class MainPanel extends JPanel {
     }
     
     /**
-     * 检查URL是否已存在（避免重复）
+     * 检查URL是否已存在（避免重复），不存在时记入knownUrls
      */
-    private boolean isDuplicateURL(String url) {
+    private boolean isDuplicateURL(String url, Set<String> knownUrls) {
         if (url == null || url.isEmpty()) {
             return true;
         }
-        
-        // 在allEntries中查找是否已存在相同URL
-        for (URLEntry entry : allEntries) {
-            if (url.equals(entry.getUrl())) {
-                return true;
-            }
-        }
-        
-        // 也可以查询数据库确认
-        try {
-            List<URLEntry> existingEntries = dbManager.getAllURLs();
-            for (URLEntry entry : existingEntries) {
-                if (url.equals(entry.getUrl())) {
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            // 如果数据库查询失败，允许添加
-            api.logging().logToError("检查重复URL时数据库查询失败: " + e.getMessage());
-        }
-        
-        return false;
+        return !knownUrls.add(url);
     }
     
     /**
@@ -1356,6 +1616,12 @@ public class MainPanel extends JPanel {
      * 清理资源
      */
     public void cleanup() {
+        if (captureStatsTimer != null) {
+            captureStatsTimer.stop();
+        }
+        if (changeFeedTimer != null) {
+            changeFeedTimer.stop();
+        }
         if (urlScanner != null) {
             urlScanner.shutdown();
         }
@@ -8,7 +8,11 @@ import burp.api.montoya.ui.editor.EditorOptions;
 import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
+import com.urlhunter.database.DatabaseManager;
+import com.urlhunter.model.MessageBodies;
 import com.urlhunter.model.URLEntry;
+import com.urlhunter.utils.CapturePolicy;
+import com.urlhunter.utils.PathCanonicalizer;
 import com.urlhunter.utils.URLAnalyzer;
 import com.urlhunter.scanner.URLScanner;
 import com.urlhunter.model.URLEntry.CheckStatus;
@@ -24,7 +28,7 @@ import java.util.*;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.swing.tree.TreePath;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class TitlesTreePanel extends JPanel {
     private final MontoyaApi api;
@@ -47,6 +51,29 @@ public class TitlesTreePanel extends JPanel {
     private URLEntry selectedEntry;
     private HttpRequestResponse selectedRequestResponse;
     
+    // 请求/响应存储策略来源，默认不截断
+    private java.util.function.Supplier<CapturePolicy> capturePolicySource = () -> CapturePolicy.UNLIMITED;
+    private JPanel responsePanel;
+    
+    // 去重键到条目的索引，包含被筛选隐藏的条目；规则来源默认使用内置规则
+    private final Map<String, URLEntry> entriesByKey = new HashMap<>();
+    private java.util.function.Supplier<PathCanonicalizer> canonicalizerSource = () -> PathCanonicalizer.DEFAULT;
+    
+    // 报文不随条目加载，选中时再从数据库读取；未设置来源时视为没有存储的报文
+    private java.util.function.Function<URLEntry, MessageBodies> bodyLoader = entry -> null;
+    // 数据库全文搜索，未设置时只在内存中搜索
+    private java.util.function.Function<String, Collection<Long>> textSearch;
+    // 数据库中命中searchMatchText的条目id，由后台搜索填充
+    private Set<Long> searchMatchIds = Collections.emptySet();
+    private String searchMatchText = "";
+    private SwingWorker<Set<Long>, Void> searchWorker;
+    private JLabel searchScopeLabel;
+    // 统计数来自数据库汇总表，未设置时在内存中计数；查询在后台进行，进行中的请求合并为一次
+    private java.util.function.Supplier<Map<CheckStatus, Long>> checkStatusCounts;
+    private java.util.function.Supplier<Map<Integer, Long>> statusClassCounts;
+    private boolean statisticsRunning;
+    private boolean statisticsPending;
+    
     // 表格列定义 - 保留核心列，删除Server和Asset
     private static final String[] COLUMN_NAMES = {
         "#", "URL", "Status", "Length", "Title", "Comments", "IP", "isCheck", "CheckDoneTime"
@@ -162,6 +189,10 @@ public class TitlesTreePanel extends JPanel {
         searchButton.addActionListener(e -> performSearch());
         panel.add(searchButton);
         
+        searchScopeLabel = new JLabel();
+        searchScopeLabel.setForeground(Color.GRAY);
+        panel.add(searchScopeLabel);
+        
         panel.add(new JSeparator(SwingConstants.VERTICAL));
         
         // 状态选择器（圆点形式）
@@ -229,48 +260,62 @@ public class TitlesTreePanel extends JPanel {
     private void performSearch() {
         searchText = searchField.getText().trim();
         
-        // 如果有搜索内容，直接执行异步搜索（默认搜索所有内容：URL + 标题 + 备注 + 请求内容 + 响应内容）
-        if (!searchText.isEmpty()) {
-            // 直接异步执行搜索，无需确认
-            performAsyncSearch();
-        } else {
-            // 清空搜索条件时同步执行
-            applyFilters();
-        }
+        // 数据库搜索在后台进行，结果返回前已入库的条目先按URL、标题、备注在内存中匹配
+        refreshSearchMatches();
+        applyFilters();
     }
     
     /**
-     * 异步执行搜索，避免阻塞UI
+     * 在后台线程中按当前搜索词查询数据库，完成后缓存命中的条目id并重建树；期间搜索词已改变则丢弃结果
      */
-    private void performAsyncSearch() {
-        // 显示进度指示
-        searchField.setEnabled(false);
-        String originalText = searchText;
-        searchField.setText("搜索中...");
-        
-        // 使用CompletableFuture异步执行搜索
-        CompletableFuture.runAsync(() -> {
-            // 在后台线程中执行搜索逻辑
-            try {
-                SwingUtilities.invokeLater(() -> applyFilters());
-            } catch (Exception e) {
-                api.logging().logToError("异步搜索失败: " + e.getMessage());
+    private void refreshSearchMatches() {
+        if (searchWorker != null) {
+            searchWorker.cancel(false);
+            searchWorker = null;
+        }
+        String text = searchText;
+        if (text.isEmpty() || textSearch == null) {
+            searchMatchIds = Collections.emptySet();
+            searchMatchText = text;
+            updateSearchScopeLabel();
+            return;
+        }
+        
+        searchScopeLabel.setText("搜索中...");
+        java.util.function.Function<String, Collection<Long>> search = textSearch;
+        SwingWorker<Set<Long>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Set<Long> doInBackground() {
+                return new HashSet<>(search.apply(text));
             }
-        }).whenComplete((result, throwable) -> {
-            // 恢复UI状态
-            SwingUtilities.invokeLater(() -> {
-                searchField.setEnabled(true);
-                searchField.setText(originalText);
-                if (throwable != null) {
-                    JOptionPane.showMessageDialog(
-                        this,
-                        "搜索过程中发生错误: " + throwable.getMessage(),
-                        "搜索错误",
-                        JOptionPane.ERROR_MESSAGE
-                    );
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || !text.equals(searchText)) {
+                    return;
                 }
-            });
-        });
+                searchWorker = null;
+                try {
+                    searchMatchIds = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    api.logging().logToError("搜索失败: " + e.getMessage());
+                    searchMatchIds = Collections.emptySet();
+                }
+                searchMatchText = text;
+                updateSearchScopeLabel();
+                applyFilters();
+            }
+        };
+        searchWorker = worker;
+        worker.execute();
+    }
+    
+    /**
+     * 搜索词太短时全文索引不可用，提示只搜索了URL、标题和备注
+     */
+    private void updateSearchScopeLabel() {
+        boolean metadataOnly = !searchText.isEmpty() && textSearch != null && !DatabaseManager.searchesBodies(searchText);
+        searchScopeLabel.setText(metadataOnly ? "少于3个字符时不搜索报文" : "");
     }
     
     /**
@@ -296,6 +341,11 @@ public class TitlesTreePanel extends JPanel {
      * 更新统计信息显示
      */
     private void updateStatistics() {
+        if (checkStatusCounts != null && statusClassCounts != null) {
+            updateStatisticsFromSummary();
+            return;
+        }
+        
         int totalCount = 0;
         int uncheckedCount = 0;
         
@@ -311,6 +361,44 @@ public class TitlesTreePanel extends JPanel {
         statisticsLabel.setText(String.format("[ALL:%d Unchecked:%d]", totalCount, uncheckedCount));
     }
     
+    /**
+     * 在后台线程中读取汇总表的检查状态和状态码类别计数，已有查询进行时在其完成后再查询一次
+     */
+    private void updateStatisticsFromSummary() {
+        if (statisticsRunning) {
+            statisticsPending = true;
+            return;
+        }
+        statisticsRunning = true;
+        java.util.function.Supplier<Map<CheckStatus, Long>> byCheckStatus = checkStatusCounts;
+        java.util.function.Supplier<Map<Integer, Long>> byStatusClass = statusClassCounts;
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                Map<CheckStatus, Long> checks = byCheckStatus.get();
+                Map<Integer, Long> classes = byStatusClass.get();
+                long total = checks.values().stream().mapToLong(Long::longValue).sum();
+                return String.format("[ALL:%d Unchecked:%d 2xx:%d 3xx:%d 4xx:%d 5xx:%d]", total,
+                    checks.getOrDefault(CheckStatus.UNCHECKED, 0L), classes.getOrDefault(2, 0L),
+                    classes.getOrDefault(3, 0L), classes.getOrDefault(4, 0L), classes.getOrDefault(5, 0L));
+            }
+            
+            @Override
+            protected void done() {
+                statisticsRunning = false;
+                try {
+                    statisticsLabel.setText(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    api.logging().logToError("统计URL数量失败: " + e.getMessage());
+                }
+                if (statisticsPending) {
+                    statisticsPending = false;
+                    updateStatisticsFromSummary();
+                }
+            }
+        }.execute();
+    }
+    
     private JPanel createTreePanelWithHeaders() {
         JPanel panel = new JPanel(new BorderLayout());
         
@@ -447,7 +535,7 @@ public class TitlesTreePanel extends JPanel {
         
         // 右侧：响应编辑器
         responseEditor = api.userInterface().createHttpResponseEditor(EditorOptions.READ_ONLY);
-        JPanel responsePanel = new JPanel(new BorderLayout());
+        responsePanel = new JPanel(new BorderLayout());
         responsePanel.setBorder(BorderFactory.createTitledBorder("Response"));
         responsePanel.add(responseEditor.uiComponent(), BorderLayout.CENTER);
         
@@ -458,16 +546,30 @@ public class TitlesTreePanel extends JPanel {
         requestResponseSplitPane.setResizeWeight(0.5);
     }
 
+    /**
+     * 设置请求/响应存储策略来源（通常为ProxyListener的当前策略）
+     */
+    public void setCapturePolicySource(java.util.function.Supplier<CapturePolicy> capturePolicySource) {
+        this.capturePolicySource = capturePolicySource != null ? capturePolicySource : () -> CapturePolicy.UNLIMITED;
+    }
+    
+    /**
+     * 按存储策略把请求/响应写入条目，条目中已有的数据保持不变
+     */
+    private void applyCapturePolicy(URLEntry entry, burp.api.montoya.http.message.HttpMessage request, HttpResponse response) {
+        CapturePolicy policy = capturePolicySource.get();
+        policy.applyTo(entry,
+            entry.hasRequestData() ? null : request,
+            entry.hasResponseData() ? null : response);
+    }
+    
     public void addURLEntry(URLEntry entry, ProxyHttpRequestResponse requestResponse) {
-        // 检查去重 - 只对URL路径部分去重，忽略参数
-        String entryUrlWithoutParams = removeUrlParameters(entry.getUrl());
-        for (URLEntry existing : nodeToEntryMap.values()) {
-            String existingUrlWithoutParams = removeUrlParameters(existing.getUrl());
-            if (existingUrlWithoutParams.equals(entryUrlWithoutParams)) {
-                // 更新现有条目
-                updateExistingEntry(existing, entry);
-                return;
-            }
+        // 检查去重 - 按路径模板规范化后的键去重，忽略参数
+        URLEntry existing = registerEntryKey(entry);
+        if (existing != null) {
+            // 更新现有条目
+            updateExistingEntry(existing, entry);
+            return;
         }
         
         // 添加新条目
@@ -491,15 +593,8 @@ public class TitlesTreePanel extends JPanel {
         // 如果有ProxyHttpRequestResponse，转换为HttpRequestResponse并存储原始数据
         if (requestResponse != null) {
             try {
-                // 存储原始请求数据到URLEntry
-                if (requestResponse.request() != null) {
-                    entry.setRequestData(requestResponse.request().toByteArray().getBytes());
-                }
-                
-                // 存储原始响应数据到URLEntry
-                if (requestResponse.response() != null) {
-                    entry.setResponseData(requestResponse.response().toByteArray().getBytes());
-                }
+                // 按存储策略保存请求/响应数据，已由采集端截断保存的不再覆盖
+                applyCapturePolicy(entry, requestResponse.request(), requestResponse.response());
                 
                 // 同时保持内存中的映射（用于即时访问）
                 HttpRequestResponse httpRequestResponse = HttpRequestResponse.httpRequestResponse(
@@ -530,34 +625,56 @@ public class TitlesTreePanel extends JPanel {
     }
     
     /**
-     * 移除URL中的参数部分，只保留路径用于去重
+     * 设置按需读取报文和全文搜索的来源（通常为DatabaseManager）
+     */
+    public void setBodySource(java.util.function.Function<URLEntry, MessageBodies> bodyLoader,
+                              java.util.function.Function<String, Collection<Long>> textSearch) {
+        this.bodyLoader = bodyLoader != null ? bodyLoader : entry -> null;
+        this.textSearch = textSearch;
+    }
+    
+    /**
+     * 设置统计数的来源（通常为DatabaseManager的汇总表计数）
+     */
+    public void setStatisticsSource(java.util.function.Supplier<Map<CheckStatus, Long>> checkStatusCounts,
+                                    java.util.function.Supplier<Map<Integer, Long>> statusClassCounts) {
+        this.checkStatusCounts = checkStatusCounts;
+        this.statusClassCounts = statusClassCounts;
+        updateStatistics();
+    }
+    
+    /**
+     * 设置路径模板规则来源（通常为ProxyListener的当前规则）
+     */
+    public void setCanonicalizerSource(java.util.function.Supplier<PathCanonicalizer> canonicalizerSource) {
+        this.canonicalizerSource = canonicalizerSource != null ? canonicalizerSource : () -> PathCanonicalizer.DEFAULT;
+    }
+    
+    /**
+     * 按去重键登记条目，已存在相同键的条目时返回该条目，否则返回null
      */
-    private String removeUrlParameters(String url) {
-        if (url == null || url.isEmpty()) {
-            return url;
+    private URLEntry registerEntryKey(URLEntry entry) {
+        String key = entry.getCanonicalKey();
+        if (key == null) {
+            key = canonicalizerSource.get().canonicalKey(entry.getUrl());
+            entry.setCanonicalKey(key);
         }
-        
-        int questionMarkIndex = url.indexOf('?');
-        if (questionMarkIndex != -1) {
-            return url.substring(0, questionMarkIndex);
+        if (key == null) {
+            return null;
         }
-        
-        return url;
+        return entriesByKey.putIfAbsent(key, entry);
     }
     
     /**
      * 添加带有完整HttpRequestResponse的URL条目
      */
     public void addURLEntryWithRequestResponse(URLEntry entry, HttpRequestResponse requestResponse) {
-        // 检查去重 - 只对URL路径部分去重，忽略参数
-        String entryUrlWithoutParams = removeUrlParameters(entry.getUrl());
-        for (URLEntry existing : nodeToEntryMap.values()) {
-            String existingUrlWithoutParams = removeUrlParameters(existing.getUrl());
-            if (existingUrlWithoutParams.equals(entryUrlWithoutParams)) {
-                // 更新现有条目
-                updateExistingEntry(existing, entry);
-                return;
-            }
+        // 检查去重 - 按路径模板规范化后的键去重，忽略参数
+        URLEntry existing = registerEntryKey(entry);
+        if (existing != null) {
+            // 更新现有条目
+            updateExistingEntry(existing, entry);
+            return;
         }
         
         // 添加新条目
@@ -581,15 +698,8 @@ public class TitlesTreePanel extends JPanel {
         // 直接保存HttpRequestResponse并存储原始数据
         if (requestResponse != null) {
             try {
-                // 存储原始请求数据到URLEntry
-                if (requestResponse.request() != null) {
-                    entry.setRequestData(requestResponse.request().toByteArray().getBytes());
-                }
-                
-                // 存储原始响应数据到URLEntry
-                if (requestResponse.response() != null) {
-                    entry.setResponseData(requestResponse.response().toByteArray().getBytes());
-                }
+                // 按存储策略保存请求/响应数据，已由采集端截断保存的不再覆盖
+                applyCapturePolicy(entry, requestResponse.request(), requestResponse.response());
                 
                 // 保持内存中的映射
                 nodeToRequestResponseMap.put(urlNode, requestResponse);
@@ -727,6 +837,7 @@ public class TitlesTreePanel extends JPanel {
         nodeToEntryMap.clear();
         nodeToRequestResponseMap.clear();
         allURLEntries.clear();
+        entriesByKey.clear();
         // 重置筛选状态
         selectedStatuses.clear();
         selectedStatuses.add(CheckStatus.UNCHECKED);
@@ -744,19 +855,113 @@ public class TitlesTreePanel extends JPanel {
     }
     
     /**
-     * 从数据库添加URLEntry，如果有存储的request/response数据，重建映射
+     * 按数据库变更增量更新：changed为新增或修改后的条目，deletedIds为已删除的URL id
+     * 只更新内存中对应的条目，不重新读取全部数据；实时捕获还没有id的条目按URL对应。
+     * 只有字段变化时原地更新并重绘，有增删、换主机或检查状态变化时才按当前筛选重建树
      */
-    private void addURLEntryFromDatabase(URLEntry entry) {
-        // 检查去重 - 只对URL路径部分去重，忽略参数
-        String entryUrlWithoutParams = removeUrlParameters(entry.getUrl());
-        for (URLEntry existing : nodeToEntryMap.values()) {
-            String existingUrlWithoutParams = removeUrlParameters(existing.getUrl());
-            if (existingUrlWithoutParams.equals(entryUrlWithoutParams)) {
-                // 更新现有条目
+    public void applyChanges(List<URLEntry> changed, Collection<Long> deletedIds) {
+        if (changed.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+        
+        // 实时捕获的条目可能只登记在去重索引中
+        Map<Long, URLEntry> entriesById = new HashMap<>();
+        Map<String, URLEntry> entriesByUrl = new HashMap<>();
+        List<URLEntry> known = new ArrayList<>(entriesByKey.values());
+        allURLEntries.values().forEach(known::addAll);
+        for (URLEntry entry : known) {
+            if (entry.getId() > 0) {
+                entriesById.put(entry.getId(), entry);
+            }
+            entriesByUrl.put(entry.getUrl(), entry);
+        }
+        
+        boolean structureChanged = false;
+        for (Long id : deletedIds) {
+            URLEntry current = entriesById.get(id);
+            if (current != null) {
+                removeEntry(current);
+                structureChanged = true;
+            }
+        }
+        for (URLEntry entry : changed) {
+            URLEntry current = entriesById.get(entry.getId());
+            if (current == null) {
+                current = entriesByUrl.get(entry.getUrl());
+            }
+            if (current != null && current.getUrl().equals(entry.getUrl())
+                    && Objects.equals(current.getHost(), entry.getHost())
+                    && current.getCheckStatus() == entry.getCheckStatus()) {
+                copyStoredFields(current, entry);
+                continue;
+            }
+            if (current != null) {
+                removeEntry(current);
+            }
+            URLEntry existing = registerEntryKey(entry);
+            if (existing != null) {
                 updateExistingEntry(existing, entry);
-                return;
+            } else {
+                allURLEntries.computeIfAbsent(entry.getHost(), k -> new ArrayList<>()).add(entry);
+            }
+            structureChanged = true;
+        }
+        
+        if (structureChanged) {
+            applyFilters();
+        } else {
+            updateStatistics();
+            urlTree.repaint();
+        }
+        // 变化的条目可能改变搜索命中，后台重新搜索后再按新结果重建
+        if (!searchText.isEmpty()) {
+            refreshSearchMatches();
+        }
+    }
+    
+    /**
+     * 用数据库中的值覆盖条目的元数据，内存中的报文保持不变
+     */
+    private void copyStoredFields(URLEntry target, URLEntry source) {
+        target.setId(source.getId());
+        target.setMethod(source.getMethod());
+        target.setStatusCode(source.getStatusCode());
+        target.setLength(source.getLength());
+        target.setTitle(source.getTitle());
+        target.setIp(source.getIp());
+        target.setInternal(source.isInternal());
+        target.setNotes(source.getNotes());
+        target.setTimestamp(source.getTimestamp());
+        target.setOriginalRequestLength(source.getOriginalRequestLength());
+        target.setOriginalResponseLength(source.getOriginalResponseLength());
+        target.setRequestTruncated(source.isRequestTruncated());
+        target.setResponseTruncated(source.isResponseTruncated());
+    }
+    
+    private void removeEntry(URLEntry entry) {
+        List<URLEntry> entries = allURLEntries.get(entry.getHost());
+        if (entries != null) {
+            entries.removeIf(e -> e == entry);
+            if (entries.isEmpty()) {
+                allURLEntries.remove(entry.getHost());
             }
         }
+        if (entry.getCanonicalKey() != null) {
+            entriesByKey.remove(entry.getCanonicalKey(), entry);
+        }
+    }
+    
+    /**
+     * 从数据库添加URLEntry，如果有存储的request/response数据，重建映射
+     */
+    private void addURLEntryFromDatabase(URLEntry entry) {
+        // 检查去重 - 按路径模板规范化后的键去重，忽略参数
+        URLEntry existing = registerEntryKey(entry);
+        if (existing != null) {
+            // 更新现有条目
+            updateExistingEntry(existing, entry);
+            return;
+        }
         
         // 添加新条目
         String host = entry.getHost();
@@ -776,30 +981,7 @@ public class TitlesTreePanel extends JPanel {
         DefaultMutableTreeNode urlNode = new DefaultMutableTreeNode(new URLInfo(entry));
         nodeToEntryMap.put(urlNode, entry);
         
-        // 如果有存储的request/response数据，重建HttpRequestResponse映射
-        if (entry.getRequestData() != null || entry.getResponseData() != null) {
-            try {
-                HttpRequest request = null;
-                burp.api.montoya.http.message.responses.HttpResponse response = null;
-                
-                if (entry.getRequestData() != null) {
-                    request = HttpRequest.httpRequest(
-                        burp.api.montoya.core.ByteArray.byteArray(entry.getRequestData()));
-                }
-                
-                if (entry.getResponseData() != null) {
-                    response = burp.api.montoya.http.message.responses.HttpResponse.httpResponse(
-                        burp.api.montoya.core.ByteArray.byteArray(entry.getResponseData()));
-                }
-                
-                if (request != null) {
-                    HttpRequestResponse httpRequestResponse = HttpRequestResponse.httpRequestResponse(request, response);
-                    nodeToRequestResponseMap.put(urlNode, httpRequestResponse);
-                }
-            } catch (Exception e) {
-                api.logging().logToError("从数据库重建HttpRequestResponse失败: " + e.getMessage());
-            }
-        }
+        // 存储的request/response数据在选中时才按需构造HttpRequest/HttpResponse，加载时不复制
         
         // 添加到完整数据备份
         allURLEntries.computeIfAbsent(host, k -> new ArrayList<>()).add(entry);
@@ -928,33 +1110,7 @@ public class TitlesTreePanel extends JPanel {
                     DefaultMutableTreeNode urlNode = new DefaultMutableTreeNode(urlInfo);
                     domainNode.add(urlNode);
                     nodeToEntryMap.put(urlNode, urlEntry);
-                    
-                    // 重建HttpRequestResponse映射（如果有存储的数据）
-                    if (urlEntry.getRequestData() != null || urlEntry.getResponseData() != null) {
-                        try {
-                            HttpRequest request = null;
-                            burp.api.montoya.http.message.responses.HttpResponse response = null;
-                            
-                            if (urlEntry.getRequestData() != null) {
-                                request = HttpRequest.httpRequest(
-                                    burp.api.montoya.core.ByteArray.byteArray(urlEntry.getRequestData()));
-                            }
-                            
-                            if (urlEntry.getResponseData() != null) {
-                                response = burp.api.montoya.http.message.responses.HttpResponse.httpResponse(
-                                    burp.api.montoya.core.ByteArray.byteArray(urlEntry.getResponseData()));
-                            }
-                            
-                            // 创建HttpRequestResponse并添加到映射
-                            if (request != null) {
-                                HttpRequestResponse httpRequestResponse = HttpRequestResponse.httpRequestResponse(request, response);
-                                nodeToRequestResponseMap.put(urlNode, httpRequestResponse);
-                            }
-                        } catch (Exception e) {
-                            api.logging().logToError("重建HttpRequestResponse映射失败: " + e.getMessage() + 
-                                " URL: " + urlEntry.getUrl());
-                        }
-                    }
+                    // 请求/响应不在这里重建，选中时由updateRequestResponseDisplay按需构造
                 }
                 
                 // 更新域名URL计数
@@ -979,6 +1135,12 @@ public class TitlesTreePanel extends JPanel {
             return true; // 无搜索条件时显示所有
         }
         
+        // 已入库的条目（有id）以数据库搜索结果为准，结果返回前先只匹配URL、标题和备注；尚未入库的条目在内存中搜索
+        boolean stored = textSearch != null && entry.getId() > 0;
+        if (stored && searchText.equals(searchMatchText)) {
+            return searchMatchIds.contains(entry.getId());
+        }
+        
         String searchLower = searchText.toLowerCase();
         
         // 搜索URL
@@ -998,6 +1160,10 @@ public class TitlesTreePanel extends JPanel {
             return true;
         }
         
+        if (stored) {
+            return false;
+        }
+        
         // 搜索请求内容
         if (searchInRequestData(entry, searchLower)) {
             return true;
@@ -1016,25 +1182,7 @@ public class TitlesTreePanel extends JPanel {
      */
     private boolean searchInRequestData(URLEntry entry, String searchLower) {
         try {
-            // 优先从内存中搜索（如果有的话）
-            for (Map.Entry<DefaultMutableTreeNode, URLEntry> nodeEntry : nodeToEntryMap.entrySet()) {
-                if (nodeEntry.getValue() == entry) {
-                    HttpRequestResponse requestResponse = nodeToRequestResponseMap.get(nodeEntry.getKey());
-                    if (requestResponse != null && requestResponse.request() != null) {
-                        String requestText = requestResponse.request().toString().toLowerCase();
-                        if (requestText.contains(searchLower)) {
-                            return true;
-                        }
-                    }
-                    break;
-                }
-            }
-            
-            // 如果内存中没有，从数据库中搜索
-            if (entry.getRequestData() != null) {
-                String requestText = new String(entry.getRequestData()).toLowerCase();
-                return requestText.contains(searchLower);
-            }
+            return containsIgnoreCase(entry.getRequestBytes(), entry.getRequestBytes() == null ? entry.getRequestData() : null, searchLower);
         } catch (Exception e) {
             api.logging().logToError("搜索请求数据失败: " + e.getMessage());
         }
@@ -1047,25 +1195,7 @@ public class TitlesTreePanel extends JPanel {
      */
     private boolean searchInResponseData(URLEntry entry, String searchLower) {
         try {
-            // 优先从内存中搜索（如果有的话）
-            for (Map.Entry<DefaultMutableTreeNode, URLEntry> nodeEntry : nodeToEntryMap.entrySet()) {
-                if (nodeEntry.getValue() == entry) {
-                    HttpRequestResponse requestResponse = nodeToRequestResponseMap.get(nodeEntry.getKey());
-                    if (requestResponse != null && requestResponse.response() != null) {
-                        String responseText = requestResponse.response().toString().toLowerCase();
-                        if (responseText.contains(searchLower)) {
-                            return true;
-                        }
-                    }
-                    break;
-                }
-            }
-            
-            // 如果内存中没有，从数据库中搜索
-            if (entry.getResponseData() != null) {
-                String responseText = new String(entry.getResponseData()).toLowerCase();
-                return responseText.contains(searchLower);
-            }
+            return containsIgnoreCase(entry.getResponseBytes(), entry.getResponseBytes() == null ? entry.getResponseData() : null, searchLower);
         } catch (Exception e) {
             api.logging().logToError("搜索响应数据失败: " + e.getMessage());
         }
@@ -1073,6 +1203,38 @@ public class TitlesTreePanel extends JPanel {
         return false;
     }
     
+    /**
+     * 直接在字节上搜索，不为每个条目生成字符串：采集时的ByteArray用其indexOf，
+     * 从数据库加载的byte[]逐字节比较（ASCII字母忽略大小写）
+     */
+    private static boolean containsIgnoreCase(burp.api.montoya.core.ByteArray bytes, byte[] data, String searchLower) {
+        if (searchLower == null || searchLower.isEmpty()) {
+            return false;
+        }
+        if (bytes != null) {
+            return bytes.indexOf(searchLower, false) >= 0;
+        }
+        if (data == null) {
+            return false;
+        }
+        
+        byte[] needle = searchLower.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        outer:
+        for (int i = 0; i <= data.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                byte b = data[i + j];
+                if (b >= 'A' && b <= 'Z') {
+                    b = (byte) (b + 32);
+                }
+                if (b != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
     private void refreshFromProxy() {
         // TODO: 从Proxy历史记录刷新数据
         api.logging().logToOutput("刷新Proxy数据功能待实现");
@@ -1092,6 +1254,7 @@ public class TitlesTreePanel extends JPanel {
     
     private void updateRequestResponseDisplay() {
         if (selectedEntry != null) {
+            updateResponseBorderTitle(selectedEntry);
             // 更新请求和响应编辑器
             if (selectedRequestResponse != null) {
                 requestEditor.setRequest(selectedRequestResponse.request());
@@ -1101,23 +1264,29 @@ public class TitlesTreePanel extends JPanel {
                     responseEditor.setResponse(null);
                 }
             } else {
-                // 如果内存中没有，尝试从数据库中恢复
+                // 如果内存中没有，按需从数据库读取，读取的报文只用于显示，不留在条目中
                 try {
-                    if (selectedEntry.getRequestData() != null) {
-                        HttpRequest request = HttpRequest.httpRequest(
-                            burp.api.montoya.core.ByteArray.byteArray(selectedEntry.getRequestData()));
+                    MessageBodies bodies = selectedEntry.hasRequestData() && selectedEntry.hasResponseData() ?
+                        null : bodyLoader.apply(selectedEntry);
+                    if (selectedEntry.hasRequestData()) {
+                        HttpRequest request = HttpRequest.httpRequest(selectedEntry.toRequestByteArray());
                         requestEditor.setRequest(request);
+                    } else if (bodies != null && bodies.getRequestData() != null) {
+                        requestEditor.setRequest(HttpRequest.httpRequest(
+                            burp.api.montoya.core.ByteArray.byteArray(bodies.getRequestData())));
                     } else {
                         // 如果没有存储的请求数据，尝试构建一个基本的请求
                         HttpRequest request = HttpRequest.httpRequestFromUrl(selectedEntry.getUrl());
                         requestEditor.setRequest(request);
                     }
                     
-                    if (selectedEntry.getResponseData() != null) {
+                    if (selectedEntry.hasResponseData()) {
                         burp.api.montoya.http.message.responses.HttpResponse response = 
-                            burp.api.montoya.http.message.responses.HttpResponse.httpResponse(
-                                burp.api.montoya.core.ByteArray.byteArray(selectedEntry.getResponseData()));
+                            burp.api.montoya.http.message.responses.HttpResponse.httpResponse(selectedEntry.toResponseByteArray());
                         responseEditor.setResponse(response);
+                    } else if (bodies != null && bodies.getResponseData() != null) {
+                        responseEditor.setResponse(burp.api.montoya.http.message.responses.HttpResponse.httpResponse(
+                            burp.api.montoya.core.ByteArray.byteArray(bodies.getResponseData())));
                     } else {
                         responseEditor.setResponse(null);
                     }
@@ -1137,7 +1306,19 @@ public class TitlesTreePanel extends JPanel {
         }
     }
     
+    /**
+     * 响应被截断存储时在标题中标明原始大小
+     */
+    private void updateResponseBorderTitle(URLEntry entry) {
+        String title = "Response";
+        if (entry != null && entry.isResponseTruncated()) {
+            title = "Response (已截断，原始 " + entry.getOriginalResponseLength() + " 字节)";
+        }
+        responsePanel.setBorder(BorderFactory.createTitledBorder(title));
+    }
+    
     private void clearRequestResponseDisplay() {
+        updateResponseBorderTitle(null);
         requestEditor.setRequest(null);
         responseEditor.setResponse(null);
     }
@@ -1571,7 +1752,8 @@ public class TitlesTreePanel extends JPanel {
                     addTableCell(panel, String.valueOf(index), columnWidths[0], selected);
                     addTableCell(panel, truncateText(entry.getUrl(), 50), columnWidths[1], selected);
                     addTableCell(panel, String.valueOf(entry.getStatusCode()), columnWidths[2], selected);
-                    addTableCell(panel, String.valueOf(entry.getLength()), columnWidths[3], selected);
+                    addTableCell(panel, entry.isTruncated() ? entry.getLength() + " (截断)" : String.valueOf(entry.getLength()),
+                        columnWidths[3], selected);
                     addTableCell(panel, truncateText(entry.getTitle(), 25), columnWidths[4], selected);
                     addTableCell(panel, truncateText(entry.getNotes(), 20), columnWidths[5], selected);
                     addTableCell(panel, entry.getIp() != null ? entry.getIp() : "", columnWidths[6], selected);
@@ -0,0 +1,108 @@
+package com.urlhunter.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的并发布隆过滤器
+ * 对规范化URL计算64位哈希，再用双重哈希派生k个位置；位数组大小由内存预算决定，不会随数据增长。
+ */
+public class BloomDedupFilter implements DedupFilter {
+    private static final int HASH_FUNCTIONS = 7;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final AtomicLong insertCount = new AtomicLong();
+
+    public BloomDedupFilter(long memoryBudgetBytes) {
+        long words = Math.max(1, memoryBudgetBytes / Long.BYTES);
+        words = Math.min(words, Integer.MAX_VALUE - 8);
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * Long.SIZE;
+    }
+
+    @Override
+    public boolean mightContain(String key) {
+        if (key == null) {
+            return false;
+        }
+        long hash = hash64(key);
+        long h1 = hash;
+        long h2 = mix64(hash) | 1L;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(String key) {
+        if (key == null) {
+            return;
+        }
+        long hash = hash64(key);
+        long h1 = hash;
+        long h2 = mix64(hash) | 1L;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(index);
+            while ((current & mask) == 0 && !bits.compareAndSet(index, current, current | mask)) {
+                current = bits.get(index);
+            }
+        }
+        insertCount.incrementAndGet();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0L);
+        }
+        insertCount.set(0);
+    }
+
+    @Override
+    public long getInsertCount() {
+        return insertCount.get();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return (long) bits.length() * Long.BYTES;
+    }
+
+    /**
+     * 按当前插入量估算的误判率
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double exponent = -HASH_FUNCTIONS * (double) insertCount.get() / bitCount;
+        return Math.pow(1 - Math.exp(exponent), HASH_FUNCTIONS);
+    }
+
+    // FNV-1a，直接按char计算，不需要先编码成字节；HyperLogLog共用同一哈希
+    static long hash64(String key) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash ^= (c & 0xff);
+            hash *= FNV_PRIME;
+            hash ^= (c >>> 8);
+            hash *= FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    // SplitMix64终结函数，打散低熵位
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
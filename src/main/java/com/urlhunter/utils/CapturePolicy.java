@@ -0,0 +1,193 @@
+package com.urlhunter.utils;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpMessage;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.urlhunter.model.DomainConfig;
+import com.urlhunter.model.URLEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求/响应存储策略（由DomainConfig编译得到的只读快照）
+ * 报文头总是完整保留，报文体按上限截断：
+ * 先匹配按Content-Type前缀配置的规则，其次对二进制类型只保留报文头，最后使用全局上限。
+ * 截断只截取保留的前缀，不会先拷贝完整报文。
+ */
+public final class CapturePolicy {
+    public static final CapturePolicy UNLIMITED = new CapturePolicy(-1, -1, false, Collections.emptyList());
+    // 只保留报文头，用于捕获队列积压时减载
+    public static final CapturePolicy HEADERS_ONLY = new CapturePolicy(0, 0, true, Collections.emptyList());
+
+    private static final String[] BINARY_TYPE_PREFIXES = {
+        "image/", "video/", "audio/", "font/",
+        "application/octet-stream", "application/zip", "application/gzip", "application/x-gzip",
+        "application/x-7z-compressed", "application/x-rar", "application/x-tar", "application/pdf",
+        "application/wasm", "application/vnd.ms-fontobject", "application/x-font", "application/x-shockwave-flash"
+    };
+
+    private final int maxRequestBodyBytes;
+    private final int maxResponseBodyBytes;
+    private final boolean headOnlyForBinary;
+    // 按前缀长度降序排列，保证最具体的规则优先
+    private final List<Map.Entry<String, Integer>> contentTypeRules;
+
+    /**
+     * 一次捕获的结果
+     */
+    public static final class Capture {
+        private final ByteArray data;
+        private final int originalLength;
+        private final boolean truncated;
+
+        Capture(ByteArray data, int originalLength, boolean truncated) {
+            this.data = data;
+            this.originalLength = originalLength;
+            this.truncated = truncated;
+        }
+
+        public ByteArray getData() {
+            return data;
+        }
+
+        public int getOriginalLength() {
+            return originalLength;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    private CapturePolicy(int maxRequestBodyBytes, int maxResponseBodyBytes, boolean headOnlyForBinary,
+                          List<Map.Entry<String, Integer>> contentTypeRules) {
+        this.maxRequestBodyBytes = maxRequestBodyBytes;
+        this.maxResponseBodyBytes = maxResponseBodyBytes;
+        this.headOnlyForBinary = headOnlyForBinary;
+        this.contentTypeRules = contentTypeRules;
+    }
+
+    public static CapturePolicy compile(DomainConfig config) {
+        if (config == null) {
+            return UNLIMITED;
+        }
+
+        List<Map.Entry<String, Integer>> rules = new ArrayList<>();
+        if (config.getContentTypeCaptureLimits() != null) {
+            for (Map.Entry<String, Integer> rule : config.getContentTypeCaptureLimits().entrySet()) {
+                if (rule.getKey() == null || rule.getKey().trim().isEmpty() || rule.getValue() == null) {
+                    continue;
+                }
+                rules.add(Map.entry(rule.getKey().trim().toLowerCase(), rule.getValue()));
+            }
+        }
+        rules.sort((a, b) -> Integer.compare(b.getKey().length(), a.getKey().length()));
+
+        return new CapturePolicy(config.getMaxRequestCaptureBytes(), config.getMaxResponseCaptureBytes(),
+            config.isHeadOnlyForBinary(), Collections.unmodifiableList(rules));
+    }
+
+    /**
+     * 按请求上限捕获请求
+     */
+    public Capture captureRequest(HttpMessage request) {
+        return capture(request, maxRequestBodyBytes);
+    }
+
+    /**
+     * 按Content-Type规则捕获响应
+     */
+    public Capture captureResponse(HttpResponse response) {
+        if (response == null) {
+            return null;
+        }
+        return capture(response, responseBodyLimit(response.headerValue("Content-Type")));
+    }
+
+    /**
+     * 按策略把请求/响应写入URLEntry，同时记录原始长度和截断标记；参数为null的一侧保持不变
+     * 条目只持有ByteArray引用，到写入数据库时才转换为byte[]
+     */
+    public void applyTo(URLEntry entry, HttpMessage request, HttpResponse response) {
+        Capture requestCapture = captureRequest(request);
+        if (requestCapture != null) {
+            entry.setRequestBytes(requestCapture.getData());
+            entry.setOriginalRequestLength(requestCapture.getOriginalLength());
+            entry.setRequestTruncated(requestCapture.isTruncated());
+        }
+
+        Capture responseCapture = captureResponse(response);
+        if (responseCapture != null) {
+            entry.setResponseBytes(responseCapture.getData());
+            entry.setOriginalResponseLength(responseCapture.getOriginalLength());
+            entry.setResponseTruncated(responseCapture.isTruncated());
+        }
+    }
+
+    /**
+     * 计算某个Content-Type的响应体上限，负数表示不限制
+     */
+    public int responseBodyLimit(String contentType) {
+        String type = normalizeContentType(contentType);
+        if (type != null) {
+            for (Map.Entry<String, Integer> rule : contentTypeRules) {
+                if (type.startsWith(rule.getKey())) {
+                    return rule.getValue();
+                }
+            }
+            if (headOnlyForBinary && isBinaryType(type)) {
+                return 0;
+            }
+        }
+        return maxResponseBodyBytes;
+    }
+
+    private static Capture capture(HttpMessage message, int bodyLimit) {
+        if (message == null) {
+            return null;
+        }
+
+        ByteArray raw = message.toByteArray();
+        int total = raw.length();
+        int bodyOffset = Math.min(Math.max(0, message.bodyOffset()), total);
+        int bodyLength = total - bodyOffset;
+
+        if (bodyLimit < 0 || bodyLength <= bodyLimit) {
+            return new Capture(raw, total, false);
+        }
+        return new Capture(raw.subArray(0, bodyOffset + bodyLimit), total, true);
+    }
+
+    /**
+     * 报文体长度，通过偏移量计算，不像body()那样复制报文体
+     */
+    public static int bodyLength(HttpMessage message) {
+        if (message == null) {
+            return 0;
+        }
+        int total = message.toByteArray().length();
+        return Math.max(0, total - Math.min(Math.max(0, message.bodyOffset()), total));
+    }
+
+    private static String normalizeContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = semicolon >= 0 ? contentType.substring(0, semicolon) : contentType;
+        type = type.trim().toLowerCase();
+        return type.isEmpty() ? null : type;
+    }
+
+    private static boolean isBinaryType(String type) {
+        for (String prefix : BINARY_TYPE_PREFIXES) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
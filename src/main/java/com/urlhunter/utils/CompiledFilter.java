@@ -0,0 +1,213 @@
+package com.urlhunter.utils;
+
+import com.urlhunter.model.DomainConfig;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 由DomainConfig编译得到的只读过滤快照
+ * 扩展名存放在开放寻址哈希表中，状态码用BitSet，域名黑名单用DomainIndex。
+ * 所有判断都不分配对象；配置变更时重新编译并整体替换引用。
+ * Proxy监听、主动扫描和URLAnalyzer共用同一套语义：
+ * 域名按标签边界做后缀匹配，扩展名取路径（去掉查询参数和片段）最后一段的后缀，忽略大小写。
+ */
+public final class CompiledFilter {
+    public static final CompiledFilter EMPTY = new CompiledFilter(new String[1], new BitSet(), DomainIndex.EMPTY, 0);
+
+    private static final int MAX_STATUS_CODE = 1000;
+
+    private final String[] extensionTable;
+    private final int extensionMask;
+    private final int extensionCount;
+    private final BitSet statusCodes;
+    private final DomainIndex domainBlacklist;
+
+    private CompiledFilter(String[] extensionTable, BitSet statusCodes, DomainIndex domainBlacklist, int extensionCount) {
+        this.extensionTable = extensionTable;
+        this.extensionMask = extensionTable.length - 1;
+        this.extensionCount = extensionCount;
+        this.statusCodes = statusCodes;
+        this.domainBlacklist = domainBlacklist;
+    }
+
+    /**
+     * 编译配置，config为null时返回不过滤任何内容的空快照
+     */
+    public static CompiledFilter compile(DomainConfig config) {
+        if (config == null) {
+            return EMPTY;
+        }
+
+        String[] table = buildExtensionTable(config.getBlacklistExtensions());
+        int count = 0;
+        for (String ext : table) {
+            if (ext != null) {
+                count++;
+            }
+        }
+
+        BitSet codes = new BitSet(MAX_STATUS_CODE);
+        List<Integer> statusList = config.getBlacklistStatusCodes();
+        if (statusList != null) {
+            for (Integer code : statusList) {
+                if (code != null && code >= 0 && code < MAX_STATUS_CODE) {
+                    codes.set(code);
+                }
+            }
+        }
+
+        return new CompiledFilter(table, codes, DomainIndex.build(config.getDomainBlacklist()), count);
+    }
+
+    private static String[] buildExtensionTable(List<String> extensions) {
+        int size = 1;
+        int expected = extensions != null ? extensions.size() : 0;
+        // 装载因子不超过0.5，保证探测链很短
+        while (size < expected * 2) {
+            size <<= 1;
+        }
+        String[] table = new String[Math.max(2, size)];
+        if (extensions == null) {
+            return table;
+        }
+
+        int mask = table.length - 1;
+        for (String ext : extensions) {
+            if (ext == null) {
+                continue;
+            }
+            String value = ext.trim().toLowerCase();
+            while (value.startsWith(".")) {
+                value = value.substring(1);
+            }
+            if (value.isEmpty()) {
+                continue;
+            }
+            int slot = hash(value, 0, value.length()) & mask;
+            while (table[slot] != null && !table[slot].equals(value)) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+        }
+        return table;
+    }
+
+    /**
+     * 主机是否命中域名黑名单
+     */
+    public boolean isHostBlacklisted(String host) {
+        return domainBlacklist.matches(host);
+    }
+
+    /**
+     * 状态码是否在黑名单中
+     */
+    public boolean isStatusCodeBlacklisted(int statusCode) {
+        return statusCode >= 0 && statusCode < MAX_STATUS_CODE && statusCodes.get(statusCode);
+    }
+
+    /**
+     * URL路径的扩展名是否在黑名单中
+     */
+    public boolean isExtensionBlacklisted(String url) {
+        if (extensionCount == 0 || url == null) {
+            return false;
+        }
+
+        int end = pathEnd(url);
+        int start = extensionStart(url, end);
+        return start != -1 && containsExtension(url, start, end);
+    }
+
+    /**
+     * 综合判断：域名黑名单或扩展名黑名单
+     */
+    public boolean shouldFilter(String host, String url) {
+        return isHostBlacklisted(host) || isExtensionBlacklisted(url);
+    }
+
+    /**
+     * 供日志使用，返回URL路径的扩展名（会分配字符串，只在确认过滤后调用）
+     */
+    public static String extensionOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        int end = pathEnd(url);
+        int start = extensionStart(url, end);
+        return start != -1 ? url.substring(start, end).toLowerCase() : null;
+    }
+
+    // 路径结束位置：第一个'?'或'#'之前
+    private static int pathEnd(String url) {
+        int end = url.length();
+        int queryIndex = url.indexOf('?');
+        if (queryIndex != -1) {
+            end = queryIndex;
+        }
+        int hashIndex = url.indexOf('#');
+        if (hashIndex != -1 && hashIndex < end) {
+            end = hashIndex;
+        }
+        return end;
+    }
+
+    // 扩展名起始位置，没有扩展名返回-1；点必须在路径的最后一段中，避免把主机名后缀当成扩展名
+    private static int extensionStart(String url, int end) {
+        int pathStart = 0;
+        int schemeIndex = url.indexOf("://");
+        if (schemeIndex != -1 && schemeIndex < end) {
+            pathStart = url.indexOf('/', schemeIndex + 3);
+            if (pathStart == -1 || pathStart >= end) {
+                return -1;
+            }
+        }
+        int dotIndex = url.lastIndexOf('.', end - 1);
+        int slashIndex = url.lastIndexOf('/', end - 1);
+        if (dotIndex <= slashIndex || dotIndex < pathStart || dotIndex >= end - 1) {
+            return -1;
+        }
+        return dotIndex + 1;
+    }
+
+    private boolean containsExtension(String text, int start, int end) {
+        int length = end - start;
+        int slot = hash(text, start, end) & extensionMask;
+        String candidate;
+        while ((candidate = extensionTable[slot]) != null) {
+            if (candidate.length() == length && candidate.regionMatches(true, 0, text, start, length)) {
+                return true;
+            }
+            slot = (slot + 1) & extensionMask;
+        }
+        return false;
+    }
+
+    // 按小写字符计算哈希，查询时不需要先生成小写字符串
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + 32);
+            } else if (c >= 128) {
+                c = Character.toLowerCase(c);
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    public DomainIndex getDomainBlacklist() {
+        return domainBlacklist;
+    }
+
+    public int getExtensionCount() {
+        return extensionCount;
+    }
+
+    public int getStatusCodeCount() {
+        return statusCodes.cardinality();
+    }
+}
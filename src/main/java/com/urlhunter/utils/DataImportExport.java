@@ -12,6 +12,7 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 数据导入导出工具类
@@ -231,12 +232,23 @@ public class DataImportExport {
      * 批量导入数据到数据库
      */
     public static void batchImportToDatabase(List<URLEntry> entries, DatabaseManager dbManager) {
-        for (URLEntry entry : entries) {
-            try {
-                dbManager.insertURL(entry);
-            } catch (Exception e) {
-                System.err.println("导入URL失败: " + entry.getUrl() + " - " + e.getMessage());
+        // 导入期间临时使用批量导入参数
+        dbManager.beginBulkImport();
+        try {
+            for (URLEntry entry : entries) {
+                try {
+                    dbManager.queueInsert(entry);
+                } catch (Exception e) {
+                    System.err.println("导入URL失败: " + entry.getUrl() + " - " + e.getMessage());
+                }
+            }
+            
+            // 等待排队的条目全部提交后再返回
+            if (!dbManager.flushInserts(60, TimeUnit.SECONDS)) {
+                System.err.println("等待导入数据写入超时，剩余数据将在后台继续写入");
             }
+        } finally {
+            dbManager.endBulkImport();
         }
     }
     
@@ -0,0 +1,33 @@
+package com.urlhunter.utils;
+
+/**
+ * 去重过滤器
+ * mightContain返回false时一定没见过；返回true时可能是误判，需要调用方用权威数据源确认。
+ */
+public interface DedupFilter {
+
+    /**
+     * 是否可能已经添加过
+     */
+    boolean mightContain(String key);
+
+    /**
+     * 添加键
+     */
+    void put(String key);
+
+    /**
+     * 清空全部状态
+     */
+    void clear();
+
+    /**
+     * 已添加的键数量（含重复添加，近似值）
+     */
+    long getInsertCount();
+
+    /**
+     * 过滤器占用的内存字节数
+     */
+    long getMemoryBytes();
+}
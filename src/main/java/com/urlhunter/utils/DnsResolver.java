@@ -0,0 +1,188 @@
+package com.urlhunter.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带TTL缓存的异步DNS解析服务
+ * 同一主机的并发查询会合并为一次InetAddress查询，解析成功和失败分别按正/负TTL缓存。
+ * 全插件共享一个实例，URLAnalyzer.resolveIP也经由这里解析。
+ */
+public class DnsResolver {
+    private static final DnsResolver INSTANCE = new DnsResolver();
+
+    private static final int RESOLVER_THREADS = 4;
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final long DEFAULT_POSITIVE_TTL_SECONDS = 600;
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 60;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    private volatile long positiveTtlMillis = TimeUnit.SECONDS.toMillis(DEFAULT_POSITIVE_TTL_SECONDS);
+    private volatile long negativeTtlMillis = TimeUnit.SECONDS.toMillis(DEFAULT_NEGATIVE_TTL_SECONDS);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    // 缓存条目，ip为null表示解析失败（负缓存）
+    private static class CacheEntry {
+        private final String ip;
+        private final long expiresAt;
+
+        CacheEntry(String ip, long expiresAt) {
+            this.ip = ip;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private DnsResolver() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(RESOLVER_THREADS, r -> {
+            Thread thread = new Thread(r, "URLHunter-DNS-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static DnsResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 设置正/负缓存TTL（秒），只影响之后写入的缓存条目
+     */
+    public void setTtl(long positiveTtlSeconds, long negativeTtlSeconds) {
+        this.positiveTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, positiveTtlSeconds));
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, negativeTtlSeconds));
+    }
+
+    /**
+     * 非阻塞解析
+     * 缓存命中时返回已完成的Future；未命中时调度后台查询，同一主机的并发请求共享同一个Future。
+     */
+    public CompletableFuture<String> resolveAsync(String hostname) {
+        if (hostname == null || hostname.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String host = hostname.toLowerCase();
+        CacheEntry cached = cache.get(host);
+        if (cached != null && !cached.isExpired(System.currentTimeMillis())) {
+            hitCount.incrementAndGet();
+            return CompletableFuture.completedFuture(cached.ip);
+        }
+
+        CompletableFuture<String> pending = inFlight.get(host);
+        if (pending != null) {
+            coalescedCount.incrementAndGet();
+            return pending;
+        }
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        pending = inFlight.putIfAbsent(host, created);
+        if (pending != null) {
+            coalescedCount.incrementAndGet();
+            return pending;
+        }
+
+        missCount.incrementAndGet();
+        executor.execute(() -> {
+            String ip = lookup(host);
+            store(host, ip);
+            inFlight.remove(host);
+            created.complete(ip);
+        });
+        return created;
+    }
+
+    /**
+     * 阻塞解析，兼容原有的同步调用方；结果同样走缓存和请求合并
+     */
+    public String resolve(String hostname) {
+        try {
+            return resolveAsync(hostname).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String lookup(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.getHostAddress();
+        } catch (UnknownHostException e) {
+            failureCount.incrementAndGet();
+            return null;
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    private void store(String host, String ip) {
+        long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            // 先清理过期条目，仍然超限则整体清空，避免无界增长
+            cache.values().removeIf(entry -> entry.isExpired(now));
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                cache.clear();
+            }
+        }
+        long ttl = ip != null ? positiveTtlMillis : negativeTtlMillis;
+        cache.put(host, new CacheEntry(ip, now + ttl));
+    }
+
+    /**
+     * 清空缓存（不影响统计计数）
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * 统计摘要，用于日志和状态栏
+     */
+    public String getStatsSummary() {
+        return String.format("DNS缓存命中: %d  未命中: %d  合并: %d  失败: %d  缓存主机: %d",
+            getHitCount(), getMissCount(), getCoalescedCount(), getFailureCount(), getCacheSize());
+    }
+}
@@ -0,0 +1,171 @@
+package com.urlhunter.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 域名后缀索引（按字符逆序构建的只读Trie）
+ * 从主机名末尾向前逐字符匹配，只在标签边界（'.'或主机名开头）接受命中，
+ * 查询为O(主机名长度)且不分配对象。实例不可变，更新时整体重建后替换引用。
+ */
+public final class DomainIndex {
+    public static final DomainIndex EMPTY = new DomainIndex(new Node(), Collections.emptySet());
+
+    private final Node root;
+    private final Set<String> domains;
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // 在此处结束的域名（规范化后的形式），null表示不是完整域名
+        private String domain;
+
+        Node child(char c) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char key = keys[mid];
+                if (key < c) {
+                    low = mid + 1;
+                } else if (key > c) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    // 构建期使用的可变节点，完成后转换为紧凑的有序数组
+    private static final class BuildNode {
+        private final Map<Character, BuildNode> children = new TreeMap<>();
+        private String domain;
+
+        Node freeze() {
+            Node node = new Node();
+            node.domain = domain;
+            node.keys = new char[children.size()];
+            node.children = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuildNode> entry : children.entrySet()) {
+                node.keys[i] = entry.getKey();
+                node.children[i] = entry.getValue().freeze();
+                i++;
+            }
+            return node;
+        }
+    }
+
+    private DomainIndex(Node root, Set<String> domains) {
+        this.root = root;
+        this.domains = domains;
+    }
+
+    /**
+     * 从域名集合构建索引，域名会去空白、转小写并去掉开头的"."和"*."
+     */
+    public static DomainIndex build(Collection<String> domainList) {
+        if (domainList == null || domainList.isEmpty()) {
+            return EMPTY;
+        }
+
+        BuildNode buildRoot = new BuildNode();
+        Set<String> normalized = new HashSet<>();
+        for (String domain : domainList) {
+            String value = normalize(domain);
+            if (value == null || !normalized.add(value)) {
+                continue;
+            }
+            BuildNode node = buildRoot;
+            for (int i = value.length() - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(value.charAt(i), k -> new BuildNode());
+            }
+            node.domain = value;
+        }
+
+        if (normalized.isEmpty()) {
+            return EMPTY;
+        }
+        return new DomainIndex(buildRoot.freeze(), Collections.unmodifiableSet(normalized));
+    }
+
+    private static String normalize(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        String value = domain.trim().toLowerCase();
+        if (value.startsWith("*.")) {
+            value = value.substring(2);
+        }
+        while (value.startsWith(".")) {
+            value = value.substring(1);
+        }
+        while (value.endsWith(".")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 返回与主机名匹配的最长域名（主机名本身或其父域），不匹配返回null
+     */
+    public String longestMatch(String host) {
+        if (host == null || host.isEmpty() || domains.isEmpty()) {
+            return null;
+        }
+
+        int end = host.length();
+        // 忽略FQDN末尾的点
+        if (host.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        String match = null;
+        Node node = root;
+        for (int i = end - 1; i >= 0; i--) {
+            node = node.child(toLower(host.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.domain != null && (i == 0 || host.charAt(i - 1) == '.')) {
+                match = node.domain;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * 主机名是否等于某个域名或是其子域名
+     */
+    public boolean matches(String host) {
+        return longestMatch(host) != null;
+    }
+
+    public boolean isEmpty() {
+        return domains.isEmpty();
+    }
+
+    public int size() {
+        return domains.size();
+    }
+
+    /**
+     * 索引中的全部域名（规范化后，不可修改）
+     */
+    public Set<String> getDomains() {
+        return domains;
+    }
+
+    private static char toLower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + 32);
+        }
+        return c < 128 ? c : Character.toLowerCase(c);
+    }
+}
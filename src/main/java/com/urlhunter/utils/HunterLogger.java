@@ -0,0 +1,202 @@
+package com.urlhunter.utils;
+
+import burp.api.montoya.MontoyaApi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 插件日志门面
+ * 支持日志级别、按消息键限流，以及把高频事件聚合为周期性汇总行。
+ * 逐条URL的详细输出只在调试模式下打印，避免Burp输出面板成为瓶颈。
+ */
+public class HunterLogger {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final long DEFAULT_RATE_LIMIT_MILLIS = 5000;
+    private static final long SUMMARY_INTERVAL_SECONDS = 10;
+
+    private final MontoyaApi api;
+    private final Map<String, RateLimitState> rateLimits = new ConcurrentHashMap<>();
+    // 计数器按注册顺序输出，便于汇总行保持稳定的格式
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final List<String> counterOrder = new ArrayList<>();
+    private final Map<String, String> counterLabels = new ConcurrentHashMap<>();
+
+    private volatile boolean debugEnabled;
+    private ScheduledExecutorService summaryExecutor;
+    private ScheduledFuture<?> summaryTask;
+
+    // 单个限流键的状态
+    private static class RateLimitState {
+        private final AtomicLong lastEmitted = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+    }
+
+    public HunterLogger(MontoyaApi api) {
+        this.api = api;
+    }
+
+    public void setDebugEnabled(boolean debugEnabled) {
+        this.debugEnabled = debugEnabled;
+    }
+
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    public void debug(Supplier<String> message) {
+        if (debugEnabled) {
+            api.logging().logToOutput("[DEBUG] " + message.get());
+        }
+    }
+
+    public void info(String message) {
+        api.logging().logToOutput(message);
+    }
+
+    public void warn(String message) {
+        api.logging().logToOutput("[WARN] " + message);
+    }
+
+    public void error(String message) {
+        api.logging().logToError(message);
+    }
+
+    public void log(Level level, String message) {
+        switch (level) {
+            case DEBUG:
+                if (debugEnabled) {
+                    api.logging().logToOutput("[DEBUG] " + message);
+                }
+                break;
+            case INFO:
+                info(message);
+                break;
+            case WARN:
+                warn(message);
+                break;
+            default:
+                error(message);
+                break;
+        }
+    }
+
+    /**
+     * 按键限流输出：同一键在间隔内最多输出一次，期间被抑制的条数附在下一次输出后
+     * 消息用Supplier延迟构造，被抑制时不产生字符串拼接
+     */
+    public void rateLimited(String key, Level level, Supplier<String> message) {
+        if (level == Level.DEBUG && !debugEnabled) {
+            return;
+        }
+
+        RateLimitState state = rateLimits.computeIfAbsent(key, k -> new RateLimitState());
+        long now = System.currentTimeMillis();
+        long last = state.lastEmitted.get();
+        if (now - last < DEFAULT_RATE_LIMIT_MILLIS || !state.lastEmitted.compareAndSet(last, now)) {
+            state.suppressed.incrementAndGet();
+            return;
+        }
+
+        long suppressed = state.suppressed.getAndSet(0);
+        String text = message.get();
+        if (suppressed > 0) {
+            text = text + String.format("（此前%d秒内另有%,d条同类消息被省略）", DEFAULT_RATE_LIMIT_MILLIS / 1000, suppressed);
+        }
+        log(level, text);
+    }
+
+    /**
+     * 注册汇总计数器，label为汇总行中显示的名称
+     */
+    public synchronized void registerCounter(String key, String label) {
+        if (!counters.containsKey(key)) {
+            counters.put(key, new LongAdder());
+            counterOrder.add(key);
+        }
+        counterLabels.put(key, label);
+    }
+
+    /**
+     * 计数器加一，未注册的键会被忽略
+     */
+    public void count(String key) {
+        LongAdder counter = counters.get(key);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * 启动周期汇总，每个周期输出一行非零计数，全部为零时不输出
+     */
+    public synchronized void startSummary() {
+        if (summaryExecutor != null) {
+            return;
+        }
+        summaryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "URLHunter-LogSummary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        summaryTask = summaryExecutor.scheduleAtFixedRate(this::flushSummary,
+            SUMMARY_INTERVAL_SECONDS, SUMMARY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 立即输出并清零当前周期的计数
+     */
+    public void flushSummary() {
+        try {
+            List<String> keys;
+            synchronized (this) {
+                keys = new ArrayList<>(counterOrder);
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (String key : keys) {
+                long value = counters.get(key).sumThenReset();
+                if (value == 0) {
+                    continue;
+                }
+                if (sb.length() > 0) {
+                    sb.append("，");
+                }
+                sb.append(counterLabels.get(key)).append(' ').append(String.format("%,d", value));
+            }
+
+            if (sb.length() > 0) {
+                api.logging().logToOutput("最近" + SUMMARY_INTERVAL_SECONDS + "秒: " + sb);
+            }
+        } catch (Exception e) {
+            api.logging().logToError("输出日志汇总失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止周期汇总并输出最后一个周期的计数
+     */
+    public synchronized void shutdown() {
+        if (summaryTask != null) {
+            summaryTask.cancel(false);
+            summaryTask = null;
+        }
+        if (summaryExecutor != null) {
+            summaryExecutor.shutdownNow();
+            summaryExecutor = null;
+        }
+        flushSummary();
+    }
+}
@@ -0,0 +1,94 @@
+package com.urlhunter.utils;
+
+/**
+ * 基数估计用的HyperLogLog草图
+ * 1024个寄存器，每个1字节，标准误差约3%；少量元素时用线性计数，结果基本精确。
+ * 重复添加同一元素不改变草图，两个草图按寄存器取最大值合并，因此可以持久化后跨会话累积。
+ * 非线程安全，由调用方同步。
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 10;
+    public static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * 从toBytes的结果恢复，null或长度不符时返回空草图
+     */
+    public static HyperLogLog fromBytes(byte[] data) {
+        if (data == null || data.length != REGISTERS) {
+            return new HyperLogLog();
+        }
+        return new HyperLogLog(data.clone());
+    }
+
+    /**
+     * 添加元素，草图发生变化时返回true
+     */
+    public boolean add(String key) {
+        long hash = BloomDedupFilter.hash64(key);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        byte rank = rank(hash);
+        if (registers[index] >= rank) {
+            return false;
+        }
+        registers[index] = rank;
+        return true;
+    }
+
+    /**
+     * 添加该元素是否不会改变草图（不代表一定添加过）
+     */
+    public boolean covers(String key) {
+        long hash = BloomDedupFilter.hash64(key);
+        return registers[(int) (hash >>> (Long.SIZE - PRECISION))] >= rank(hash);
+    }
+
+    /**
+     * 合并另一个草图，结果相当于两者元素的并集
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * 估计的不同元素数量
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    // 去掉索引位后剩余位中第一个1的位置
+    private static byte rank(long hash) {
+        return (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+    }
+}
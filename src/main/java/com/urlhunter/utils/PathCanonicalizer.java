@@ -0,0 +1,157 @@
+package com.urlhunter.utils;
+
+import com.urlhunter.model.DomainConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * URL路径规范化（由DomainConfig编译得到的只读快照）
+ * 把路径中的ID、UUID、哈希等段替换为{int}、{uuid}、{hex}这类类型占位符，
+ * 使/user/123和/user/456归并为同一个端点/user/{int}。
+ * 规范化键为"协议://主机[:端口]/规范化路径"，主机转小写，查询参数和片段被去掉。
+ */
+public final class PathCanonicalizer {
+    public static final PathCanonicalizer DEFAULT = compile(null);
+
+    private final boolean enabled;
+    private final List<String> names;
+    private final List<Pattern> patterns;
+
+    private PathCanonicalizer(boolean enabled, List<String> names, List<Pattern> patterns) {
+        this.enabled = enabled;
+        this.names = names;
+        this.patterns = patterns;
+    }
+
+    /**
+     * 编译配置，config为null时使用默认规则；规则按顺序匹配，先命中的生效，无效的正则会被跳过
+     */
+    public static PathCanonicalizer compile(DomainConfig config) {
+        DomainConfig effective = config != null ? config : new DomainConfig();
+        boolean enabled = effective.isPathCanonicalizationEnabled();
+        Map<String, String> rules = effective.getPathTemplateRules() != null ?
+            effective.getPathTemplateRules() : new DomainConfig().getPathTemplateRules();
+
+        List<String> names = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        for (Map.Entry<String, String> rule : rules.entrySet()) {
+            if (rule.getKey() == null || rule.getKey().trim().isEmpty() || rule.getValue() == null) {
+                continue;
+            }
+            try {
+                patterns.add(Pattern.compile(rule.getValue().trim()));
+                names.add("{" + rule.getKey().trim() + "}");
+            } catch (PatternSyntaxException e) {
+                // 无效规则不影响其他规则
+            }
+        }
+        return new PathCanonicalizer(enabled, Collections.unmodifiableList(names), Collections.unmodifiableList(patterns));
+    }
+
+    /**
+     * 计算URL的规范化键
+     */
+    public String canonicalKey(String url) {
+        if (url == null || url.isEmpty()) {
+            return url;
+        }
+
+        int end = url.length();
+        int queryIndex = url.indexOf('?');
+        if (queryIndex != -1) {
+            end = queryIndex;
+        }
+        int hashIndex = url.indexOf('#');
+        if (hashIndex != -1 && hashIndex < end) {
+            end = hashIndex;
+        }
+
+        int schemeIndex = url.indexOf("://");
+        if (schemeIndex == -1 || schemeIndex > end) {
+            return canonicalPath(url.substring(0, end));
+        }
+
+        int pathStart = url.indexOf('/', schemeIndex + 3);
+        if (pathStart == -1 || pathStart > end) {
+            pathStart = end;
+        }
+
+        String authority = url.substring(0, pathStart).toLowerCase();
+        return authority + canonicalPath(url.substring(pathStart, end));
+    }
+
+    /**
+     * 规范化路径，逐段匹配规则，未命中的段保持原样
+     */
+    public String canonicalPath(String path) {
+        if (!enabled || path == null || path.isEmpty() || patterns.isEmpty()) {
+            return path;
+        }
+
+        StringBuilder sb = null;
+        int segmentStart = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && path.charAt(i) != '/') {
+                continue;
+            }
+            if (i > segmentStart) {
+                String placeholder = match(path, segmentStart, i);
+                if (placeholder != null) {
+                    if (sb == null) {
+                        sb = new StringBuilder(length);
+                        sb.append(path, 0, segmentStart);
+                    }
+                    sb.append(placeholder);
+                } else if (sb != null) {
+                    sb.append(path, segmentStart, i);
+                }
+            }
+            if (sb != null && i < length) {
+                sb.append('/');
+            }
+            segmentStart = i + 1;
+        }
+        return sb != null ? sb.toString() : path;
+    }
+
+    private String match(String path, int start, int end) {
+        CharSequence segment = path.subSequence(start, end);
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(segment).matches()) {
+                return names.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 规范化键中是否含有占位符，即是否代表多个具体URL的模板
+     */
+    public static boolean isTemplate(String canonicalKey) {
+        return canonicalKey != null && canonicalKey.indexOf('{') != -1;
+    }
+
+    /**
+     * 规则签名，规则变化时签名随之变化
+     */
+    public String getSignature() {
+        if (!enabled) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < patterns.size(); i++) {
+            sb.append(names.get(i)).append('=').append(patterns.get(i).pattern()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -99,7 +99,7 @@ public class PluginIntegration {
             
             // 保存到数据库
             for (URLEntry entry : sensitiveFiles) {
-                dbManager.insertURL(entry);
+                dbManager.queueInsert(entry);
             }
             
             // 记录普通URL
@@ -107,7 +107,7 @@ public class PluginIntegration {
                 if (!isSensitiveFile(url)) {
                     URLEntry entry = URLAnalyzer.analyzeURL(url, "GET");
                     entry.setNotes("从HTTP流量中提取");
-                    dbManager.insertURL(entry);
+                    dbManager.queueInsert(entry);
                 }
             }
             
@@ -249,45 +249,6 @@ public class PluginIntegration {
         }
     }
     
-    /**
-     * 启用自动URL提取功能
-     * 监听Burp的HTTP流量
-     */
-    public void enableAutoExtraction() {
-        // 注册HTTP处理器来监听所有HTTP流量
-        api.http().registerHttpHandler(new burp.api.montoya.http.handler.HttpHandler() {
-            @Override
-            public burp.api.montoya.http.handler.RequestToBeSentAction handleHttpRequestToBeSent(
-                burp.api.montoya.http.handler.HttpRequestToBeSent requestToBeSent) {
-                // 继续处理请求
-                return burp.api.montoya.http.handler.RequestToBeSentAction.continueWith(requestToBeSent);
-            }
-            
-            @Override
-            public burp.api.montoya.http.handler.ResponseReceivedAction handleHttpResponseReceived(
-                burp.api.montoya.http.handler.HttpResponseReceived responseReceived) {
-                
-                // 暂时注释掉自动分析功能，避免API调用错误
-                // 在后台线程中分析响应
-                // new Thread(() -> {
-                //     try {
-                //         // 创建HttpRequestResponse对象来分析
-                //         HttpRequestResponse requestResponse = responseReceived.initiatingRequest()
-                //                 .toHttpRequestResponse(responseReceived.originalResponse());
-                //         analyzeHttpTraffic(requestResponse);
-                //     } catch (Exception e) {
-                //         api.logging().logToError("自动分析HTTP响应失败: " + e.getMessage());
-                //     }
-                // }).start();
-                
-                // 继续处理响应
-                return burp.api.montoya.http.handler.ResponseReceivedAction.continueWith(responseReceived);
-            }
-        });
-        
-        api.logging().logToOutput("URL Hunter: 自动URL提取功能已启用");
-    }
-    
     /**
      * 手动分析指定的HTTP请求响应
      */
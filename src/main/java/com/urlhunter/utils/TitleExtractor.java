@@ -0,0 +1,215 @@
+package com.urlhunter.utils;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 有界的流式标题提取器
+ * 直接在响应字节上查找<title>，找到</title>或达到字节上限即停止，不构建DOM。
+ * 非HTML类型直接跳过；只有标题标签未闭合等畸形标记时才回退到Jsoup。
+ */
+public class TitleExtractor {
+    public static final int DEFAULT_MAX_SCAN_BYTES = 64 * 1024;
+
+    private static final byte[] TITLE_OPEN = "<title".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TITLE_CLOSE = "</title".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHARSET_ATTR = "charset=".getBytes(StandardCharsets.US_ASCII);
+
+    private TitleExtractor() {
+    }
+
+    /**
+     * 从响应中提取标题，最多扫描maxBytes字节的响应体
+     */
+    public static String extract(HttpResponse response, int maxBytes) {
+        if (response == null) {
+            return null;
+        }
+
+        String contentType = response.headerValue("Content-Type");
+        if (!isHtmlContentType(contentType)) {
+            return null;
+        }
+
+        // 直接从完整报文中截取响应体前缀，避免body()先复制整个响应体
+        ByteArray raw = response.toByteArray();
+        int bodyOffset = Math.min(Math.max(0, response.bodyOffset()), raw.length());
+        int bodyLength = raw.length() - bodyOffset;
+        if (bodyLength <= 0) {
+            return null;
+        }
+
+        int limit = maxBytes > 0 ? Math.min(bodyLength, maxBytes) : bodyLength;
+        byte[] prefix = raw.subArray(bodyOffset, bodyOffset + limit).getBytes();
+        return extract(prefix, prefix.length, contentType);
+    }
+
+    /**
+     * 在data的前length个字节中提取标题
+     */
+    public static String extract(byte[] data, int length, String contentType) {
+        if (data == null || length <= 0) {
+            return null;
+        }
+        int end = Math.min(length, data.length);
+
+        int openIndex = indexOfTag(data, TITLE_OPEN, 0, end);
+        if (openIndex < 0) {
+            return null;
+        }
+        int contentStart = indexOf(data, (byte) '>', openIndex + TITLE_OPEN.length, end);
+        if (contentStart < 0) {
+            return fallbackParse(data, end, contentType);
+        }
+        contentStart++;
+
+        int closeIndex = indexOfTag(data, TITLE_CLOSE, contentStart, end);
+        if (closeIndex < 0) {
+            // 标题未闭合或被截断，交给Jsoup按其容错规则处理
+            return fallbackParse(data, end, contentType);
+        }
+
+        Charset charset = detectCharset(contentType, data, openIndex);
+        String raw = new String(data, contentStart, closeIndex - contentStart, charset);
+        return normalize(Parser.unescapeEntities(raw, false));
+    }
+
+    /**
+     * 没有Content-Type时按HTML处理（有上限保护），否则只接受HTML类型
+     */
+    public static boolean isHtmlContentType(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return true;
+        }
+        String lower = contentType.toLowerCase();
+        return lower.contains("html");
+    }
+
+    private static String fallbackParse(byte[] data, int end, String contentType) {
+        try {
+            Charset charset = detectCharset(contentType, data, end);
+            String html = new String(data, 0, end, charset);
+            return normalize(Jsoup.parse(html).title());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 字符集优先取响应头，其次取标题前的<meta charset>，默认UTF-8
+     */
+    private static Charset detectCharset(String contentType, byte[] data, int searchEnd) {
+        String name = null;
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                name = readCharsetToken(contentType, index + "charset=".length());
+            }
+        }
+        if (name == null) {
+            int index = indexOfIgnoreCase(data, CHARSET_ATTR, 0, searchEnd);
+            if (index >= 0) {
+                int start = index + CHARSET_ATTR.length;
+                int stop = Math.min(searchEnd, start + 64);
+                name = readCharsetToken(new String(data, start, Math.max(0, stop - start), StandardCharsets.ISO_8859_1), 0);
+            }
+        }
+        if (name != null && !name.isEmpty()) {
+            try {
+                return Charset.forName(name);
+            } catch (Exception e) {
+                // 未知字符集，使用默认值
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String readCharsetToken(String text, int start) {
+        int i = start;
+        while (i < text.length() && (text.charAt(i) == '"' || text.charAt(i) == '\'' || text.charAt(i) == ' ')) {
+            i++;
+        }
+        int tokenStart = i;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i > tokenStart ? text.substring(tokenStart, i) : null;
+    }
+
+    private static String normalize(String title) {
+        if (title == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(title.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (Character.isWhitespace(c) || c == ' ') {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * 查找标签名（忽略大小写），要求其后是'>'、'/'或空白，避免匹配<titlefoo>
+     */
+    private static int indexOfTag(byte[] data, byte[] tag, int from, int end) {
+        int index = indexOfIgnoreCase(data, tag, from, end);
+        while (index >= 0) {
+            int next = index + tag.length;
+            if (next >= end) {
+                return -1;
+            }
+            byte b = data[next];
+            if (b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                return index;
+            }
+            index = indexOfIgnoreCase(data, tag, index + 1, end);
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(byte[] data, byte[] pattern, int from, int end) {
+        int last = end - pattern.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && toLower(data[i + j]) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] data, byte value, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte toLower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + 32) : b;
+    }
+}
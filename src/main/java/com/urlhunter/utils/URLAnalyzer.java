@@ -1,13 +1,12 @@
 package com.urlhunter.utils;
 
+import burp.api.montoya.http.message.responses.HttpResponse;
 import com.urlhunter.model.URLEntry;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
-import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.UnknownHostException;
 import java.util.regex.Pattern;
 
 public class URLAnalyzer {
@@ -79,15 +78,35 @@ public class URLAnalyzer {
         return null;
     }
 
-    public static String resolveIP(String hostname) {
-        if (hostname == null) return null;
-        
-        try {
-            InetAddress address = InetAddress.getByName(hostname);
-            return address.getHostAddress();
-        } catch (UnknownHostException e) {
+    /**
+     * 从完整域名中提取根域名（去掉端口后取最后两级域名）
+     */
+    public static String extractRootDomain(String host) {
+        if (host == null || host.isEmpty()) {
             return null;
         }
+        
+        // 移除端口号
+        int colonIndex = host.indexOf(':');
+        if (colonIndex != -1) {
+            host = host.substring(0, colonIndex);
+        }
+        
+        String[] parts = host.split("\\.");
+        if (parts.length >= 2) {
+            // 返回最后两级域名作为根域名
+            return parts[parts.length - 2] + "." + parts[parts.length - 1];
+        }
+        
+        return host;
+    }
+
+    /**
+     * 解析主机IP，经由共享的DnsResolver缓存；未命中时会阻塞到解析完成
+     */
+    public static String resolveIP(String hostname) {
+        if (hostname == null) return null;
+        return DnsResolver.getInstance().resolve(hostname);
     }
 
     public static boolean isInternalIP(String ip) {
@@ -95,6 +114,20 @@ public class URLAnalyzer {
         return INTERNAL_IP_PATTERN.matcher(ip).find();
     }
 
+    /**
+     * 从响应字节中流式提取标题，使用默认扫描上限
+     */
+    public static String extractTitle(HttpResponse response) {
+        return TitleExtractor.extract(response, TitleExtractor.DEFAULT_MAX_SCAN_BYTES);
+    }
+
+    /**
+     * 从响应字节中流式提取标题，最多扫描maxBytes字节
+     */
+    public static String extractTitle(HttpResponse response, int maxBytes) {
+        return TitleExtractor.extract(response, maxBytes);
+    }
+
     public static String extractTitle(String htmlContent) {
         if (htmlContent == null || htmlContent.trim().isEmpty()) {
             return null;
@@ -109,38 +142,21 @@ public class URLAnalyzer {
         }
     }
 
+    /**
+     * 按配置判断URL是否应被过滤；会临时编译配置，频繁调用时应直接复用CompiledFilter
+     */
     public static boolean shouldFilter(String url, com.urlhunter.model.DomainConfig config) {
-        if (url == null || config == null) return false;
-        
-        try {
-            URL urlObj = new URL(url);
-            String host = urlObj.getHost();
-            String path = urlObj.getPath();
-            
-            // 检查域名黑名单
-            for (String blacklistDomain : config.getBlacklistDomains()) {
-                if (host.contains(blacklistDomain)) {
-                    return true;
-                }
-            }
-            
-            // 检查扩展名黑名单
-            for (String ext : config.getBlacklistExtensions()) {
-                if (path.toLowerCase().endsWith("." + ext.toLowerCase())) {
-                    return true;
-                }
-            }
-            
-        } catch (MalformedURLException e) {
-            // URL格式错误，不过滤
-        }
-        
-        return false;
+        return shouldFilter(url, CompiledFilter.compile(config));
+    }
+
+    public static boolean shouldFilter(String url, CompiledFilter filter) {
+        if (url == null || filter == null) return false;
+        return filter.isExtensionBlacklisted(url) || filter.isHostBlacklisted(extractHost(url));
     }
 
     public static boolean shouldFilterByStatusCode(int statusCode, com.urlhunter.model.DomainConfig config) {
         if (config == null) return false;
-        return config.getBlacklistStatusCodes().contains(statusCode);
+        return CompiledFilter.compile(config).isStatusCodeBlacklisted(statusCode);
     }
 
     public static String generateShortLinkURL(String baseUrl, String shortCode) {
@@ -209,16 +225,4 @@ public class URLAnalyzer {
             return null;
         }
     }
-
-    public boolean shouldFilter(String url, java.util.List<String> blacklistExtensions) {
-        if (url == null || blacklistExtensions == null) return false;
-        
-        String lowerUrl = url.toLowerCase();
-        for (String ext : blacklistExtensions) {
-            if (lowerUrl.endsWith("." + ext.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
-    }
 } 
\ No newline at end of file